@@ -21,6 +21,7 @@ import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.Service;
 import org.apache.catalina.core.AprStatus;
+import org.apache.catalina.mapper.MappingCache;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.coyote.AbstractProtocol;
 import org.apache.coyote.Adapter;
@@ -33,9 +34,11 @@ import org.apache.tomcat.util.IntrospectionUtils;
 import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.buf.CharsetUtil;
 import org.apache.tomcat.util.buf.EncodedSolidusHandling;
+import org.apache.tomcat.util.http.fileupload.DirectBufferPool;
 import org.apache.tomcat.util.net.SSLHostConfig;
 import org.apache.tomcat.util.net.openssl.OpenSSLImplementation;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.FairSharingExecutor;
 
 import javax.management.ObjectName;
 import java.io.UnsupportedEncodingException;
@@ -208,6 +211,54 @@ public class Connector extends LifecycleMBeanBase {
      */
     protected int maxParameterCount = 10000;
 
+    /**
+     * Should request parameters be indexed when parsed and only decoded when requested by the application? Defaults to
+     * false.
+     */
+    protected boolean lazyParameterParsing = false;
+
+    /**
+     * The maximum number of direct buffers used to hold the parts of multipart requests that are below the file size
+     * threshold. 0 by default, which means such parts are held on the heap.
+     */
+    protected int multipartBufferPoolSegments = 0;
+
+    /**
+     * The size in bytes of each direct buffer used to hold the parts of multipart requests.
+     */
+    protected int multipartBufferPoolSegmentSize = DirectBufferPool.DEFAULT_SEGMENT_SIZE;
+
+    /**
+     * The pool of direct buffers shared by the multipart requests processed by this Connector. Created on first use.
+     */
+    private DirectBufferPool multipartBufferPool = null;
+
+    /**
+     * Should request bodies that use the gzip or deflate content coding be decompressed as they are read? Defaults to
+     * false.
+     */
+    protected boolean decompressRequestBody = false;
+
+    /**
+     * Maximum size of a decompressed request body. 10 MiB by default.
+     */
+    protected long maxDecompressedRequestBodySize = 10 * 1024 * 1024;
+
+    /**
+     * Maximum ratio of decompressed to compressed bytes in a request body. 100 by default.
+     */
+    protected int maxRequestBodyCompressionRatio = 100;
+
+    /**
+     * Maximum number of decoded request URIs and their mapping results to cache. 0, the default, disables the cache.
+     */
+    protected int mappingCacheSize = 0;
+
+    /**
+     * The cache of decoded request URIs and their mapping results, if enabled.
+     */
+    protected MappingCache mappingCache = null;
+
     /**
      * Maximum size of a POST which will be automatically parsed by the container. 2 MiB by default.
      */
@@ -471,6 +522,183 @@ public class Connector extends LifecycleMBeanBase {
     }
 
 
+    /**
+     * @return {@code true} if request parameters are only decoded when requested by the application
+     */
+    public boolean getLazyParameterParsing() {
+        return lazyParameterParsing;
+    }
+
+
+    /**
+     * Set whether request parameters are indexed when they are parsed and only decoded when requested by the
+     * application. This reduces the processing of large form submissions where the application only uses a few of
+     * the parameters. The parameters are indexed in place so, when enabled, an
+     * <code>application/x-www-form-urlencoded</code> body is read into memory in full rather than being parsed
+     * incrementally as it is read.
+     *
+     * @param lazyParameterParsing The new setting
+     */
+    public void setLazyParameterParsing(boolean lazyParameterParsing) {
+        this.lazyParameterParsing = lazyParameterParsing;
+    }
+
+
+    /**
+     * @return the maximum number of direct buffers used to hold the parts of multipart requests
+     */
+    public int getMultipartBufferPoolSegments() {
+        return multipartBufferPoolSegments;
+    }
+
+
+    /**
+     * Set the maximum number of direct buffers, shared by all the requests processed by this Connector, used to hold
+     * the parts of multipart requests that are below the file size threshold. This keeps such parts off the heap and
+     * bounds the memory they use regardless of the number of concurrent uploads. Parts are written to disk when every
+     * buffer is in use.
+     *
+     * @param multipartBufferPoolSegments The new maximum number of buffers or 0 to hold such parts on the heap
+     */
+    public synchronized void setMultipartBufferPoolSegments(int multipartBufferPoolSegments) {
+        this.multipartBufferPoolSegments = multipartBufferPoolSegments;
+        multipartBufferPool = null;
+    }
+
+
+    /**
+     * @return the size in bytes of each direct buffer used to hold the parts of multipart requests
+     */
+    public int getMultipartBufferPoolSegmentSize() {
+        return multipartBufferPoolSegmentSize;
+    }
+
+
+    /**
+     * Set the size of each direct buffer used to hold the parts of multipart requests.
+     *
+     * @param multipartBufferPoolSegmentSize The new size in bytes
+     */
+    public synchronized void setMultipartBufferPoolSegmentSize(int multipartBufferPoolSegmentSize) {
+        this.multipartBufferPoolSegmentSize = multipartBufferPoolSegmentSize;
+        multipartBufferPool = null;
+    }
+
+
+    /**
+     * Obtain the pool of direct buffers used to hold the parts of multipart requests. If the configuration changes, a
+     * new pool is created and buffers still in use are returned to the pool they came from.
+     *
+     * @return the pool or {@code null} if parts are held on the heap
+     */
+    public synchronized DirectBufferPool getMultipartBufferPool() {
+        if (multipartBufferPoolSegments <= 0) {
+            return null;
+        }
+        if (multipartBufferPool == null) {
+            multipartBufferPool = new DirectBufferPool(multipartBufferPoolSegmentSize, multipartBufferPoolSegments);
+        }
+        return multipartBufferPool;
+    }
+
+
+    /**
+     * @return {@code true} if compressed request bodies are decompressed by the container
+     */
+    public boolean getDecompressRequestBody() {
+        return decompressRequestBody;
+    }
+
+
+    /**
+     * Set whether request bodies that use the gzip or deflate content coding are decompressed as they are read. The
+     * Content-Encoding and Content-Length headers are removed from such requests so that parameter parsing, multipart
+     * parsing and the application all see the decompressed body.
+     *
+     * @param decompressRequestBody The new setting
+     */
+    public void setDecompressRequestBody(boolean decompressRequestBody) {
+        this.decompressRequestBody = decompressRequestBody;
+    }
+
+
+    /**
+     * @return the maximum size in bytes of a decompressed request body
+     */
+    public long getMaxDecompressedRequestBodySize() {
+        return maxDecompressedRequestBodySize;
+    }
+
+
+    /**
+     * Set the maximum size of a decompressed request body. Reading a larger body fails with an I/O error.
+     *
+     * @param maxDecompressedRequestBodySize The new maximum size in bytes or -1 for no limit
+     */
+    public void setMaxDecompressedRequestBodySize(long maxDecompressedRequestBodySize) {
+        this.maxDecompressedRequestBodySize = maxDecompressedRequestBodySize;
+    }
+
+
+    /**
+     * @return the maximum ratio of decompressed to compressed bytes in a request body
+     */
+    public int getMaxRequestBodyCompressionRatio() {
+        return maxRequestBodyCompressionRatio;
+    }
+
+
+    /**
+     * Set the maximum ratio of decompressed to compressed bytes in a request body. Reading a body that decompresses
+     * beyond this ratio fails with an I/O error.
+     *
+     * @param maxRequestBodyCompressionRatio The new maximum ratio or -1 for no limit
+     */
+    public void setMaxRequestBodyCompressionRatio(int maxRequestBodyCompressionRatio) {
+        this.maxRequestBodyCompressionRatio = maxRequestBodyCompressionRatio;
+    }
+
+
+    /**
+     * @return the maximum number of decoded request URIs and their mapping results to cache
+     */
+    public int getMappingCacheSize() {
+        return mappingCacheSize;
+    }
+
+
+    /**
+     * Set the maximum number of decoded request URIs and their mapping results to cache. Caching avoids decoding,
+     * normalizing and mapping the URI again for the paths that are requested repeatedly. The new value takes effect
+     * when the connector is next initialized.
+     *
+     * @param mappingCacheSize The new maximum number of entries or 0 to disable the cache
+     */
+    public void setMappingCacheSize(int mappingCacheSize) {
+        this.mappingCacheSize = mappingCacheSize;
+    }
+
+
+    /**
+     * @return the cache of decoded request URIs and their mapping results or <code>null</code> if it is disabled
+     */
+    public MappingCache getMappingCache() {
+        return mappingCache;
+    }
+
+
+    /**
+     * @return the proportion of requests mapped using the mapping cache, between <code>0</code> and <code>1</code>
+     */
+    public double getMappingCacheHitRatio() {
+        MappingCache mappingCache = this.mappingCache;
+        if (mappingCache == null) {
+            return 0;
+        }
+        return mappingCache.getHitRatio();
+    }
+
+
     /**
      * @return the maximum size of a POST which will be automatically parsed by the container.
      */
@@ -888,6 +1116,9 @@ public class Connector extends LifecycleMBeanBase {
 
     public String getExecutorName() {
         Object obj = protocolHandler.getExecutor();
+        if (obj instanceof FairSharingExecutor.Lane) {
+            obj = ((FairSharingExecutor.Lane) obj).getParent().getExecutor();
+        }
         if (obj instanceof org.apache.catalina.Executor) {
             return ((org.apache.catalina.Executor) obj).getName();
         }
@@ -1047,6 +1278,9 @@ public class Connector extends LifecycleMBeanBase {
         // Initialize adapter (adapter:适配器)
         // 创建一个 CoyoteAdapter 实例并将其分配给 adapter 成员变量。然后设置 protocolHandler 的适配器为此 adapter。
         // CoyoteAdapter 这个类负责处理 HTTP 请求和响应
+        if (mappingCacheSize > 0) {
+            mappingCache = new MappingCache(mappingCacheSize);
+        }
         adapter = new CoyoteAdapter(this);
         protocolHandler.setAdapter(adapter);
         /* 4. 设置解析正文方法的默认值 */
@@ -35,6 +35,7 @@ import org.apache.catalina.Host;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.authenticator.AuthenticatorBase;
 import org.apache.catalina.core.AsyncContextImpl;
+import org.apache.catalina.mapper.MappingCache;
 import org.apache.catalina.util.ServerInfo;
 import org.apache.catalina.util.SessionConfig;
 import org.apache.catalina.util.URLEncoder;
@@ -331,6 +332,17 @@ public class CoyoteAdapter implements Adapter {
 //        req.setRequestThread();
 //
 //        try {
+//            if (!req.isAdmitted()) {
+//                // The request spent too long in the executor queue. Shed it
+//                // before any further work is done and without passing it to
+//                // the container.
+//                response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+//                response.setHeader("Retry-After", String.valueOf(connector.getProperty("admissionRetryAfter")));
+//                response.setHeader("Connection", "close");
+//                response.finishResponse();
+//                return;
+//            }
+//
 //            // Parse and set Catalina and configuration specific
 //            // request parameters
 //            postParseSuccess = postParseRequest(req, request, res, response);
@@ -615,12 +627,39 @@ public class CoyoteAdapter implements Adapter {
 //
 //        MessageBytes decodedURI = req.decodedURI();
 //
+//        // Request mapping.
+//        MessageBytes serverName;
+//        if (connector.getUseIPVHosts()) {
+//            serverName = req.localName();
+//            if (serverName.isNull()) {
+//                // well, they did ask for it
+//                res.action(ActionCode.REQ_LOCAL_NAME_ATTRIBUTE, null);
+//            }
+//        } else {
+//            serverName = req.serverName();
+//        }
+//
+//        // The decoded URI and the mapping result may be available from an
+//        // earlier request for the same host and URI
+//        MappingCache mappingCache = connector.getMappingCache();
+//        MappingCache.Key mappingCacheKey = null;
+//        boolean mappingCached = false;
+//
 //        // Filter CONNECT method
 //        if (req.method().equalsIgnoreCase("CONNECT")) {
 //            response.sendError(HttpServletResponse.SC_NOT_IMPLEMENTED, sm.getString("coyoteAdapter.connect"));
 //        } else {
 //            // No URI for CONNECT requests
-//            if (undecodedURI.getType() == MessageBytes.T_BYTES) {
+//            if (mappingCache != null) {
+//                mappingCacheKey = mappingCache.getKey(serverName, undecodedURI);
+//                if (mappingCacheKey != null) {
+//                    mappingCached = mappingCache.map(mappingCacheKey, decodedURI, request.getMappingData());
+//                }
+//            }
+//            if (mappingCached) {
+//                // The URI was checked, decoded and normalized when the
+//                // result was cached
+//            } else if (undecodedURI.getType() == MessageBytes.T_BYTES) {
 //                if (connector.getRejectSuspiciousURIs()) {
 //                    if (checkSuspiciousURIs(undecodedURI.getByteChunk())) {
 //                        response.sendError(400, sm.getString("coyoteAdapter.invalidURI"));
@@ -633,24 +672,22 @@ public class CoyoteAdapter implements Adapter {
 //                // Parse (and strip out) the path parameters
 //                parsePathParameters(req, request);
 //
-//                // URI decoding
+//                // URI decoding and normalization in a single pass
 //                // %xx decoding of the URL
 //                try {
-//                    req.getURLDecoder().convert(decodedURI.getByteChunk(),
-//                            connector.getEncodedSolidusHandlingInternal());
+//                    if (req.getURLDecoder().decodeAndNormalize(decodedURI.getByteChunk(),
+//                            connector.getEncodedSolidusHandlingInternal(), connector.getAllowBackslash())) {
+//                        // Character decoding
+//                        convertURI(decodedURI, request);
+//                        // URIEncoding values are limited to US-ASCII supersets.
+//                        // Therefore it is not necessary to check that the URI remains
+//                        // normalized after character decoding
+//                    } else {
+//                        response.sendError(400, sm.getString("coyoteAdapter.invalidURI"));
+//                    }
 //                } catch (IOException ioe) {
 //                    response.sendError(400, sm.getString("coyoteAdapter.invalidURIWithMessage", ioe.getMessage()));
 //                }
-//                // Normalization
-//                if (normalize(req.decodedURI(), connector.getAllowBackslash())) {
-//                    // Character decoding
-//                    convertURI(decodedURI, request);
-//                    // URIEncoding values are limited to US-ASCII supersets.
-//                    // Therefore it is not necessary to check that the URI remains
-//                    // normalized after character decoding
-//                } else {
-//                    response.sendError(400, sm.getString("coyoteAdapter.invalidURI"));
-//                }
 //            } else {
 //                /*
 //                 * The URI is chars or String, and has been sent using an in-memory protocol handler. The following
@@ -669,18 +706,6 @@ public class CoyoteAdapter implements Adapter {
 //            }
 //        }
 //
-//        // Request mapping.
-//        MessageBytes serverName;
-//        if (connector.getUseIPVHosts()) {
-//            serverName = req.localName();
-//            if (serverName.isNull()) {
-//                // well, they did ask for it
-//                res.action(ActionCode.REQ_LOCAL_NAME_ATTRIBUTE, null);
-//            }
-//        } else {
-//            serverName = req.serverName();
-//        }
-//
 //        // Version for the second mapping loop and
 //        // Context that we expect to get for that version
 //        String version = null;
@@ -695,8 +720,16 @@ public class CoyoteAdapter implements Adapter {
 //        }
 //
 //        while (mapRequired) {
-//            // This will map the the latest version by default
-//            connector.getService().getMapper().map(serverName, decodedURI, version, request.getMappingData());
+//            if (mappingCached) {
+//                // Only the first mapping may use the cached result
+//                mappingCached = false;
+//            } else {
+//                // This will map the the latest version by default
+//                connector.getService().getMapper().map(serverName, decodedURI, version, request.getMappingData());
+//                if (mappingCacheKey != null && version == null && !response.isError()) {
+//                    mappingCache.put(mappingCacheKey, decodedURI, request.getMappingData());
+//                }
+//            }
 //
 //            // If there is no context at this point, either this is a 404
 //            // because no ROOT context has been deployed or the URI was invalid
@@ -841,6 +874,13 @@ public class CoyoteAdapter implements Adapter {
 //            return true;
 //        }
 //
+//        // Decompress the request body as it is read if the connector is
+//        // configured to and the body uses a supported content coding
+//        if (connector.getDecompressRequestBody()) {
+//            req.inflateBody(connector.getMaxDecompressedRequestBodySize(),
+//                    connector.getMaxRequestBodyCompressionRatio());
+//        }
+//
 //        doConnectorAuthenticationAuthorization(req, request);
 //
 //        return true;
@@ -1009,15 +1049,16 @@ public class CoyoteAdapter implements Adapter {
 //            return;
 //        }
 //
-//        // Parse session id from cookies
-//        ServerCookies serverCookies = request.getServerCookies();
+//        String sessionCookieName = SessionConfig.getSessionCookieName(context);
+//
+//        // Parse session id from cookies. Only the session cookies need to be
+//        // parsed at this point.
+//        ServerCookies serverCookies = request.getServerCookies(sessionCookieName);
 //        int count = serverCookies.getCookieCount();
 //        if (count <= 0) {
 //            return;
 //        }
 //
-//        String sessionCookieName = SessionConfig.getSessionCookieName(context);
-//
 //        for (int i = 0; i < count; i++) {
 //            ServerCookie scookie = serverCookies.getCookie(i);
 //            if (scookie.getName().equals(sessionCookieName)) {
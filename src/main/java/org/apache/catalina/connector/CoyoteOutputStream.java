@@ -105,6 +105,14 @@ public class CoyoteOutputStream extends ServletOutputStream {
     }
 
 
+    /**
+     * Writes the remaining bytes from the given buffer. If the response buffer is empty, a buffer at least as large as
+     * the response buffer is passed to the connector without being copied into the response buffer.
+     *
+     * @param from The buffer containing the bytes to write
+     *
+     * @throws IOException if an I/O error occurs
+     */
     public void write(ByteBuffer from) throws IOException {
 //        Objects.requireNonNull(from);
 //        boolean nonBlocking = checkNonBlockingWrite();
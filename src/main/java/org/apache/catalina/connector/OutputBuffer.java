@@ -529,16 +529,7 @@ public class OutputBuffer extends Writer {
 //            throw new NullPointerException(sm.getString("outputBuffer.writeNull"));
 //        }
 //
-//        int sOff = off;
-//        int sEnd = off + len;
-//        while (sOff < sEnd) {
-//            int n = transfer(s, sOff, sEnd - sOff, cb);
-//            sOff += n;
-//            if (sOff < sEnd && isFull(cb)) {
-//                flushCharBuffer();
-//            }
-//        }
-//
+//        append(s, off, len);
 //        charsWritten += len;
         throw new UnsupportedEncodingException();
     }
@@ -699,7 +690,8 @@ public class OutputBuffer extends Writer {
     }
 
     /**
-     * Add data to the buffer.
+     * Add data to the buffer. The chars are encoded directly into the byte
+     * buffer rather than being copied into the char buffer first.
      *
      * @param src Char array
      * @param off Offset
@@ -708,41 +700,61 @@ public class OutputBuffer extends Writer {
      * @throws IOException Writing overflow data to the output channel failed
      */
     public void append(char src[], int off, int len) throws IOException {
-        // if we have limit and we're below
-        if (len <= cb.capacity() - cb.limit()) {
-            transfer(src, off, len, cb);
-            return;
+        prepareDirectChars();
+        while (len > 0) {
+            if (bb.capacity() - bb.limit() < 4) {
+                flushByteBuffer();
+            }
+            int n = conv.convert(src, off, len, bb);
+            off += n;
+            len -= n;
         }
+    }
 
-        // Optimization:
-        // If len-avail < length ( i.e. after we fill the buffer with
-        // what we can, the remaining will fit in the buffer ) we'll just
-        // copy the first part, flush, then copy the second part - 1 write
-        // and still have some space for more. We'll still have 2 writes, but
-        // we write more on the first.
-        if (len + cb.limit() < 2 * cb.capacity()) {
-            /*
-             * If the request length exceeds the size of the output buffer, flush the output buffer and then write the
-             * data directly. We can't avoid 2 writes, but we can write more on the second
-             */
-            int n = transfer(src, off, len, cb);
 
-            flushCharBuffer();
+    /**
+     * Add data to the buffer. The chars are encoded directly into the byte
+     * buffer rather than being copied into the char buffer first.
+     *
+     * @param s   String
+     * @param off Offset
+     * @param len Length
+     *
+     * @throws IOException Writing overflow data to the output channel failed
+     */
+    public void append(String s, int off, int len) throws IOException {
+        prepareDirectChars();
+        while (len > 0) {
+            if (bb.capacity() - bb.limit() < 4) {
+                flushByteBuffer();
+            }
+            int n = conv.convert(s, off, len, bb);
+            off += n;
+            len -= n;
+        }
+    }
 
-            transfer(src, off + n, len - n, cb);
-        } else {
-            // long write - flush the buffer and write the rest
-            // directly from source
-            flushCharBuffer();
 
-            realWriteChars(CharBuffer.wrap(src, off, len));
+    /*
+     * The char buffer is now only used for single chars. Anything it holds
+     * must be written first to retain the order of the output.
+     */
+    private void prepareDirectChars() throws IOException {
+        if (cb.remaining() > 0) {
+            flushCharBuffer();
         }
+        checkConverter();
     }
 
 
     public void append(ByteBuffer from) throws IOException {
         if (bb.remaining() == 0) {
             appendByteBuffer(from);
+        } else if (from.remaining() >= bb.capacity()) {
+            // Large write - send the buffered data and then write the new
+            // data without copying any of it into the buffer
+            flushByteBuffer();
+            appendByteBuffer(from);
         } else {
             transfer(from, bb);
             if (from.hasRemaining() && isFull(bb)) {
@@ -774,18 +786,16 @@ public class OutputBuffer extends Writer {
             return;
         }
 
-        int limit = bb.capacity();
-        int fromLimit = from.limit();
-        while (from.remaining() > limit) {
-            from.limit(from.position() + limit);
+        if (from.remaining() >= bb.capacity()) {
+            // The buffer is empty. Pass the whole of a large buffer, which is
+            // often a direct buffer, to the socket in a single write rather
+            // than copying it through the buffer in buffer sized pieces.
             realWriteBytes(from.slice());
             from.position(from.limit());
-            from.limit(fromLimit);
+            return;
         }
 
-        if (from.remaining() > 0) {
-            transfer(from, bb);
-        }
+        transfer(from, bb);
     }
 
     private void flushByteBuffer() throws IOException {
@@ -820,26 +830,6 @@ public class OutputBuffer extends Writer {
         return max;
     }
 
-    private int transfer(char[] buf, int off, int len, CharBuffer to) {
-        toWriteMode(to);
-        int max = Math.min(len, to.remaining());
-        if (max > 0) {
-            to.put(buf, off, max);
-        }
-        toReadMode(to);
-        return max;
-    }
-
-    private int transfer(String s, int off, int len, CharBuffer to) {
-        toWriteMode(to);
-        int max = Math.min(len, to.remaining());
-        if (max > 0) {
-            to.put(s, off, off + max);
-        }
-        toReadMode(to);
-        return max;
-    }
-
     private void transfer(ByteBuffer from, ByteBuffer to) {
         toWriteMode(to);
         int max = Math.min(from.remaining(), to.remaining());
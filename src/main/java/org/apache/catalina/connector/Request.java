@@ -102,6 +102,7 @@ import org.apache.tomcat.util.buf.StringUtils;
 import org.apache.tomcat.util.buf.UDecoder;
 import org.apache.tomcat.util.http.CookieProcessor;
 import org.apache.tomcat.util.http.FastHttpDateFormat;
+import org.apache.tomcat.util.http.FormParameterParser;
 import org.apache.tomcat.util.http.Parameters;
 import org.apache.tomcat.util.http.Parameters.FailReason;
 import org.apache.tomcat.util.http.Rfc6265CookieProcessor;
@@ -214,15 +215,10 @@ public class Request implements HttpServletRequest {
 
 
     /**
-     * The preferred Locales associated with this Request.
+     * The rarely used state of this Request, such as notes and preferred Locales. Created on first use and retained
+     * when the request is recycled.
      */
-    protected final ArrayList<Locale> locales = new ArrayList<>();
-
-
-    /**
-     * Internal notes associated with this request by Catalina components and event listeners.
-     */
-    private final transient HashMap<String,Object> notes = new HashMap<>();
+    private transient RequestExtension extension = null;
 
 
     /**
@@ -246,13 +242,13 @@ public class Request implements HttpServletRequest {
     /**
      * ServletInputStream.
      */
-    protected CoyoteInputStream inputStream = new CoyoteInputStream(inputBuffer);
+    protected CoyoteInputStream inputStream = null;
 
 
     /**
      * Reader.
      */
-    protected CoyoteReader reader = new CoyoteReader(inputBuffer);
+    protected CoyoteReader reader = null;
 
 
     /**
@@ -292,15 +288,22 @@ public class Request implements HttpServletRequest {
 
 
     /**
-     * Secure flag.
+     * The cookies with the name {@link #namedCookiesName} if only those cookies have been parsed from the cookie
+     * headers. Not used once all the cookies have been parsed.
      */
-    protected boolean secure = false;
+    protected ServerCookies namedCookies = null;
 
 
     /**
-     * The Subject associated with the current AccessControlContext
+     * The name of the cookies held in {@link #namedCookies} or {@code null} if no targeted parse has taken place.
+     */
+    protected String namedCookiesName = null;
+
+
+    /**
+     * Secure flag.
      */
-    protected transient Subject subject = null;
+    protected boolean secure = false;
 
 
     /**
@@ -311,9 +314,9 @@ public class Request implements HttpServletRequest {
 
 
     /**
-     * Hash map used in the getParametersMap method.
+     * Hash map used in the getParametersMap method. Created on first use.
      */
-    protected ParameterMap<String,String[]> parameterMap = new ParameterMap<>();
+    protected ParameterMap<String,String[]> parameterMap = null;
 
 
     /**
@@ -446,7 +449,6 @@ public class Request implements HttpServletRequest {
         usingInputStream = false;
         usingReader = false;
         userPrincipal = null;
-        subject = null;
         parametersParsed = false;
         if (parts != null) {
             for (Part part : parts) {
@@ -460,7 +462,6 @@ public class Request implements HttpServletRequest {
             parts = null;
         }
         partsParseException = null;
-        locales.clear();
         localesParsed = false;
         secure = false;
         remoteAddr = null;
@@ -473,16 +474,20 @@ public class Request implements HttpServletRequest {
 
         attributes.clear();
         sslAttributesParsed = false;
-        notes.clear();
+        if (extension != null) {
+            extension.recycle();
+        }
 
         recycleSessionInfo();
         recycleCookieInfo(false);
 
-        if (getDiscardFacades()) {
-            parameterMap = new ParameterMap<>();
-        } else {
-            parameterMap.setLocked(false);
-            parameterMap.clear();
+        if (parameterMap != null) {
+            if (getDiscardFacades()) {
+                parameterMap = null;
+            } else {
+                parameterMap.setLocked(false);
+                parameterMap.clear();
+            }
         }
 
         mappingData.recycle();
@@ -533,6 +538,10 @@ public class Request implements HttpServletRequest {
         cookiesParsed = false;
         cookiesConverted = false;
         cookies = null;
+        namedCookiesName = null;
+        if (namedCookies != null) {
+            namedCookies.recycle();
+        }
         if (recycleCoyote) {
             getCoyoteRequest().getCookies().recycle();
         }
@@ -761,7 +770,10 @@ public class Request implements HttpServletRequest {
      * @param name Name of the note to be returned
      */
     public Object getNote(String name) {
-        return notes.get(name);
+        if (extension == null) {
+            return null;
+        }
+        return extension.notes.get(name);
     }
 
 
@@ -771,7 +783,9 @@ public class Request implements HttpServletRequest {
      * @param name Name of the note to be removed
      */
     public void removeNote(String name) {
-        notes.remove(name);
+        if (extension != null) {
+            extension.notes.remove(name);
+        }
     }
 
 
@@ -792,7 +806,49 @@ public class Request implements HttpServletRequest {
      * @param value Object to be bound to the specified name
      */
     public void setNote(String name, Object value) {
-        notes.put(name, value);
+        getExtension().notes.put(name, value);
+    }
+
+
+    private RequestExtension getExtension() {
+        if (extension == null) {
+            extension = new RequestExtension();
+        }
+        return extension;
+    }
+
+
+    /**
+     * Obtain the preferred Locales associated with this Request. Replaces the former protected <code>locales</code>
+     * field for sub-classes.
+     *
+     * @return the modifiable list of preferred Locales
+     */
+    protected ArrayList<Locale> getPreferredLocales() {
+        return getExtension().locales;
+    }
+
+
+    /**
+     * Obtain the Subject associated with the current AccessControlContext. Replaces the former protected
+     * <code>subject</code> field for sub-classes.
+     *
+     * @return the Subject or <code>null</code> if none has been set
+     */
+    protected Subject getSubject() {
+        return extension == null ? null : extension.subject;
+    }
+
+
+    /**
+     * Set the Subject associated with the current AccessControlContext.
+     *
+     * @param subject The Subject
+     */
+    protected void setSubject(Subject subject) {
+        if (subject != null || extension != null) {
+            getExtension().subject = subject;
+        }
     }
 
 
@@ -1055,8 +1111,8 @@ public class Request implements HttpServletRequest {
             parseLocales();
         }
 
-        if (locales.size() > 0) {
-            return locales.get(0);
+        if (extension != null && extension.locales.size() > 0) {
+            return extension.locales.get(0);
         }
 
         return defaultLocale;
@@ -1075,8 +1131,8 @@ public class Request implements HttpServletRequest {
             parseLocales();
         }
 
-        if (locales.size() > 0) {
-            return Collections.enumeration(locales);
+        if (extension != null && extension.locales.size() > 0) {
+            return Collections.enumeration(extension.locales);
         }
         ArrayList<Locale> results = new ArrayList<>();
         results.add(defaultLocale);
@@ -1112,7 +1168,9 @@ public class Request implements HttpServletRequest {
     @Override
     public Map<String,String[]> getParameterMap() {
 
-        if (parameterMap.isLocked()) {
+        if (parameterMap == null) {
+            parameterMap = new ParameterMap<>();
+        } else if (parameterMap.isLocked()) {
             return parameterMap;
         }
 
@@ -1781,7 +1839,7 @@ public class Request implements HttpServletRequest {
      * @param locale The new preferred Locale
      */
     public void addLocale(Locale locale) {
-        locales.add(locale);
+        getExtension().locales.add(locale);
     }
 
 
@@ -1799,7 +1857,9 @@ public class Request implements HttpServletRequest {
      * Clear the collection of Locales associated with this Request.
      */
     public void clearLocales() {
-        locales.clear();
+        if (extension != null) {
+            extension.locales.clear();
+        }
     }
 
 
@@ -1905,11 +1965,14 @@ public class Request implements HttpServletRequest {
      */
     public void setUserPrincipal(final Principal principal) {
         if (Globals.IS_SECURITY_ENABLED && principal != null) {
+            RequestExtension extension = getExtension();
+            Subject subject = extension.subject;
             if (subject == null) {
                 final HttpSession session = getSession(false);
                 if (session == null) {
                     // Cache the subject in the request
                     subject = newSubject(principal);
+                    extension.subject = subject;
                 } else {
                     // Cache the subject in the request and the session
                     subject = (Subject) session.getAttribute(Globals.SUBJECT_ATTR);
@@ -1919,6 +1982,7 @@ public class Request implements HttpServletRequest {
                     } else {
                         subject.getPrincipals().add(principal);
                     }
+                    extension.subject = subject;
                 }
             } else {
                 subject.getPrincipals().add(principal);
@@ -2178,6 +2242,34 @@ public class Request implements HttpServletRequest {
     }
 
 
+    /**
+     * Return the server representation of the cookies with the given name associated with this request. If the cookie
+     * headers have not yet been parsed, only the cookies with the given name are parsed which avoids processing all the
+     * cookies when only one is required, such as when looking for the session cookie. The result may include cookies
+     * with other names so callers must check the name of each cookie.
+     *
+     * @param name The name of the required cookies
+     *
+     * @return the server cookies
+     */
+    public ServerCookies getServerCookies(String name) {
+        if (cookiesParsed) {
+            return coyoteRequest.getCookies();
+        }
+        if (namedCookies == null) {
+            namedCookies = new ServerCookies(1);
+        } else if (name.equals(namedCookiesName)) {
+            return namedCookies;
+        } else {
+            namedCookies.recycle();
+        }
+        namedCookiesName = name;
+        namedCookies.setLimit(connector.getMaxCookieCount());
+        getCookieProcessor().parseCookieHeader(coyoteRequest.getMimeHeaders(), name, namedCookies);
+        return namedCookies;
+    }
+
+
     /**
      * Return the value of the specified date header, if any; otherwise return -1.
      *
@@ -2774,6 +2866,9 @@ public class Request implements HttpServletRequest {
                 return;
             }
             factory.setSizeThreshold(mce.getFileSizeThreshold());
+            // The buffers are returned to the pool when the parts are deleted,
+            // at the latest when this request is recycled
+            factory.setBufferPool(connector.getMultipartBufferPool());
 
             FileUpload upload = new FileUpload();
             upload.setFileItemFactory(factory);
@@ -3081,6 +3176,7 @@ public class Request implements HttpServletRequest {
                 maxParameterCount -= parts.size();
             }
             parameters.setLimit(maxParameterCount);
+            parameters.setLazy(connector.getLazyParameterParsing());
 
             // getCharacterEncoding() may have been overridden to search for
             // hidden form field containing request encoding
@@ -3141,17 +3237,24 @@ public class Request implements HttpServletRequest {
                     parameters.setParseFailedReason(FailReason.POST_TOO_LARGE);
                     return;
                 }
-                byte[] formData = null;
-                if (len < CACHED_POST_LEN) {
-                    if (postData == null) {
-                        postData = new byte[CACHED_POST_LEN];
-                    }
-                    formData = postData;
-                } else {
-                    formData = new byte[len];
-                }
                 try {
-                    readPostBodyFully(formData, len);
+                    if (len < CACHED_POST_LEN) {
+                        if (postData == null) {
+                            postData = new byte[CACHED_POST_LEN];
+                        }
+                        readPostBodyFully(postData, len);
+                        parameters.processParameters(postData, 0, len);
+                    } else if (parameters.isLazy()) {
+                        // Lazy parsing indexes the parameters in place so the
+                        // whole body has to be retained
+                        byte[] formData = new byte[len];
+                        readPostBodyFully(formData, len);
+                        parameters.processParameters(formData, 0, len);
+                    } else {
+                        // Parse larger bodies as they are read rather than
+                        // buffering the whole body
+                        readPostBodyParameters(parameters, len);
+                    }
                 } catch (IOException e) {
                     // Client disconnect
                     Context context = getContext();
@@ -3161,11 +3264,18 @@ public class Request implements HttpServletRequest {
                     parameters.setParseFailedReason(FailReason.CLIENT_DISCONNECT);
                     return;
                 }
-                parameters.processParameters(formData, 0, len);
-            } else if ("chunked".equalsIgnoreCase(coyoteRequest.getHeader("transfer-encoding"))) {
-                byte[] formData = null;
+            } else if ("chunked".equalsIgnoreCase(coyoteRequest.getHeader("transfer-encoding")) ||
+                    coyoteRequest.isBodyInflated()) {
+                // The decompressed length of an inflated body is unknown
                 try {
-                    formData = readChunkedPostBody();
+                    if (parameters.isLazy()) {
+                        byte[] formData = readChunkedPostBody();
+                        if (formData != null) {
+                            parameters.processParameters(formData, 0, formData.length);
+                        }
+                    } else {
+                        readPostBodyParameters(parameters, -1);
+                    }
                 } catch (IllegalStateException ise) {
                     // chunkedPostTooLarge error
                     parameters.setParseFailedReason(FailReason.POST_TOO_LARGE);
@@ -3183,9 +3293,6 @@ public class Request implements HttpServletRequest {
                     }
                     return;
                 }
-                if (formData != null) {
-                    parameters.processParameters(formData, 0, formData.length);
-                }
             }
             success = true;
         } finally {
@@ -3245,6 +3352,50 @@ public class Request implements HttpServletRequest {
     }
 
 
+    /**
+     * Read the post body in buffer sized pieces, passing each piece to a {@link FormParameterParser} as it is read so
+     * that parameters are decoded while the rest of the body is being received and the whole body is never held in
+     * memory.
+     *
+     * @param parameters The parameters to add the body parameters to
+     * @param len        The length of the body or -1 if the length is not known (chunked encoding), in which case the
+     *                       maximum post size is enforced as the body is read
+     *
+     * @throws IOException           if an IO exception occurred, including the body ending before the expected length
+     * @throws IllegalStateException if the body is chunked and exceeds the maximum post size
+     */
+    protected void readPostBodyParameters(Parameters parameters, int len) throws IOException {
+        if (postData == null) {
+            postData = new byte[CACHED_POST_LEN];
+        }
+        byte[] buffer = postData;
+        FormParameterParser parser = new FormParameterParser(parameters);
+        int maxPostSize = connector.getMaxPostSize();
+        long total = 0;
+        while (len < 0 || total < len) {
+            int toRead = len < 0 ? buffer.length : (int) Math.min(buffer.length, len - total);
+            int inputLen = getStream().read(buffer, 0, toRead);
+            if (inputLen < 0) {
+                if (len < 0) {
+                    break;
+                }
+                throw new EOFException();
+            }
+            if (inputLen == 0 && len >= 0) {
+                throw new EOFException();
+            }
+            total += inputLen;
+            if (len < 0 && maxPostSize >= 0 && total > maxPostSize) {
+                // Too much data
+                checkSwallowInput();
+                throw new IllegalStateException(sm.getString("coyoteRequest.chunkedPostTooLarge"));
+            }
+            parser.parse(buffer, 0, inputLen);
+        }
+        parser.finish();
+    }
+
+
     /**
      * Read chunked post body.
      *
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.connector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import javax.security.auth.Subject;
+
+/**
+ * State of a {@link Request} that most requests never use. It is created the first time it is required and is then
+ * retained, and recycled, with the request so it is allocated at most once per pooled request.
+ */
+final class RequestExtension {
+
+    /**
+     * Internal notes associated with the request by Catalina components and event listeners.
+     */
+    final HashMap<String,Object> notes = new HashMap<>();
+
+
+    /**
+     * The preferred Locales associated with the request.
+     */
+    final ArrayList<Locale> locales = new ArrayList<>();
+
+
+    /**
+     * The Subject associated with the current AccessControlContext
+     */
+    Subject subject = null;
+
+
+    void recycle() {
+        notes.clear();
+        locales.clear();
+        subject = null;
+    }
+}
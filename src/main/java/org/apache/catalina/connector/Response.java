@@ -49,6 +49,7 @@ import jakarta.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.Session;
+import org.apache.catalina.core.ApplicationSessionCookieConfig;
 import org.apache.catalina.security.SecurityUtil;
 import org.apache.catalina.util.SessionConfig;
 import org.apache.coyote.ActionCode;
@@ -911,7 +912,14 @@ public class Response implements HttpServletResponse {
         String name = cookie.getName();
         final String headername = "Set-Cookie";
         final String startsWith = name + "=";
-        String header = generateCookieString(cookie);
+        String header = null;
+        if (!SecurityUtil.isPackageProtectionEnabled()) {
+            header = ApplicationSessionCookieConfig.generateSessionCookieHeader(getContext(), cookie,
+                    request.getRequest());
+        }
+        if (header == null) {
+            header = generateCookieString(cookie);
+        }
         boolean set = false;
         MimeHeaders headers = getCoyoteResponse().getMimeHeaders();
         int n = headers.size();
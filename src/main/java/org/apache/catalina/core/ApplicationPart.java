@@ -20,6 +20,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -48,6 +50,12 @@ public class ApplicationPart implements Part {
         this.location = location;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Any direct buffers holding the contents of the part are returned to the pool of the Connector. The container
+     * calls this for every part when the request is recycled.
+     */
     @Override
     public void delete() throws IOException {
         fileItem.delete();
@@ -124,6 +132,38 @@ public class ApplicationPart implements Part {
         return fileItem.getString(encoding);
     }
 
+    /**
+     * Obtain a read-only buffer containing the contents of this part. If the
+     * part was written to disk, the file is mapped into memory rather than
+     * being read onto the heap.
+     *
+     * @return A read-only buffer containing the contents of this part
+     *
+     * @throws IOException if the contents cannot be read
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        if (fileItem instanceof DiskFileItem) {
+            return ((DiskFileItem) fileItem).getByteBuffer();
+        }
+        return ByteBuffer.wrap(fileItem.get()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Open a read-only channel for the file containing the contents of this
+     * part. The caller is responsible for closing the channel.
+     *
+     * @return A read-only channel or {@code null} if the contents of this part
+     *             are held in memory
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChannel getFileChannel() throws IOException {
+        if (fileItem instanceof DiskFileItem) {
+            return ((DiskFileItem) fileItem).getFileChannel();
+        }
+        return null;
+    }
+
     /*
      * Adapted from FileUploadBase.getFileName()
      */
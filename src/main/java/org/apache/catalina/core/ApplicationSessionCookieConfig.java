@@ -17,16 +17,21 @@
 package org.apache.catalina.core;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
 import jakarta.servlet.SessionCookieConfig;
 import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleState;
 import org.apache.catalina.util.SessionConfig;
 import org.apache.tomcat.util.descriptor.web.Constants;
+import org.apache.tomcat.util.http.CookieProcessor;
+import org.apache.tomcat.util.http.CookieProcessorBase;
+import org.apache.tomcat.util.http.SameSiteCookies;
 import org.apache.tomcat.util.res.StringManager;
 
 public class ApplicationSessionCookieConfig implements SessionCookieConfig {
@@ -45,6 +50,15 @@ public class ApplicationSessionCookieConfig implements SessionCookieConfig {
     private String name;
     private StandardContext context;
 
+    /*
+     * The most recently generated Set-Cookie attributes for non-secure and
+     * secure session cookies respectively. Session cookies for a Context
+     * almost always have identical attributes so the attributes only need to
+     * be generated once.
+     */
+    private volatile CachedAttributes cachedAttributes = null;
+    private volatile CachedAttributes cachedSecureAttributes = null;
+
     public ApplicationSessionCookieConfig(StandardContext context) {
         this.context = context;
     }
@@ -179,6 +193,67 @@ public class ApplicationSessionCookieConfig implements SessionCookieConfig {
         return Collections.unmodifiableMap(attributes);
     }
 
+    /**
+     * Generates the {@code Set-Cookie} header value for a session cookie created by
+     * {@link #createSessionCookie(Context, String, boolean)}. The attributes that follow the name, value and expiry
+     * are re-used from the previous session cookie if the cookie and the cookie processor are configured in the same
+     * way.
+     *
+     * @param processor The cookie processor for the Context
+     * @param cookie    The session cookie
+     * @param request   The servlet request
+     *
+     * @return The header value in a form that can be added directly to the response
+     */
+    public String generateSessionCookieHeader(CookieProcessor processor, Cookie cookie, HttpServletRequest request) {
+        boolean secure = cookie.getSecure();
+        CachedAttributes cached = secure ? cachedSecureAttributes : cachedAttributes;
+        SameSiteCookies sameSiteCookies = null;
+        if (processor instanceof CookieProcessorBase) {
+            sameSiteCookies = ((CookieProcessorBase) processor).getSameSiteCookies();
+        }
+        Map<String,String> cookieAttributes = cookie.getAttributes();
+
+        if (cached == null || cached.processor != processor || cached.sameSiteCookies != sameSiteCookies ||
+                !cached.cookieAttributes.equals(cookieAttributes)) {
+            String value = processor.generateHeaderAttributes(cookie, request);
+            if (value == null) {
+                // Attributes can't be cached for this processor
+                return processor.generateHeader(cookie, request);
+            }
+            cached = new CachedAttributes(processor, sameSiteCookies, new HashMap<>(cookieAttributes), value);
+            if (secure) {
+                cachedSecureAttributes = cached;
+            } else {
+                cachedAttributes = cached;
+            }
+        }
+
+        return processor.generateHeader(cookie, request, cached.value);
+    }
+
+
+    /**
+     * Generates the {@code Set-Cookie} header value for a session cookie using the cached attributes of the session
+     * cookie configuration of the given Context, if it supports caching.
+     *
+     * @param context The Context for the web application
+     * @param cookie  The session cookie
+     * @param request The servlet request
+     *
+     * @return The header value or {@code null} if the session cookie configuration of the Context does not cache
+     *             attributes
+     */
+    public static String generateSessionCookieHeader(Context context, Cookie cookie, HttpServletRequest request) {
+        SessionCookieConfig scc = context.getServletContext().getSessionCookieConfig();
+        if (scc instanceof ApplicationSessionCookieConfig) {
+            return ((ApplicationSessionCookieConfig) scc).generateSessionCookieHeader(context.getCookieProcessor(),
+                    cookie, request);
+        }
+        return null;
+    }
+
+
     /**
      * Creates a new session cookie for the given session ID
      *
@@ -243,4 +318,20 @@ public class ApplicationSessionCookieConfig implements SessionCookieConfig {
 //        return cookie;
         throw new UnsupportedOperationException();
     }
+
+
+    private static final class CachedAttributes {
+        private final CookieProcessor processor;
+        private final SameSiteCookies sameSiteCookies;
+        private final Map<String,String> cookieAttributes;
+        private final String value;
+
+        private CachedAttributes(CookieProcessor processor, SameSiteCookies sameSiteCookies,
+                Map<String,String> cookieAttributes, String value) {
+            this.processor = processor;
+            this.sameSiteCookies = sameSiteCookies;
+            this.cookieAttributes = cookieAttributes;
+            this.value = value;
+        }
+    }
 }
@@ -20,6 +20,8 @@ package org.apache.catalina.core;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.management.ObjectName;
 
@@ -35,9 +37,14 @@ import org.apache.catalina.connector.Connector;
 import org.apache.catalina.mapper.Mapper;
 import org.apache.catalina.mapper.MapperListener;
 import org.apache.catalina.util.LifecycleMBeanBase;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.ajp.AjpNioProtocol;
+import org.apache.coyote.http11.Http11NioProtocol;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.net.NioPollerGroup;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.FairSharingExecutor;
 
 
 /**
@@ -113,6 +120,22 @@ public class StandardService extends LifecycleMBeanBase implements Service {
 
     private long gracefulStopAwaitMillis = 0;
 
+    /**
+     * The number of Pollers shared by the NIO Connectors of this Service. Zero
+     * means each Connector uses its own Poller.
+     */
+    private int sharedPollerCount = 0;
+
+    private NioPollerGroup pollerGroup = null;
+
+    /**
+     * Should Connectors that use the same named Executor be scheduled fairly
+     * rather than in arrival order?
+     */
+    private boolean fairExecutorSharing = false;
+
+    private final Map<String,FairSharingExecutor> fairExecutors = new HashMap<>();
+
     /*99999*/
 
 
@@ -150,6 +173,26 @@ public class StandardService extends LifecycleMBeanBase implements Service {
     }
 
 
+    public int getSharedPollerCount() {
+        return sharedPollerCount;
+    }
+
+
+    public void setSharedPollerCount(int sharedPollerCount) {
+        this.sharedPollerCount = sharedPollerCount;
+    }
+
+
+    public boolean getFairExecutorSharing() {
+        return fairExecutorSharing;
+    }
+
+
+    public void setFairExecutorSharing(boolean fairExecutorSharing) {
+        this.fairExecutorSharing = fairExecutorSharing;
+    }
+
+
     @Override
     public Mapper getMapper() {
         return mapper;
@@ -298,6 +341,15 @@ public class StandardService extends LifecycleMBeanBase implements Service {
                     log.error(sm.getString("standardService.connector.stopFailed", connectors[j]), e);
                 }
             }
+            if (connector.getProtocolHandler() != null &&
+                    connector.getProtocolHandler().getExecutor() instanceof FairSharingExecutor.Lane) {
+                // Restore the shared executor so the lane is re-created if the
+                // Connector is added again
+                FairSharingExecutor.Lane lane =
+                        (FairSharingExecutor.Lane) connector.getProtocolHandler().getExecutor();
+                lane.close();
+                connector.getProtocolHandler().setExecutor(lane.getParent().getExecutor());
+            }
             connector.setService(null);
             int k = 0;
             Connector results[] = new Connector[connectors.length - 1];
@@ -510,12 +562,50 @@ public class StandardService extends LifecycleMBeanBase implements Service {
         // Initialize our defined Connectors
         synchronized (connectorsLock) {
             for (Connector connector : connectors) {
+                configureSharedResources(connector);
                 connector.init();
             }
         }
     }
 
 
+    /**
+     * Configure a Connector to use the Pollers and Executor lanes shared by
+     * the Connectors of this Service, if enabled.
+     *
+     * @param connector The Connector to configure
+     */
+    private void configureSharedResources(Connector connector) {
+        ProtocolHandler protocolHandler = connector.getProtocolHandler();
+        if (protocolHandler == null) {
+            return;
+        }
+
+        if (sharedPollerCount > 0) {
+            synchronized (connectorsLock) {
+                if (pollerGroup == null) {
+                    pollerGroup = new NioPollerGroup(getName());
+                    pollerGroup.setPollerCount(sharedPollerCount);
+                }
+            }
+            if (protocolHandler instanceof Http11NioProtocol) {
+                ((Http11NioProtocol) protocolHandler).setPollerGroup(pollerGroup);
+            } else if (protocolHandler instanceof AjpNioProtocol) {
+                ((AjpNioProtocol) protocolHandler).setPollerGroup(pollerGroup);
+            }
+        }
+
+        if (fairExecutorSharing && protocolHandler.getExecutor() instanceof Executor) {
+            Executor executor = (Executor) protocolHandler.getExecutor();
+            FairSharingExecutor fairExecutor;
+            synchronized (fairExecutors) {
+                fairExecutor = fairExecutors.computeIfAbsent(executor.getName(), k -> new FairSharingExecutor(executor));
+            }
+            protocolHandler.setExecutor(fairExecutor.createLane(connector.toString()));
+        }
+    }
+
+
     @Override
     protected void destroyInternal() throws LifecycleException {
 //        mapperListener.destroy();
@@ -589,6 +679,7 @@ public class StandardService extends LifecycleMBeanBase implements Service {
 
         try {
             if (getState().isAvailable()) {
+                configureSharedResources(connector);
                 // todo 这个 start 里面没有实现
                 connector.start();
             }
@@ -34,7 +34,6 @@ import org.apache.catalina.WebResourceRoot;
 import org.apache.catalina.Wrapper;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
-import org.apache.tomcat.util.buf.Ascii;
 import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.res.StringManager;
@@ -61,6 +60,12 @@ public final class Mapper {
     volatile MappedHost[] hosts = new MappedHost[0];
 
 
+    /**
+     * The virtual hosts and aliases keyed by name, ignoring case, for request mapping. Updated with {@link #hosts}.
+     */
+    private volatile MappingTrie<MappedHost> hostTrie = MappingTrie.empty(true);
+
+
     /**
      * Default host name.
      */
@@ -105,6 +110,7 @@ public final class Mapper {
         /* 插入成功 */
         if (insertMap(hosts, newHosts, newHost)) {
             hosts = newHosts;
+            hostTrie = hostTrie.with(name, newHost);
             if (newHost.name.equals(defaultHostName)) {
                 defaultHost = newHost;
             }
@@ -155,14 +161,18 @@ public final class Mapper {
             return;
         }
         MappedHost[] newHosts = hosts.clone();
+        MappingTrie<MappedHost> newHostTrie = hostTrie;
         // Remove real host and all its aliases
         int j = 0;
         for (int i = 0; i < newHosts.length; i++) {
             if (newHosts[i].getRealHost() != host) {
                 newHosts[j++] = newHosts[i];
+            } else {
+                newHostTrie = newHostTrie.without(newHosts[i].name);
             }
         }
         hosts = Arrays.copyOf(newHosts, j);
+        hostTrie = newHostTrie;
     }
 
     /**
@@ -190,6 +200,7 @@ public final class Mapper {
         MappedHost[] newHosts = new MappedHost[hosts.length + 1];
         if (insertMap(hosts, newHosts, newAlias)) {
             hosts = newHosts;
+            hostTrie = hostTrie.with(newAlias.name, newAlias);
             if (newAlias.name.equals(defaultHostName)) {
                 defaultHost = newAlias;
             }
@@ -229,6 +240,7 @@ public final class Mapper {
 //        MappedHost[] newHosts = new MappedHost[hosts.length - 1];
 //        if (removeMap(hosts, newHosts, alias)) {
 //            hosts = newHosts;
+//            hostTrie = hostTrie.without(alias);
 //            hostMapping.getRealHost().removeAlias(hostMapping);
 //        }
         throw new UnsupportedOperationException();
@@ -462,6 +474,7 @@ public final class Mapper {
                 MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length + 1];
                 if (insertMap(oldWrappers, newWrappers, newWrapper)) {
                     context.wildcardWrappers = newWrappers;
+                    context.wildcardWrapperTrie = context.wildcardWrapperTrie.with(name, newWrapper);
                     int slashCount = slashCount(newWrapper.name);
                     if (slashCount > context.nesting) {
                         context.nesting = slashCount;
@@ -475,6 +488,7 @@ public final class Mapper {
                 MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length + 1];
                 if (insertMap(oldWrappers, newWrappers, newWrapper)) {
                     context.extensionWrappers = newWrappers;
+                    context.extensionWrapperTrie = context.extensionWrapperTrie.with(name, newWrapper);
                 }
             } else if (path.equals("/")) {
                 // Default wrapper
@@ -495,6 +509,7 @@ public final class Mapper {
                 MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length + 1];
                 if (insertMap(oldWrappers, newWrappers, newWrapper)) {
                     context.exactWrappers = newWrappers;
+                    context.exactWrapperTrie = context.exactWrapperTrie.with(name, newWrapper);
                 }
             }
         }
@@ -543,6 +558,7 @@ public final class Mapper {
 //                        }
 //                    }
 //                    context.wildcardWrappers = newWrappers;
+//                    context.wildcardWrapperTrie = context.wildcardWrapperTrie.without(name);
 //                }
 //            } else if (path.startsWith("*.")) {
 //                // Extension wrapper
@@ -554,6 +570,7 @@ public final class Mapper {
 //                MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length - 1];
 //                if (removeMap(oldWrappers, newWrappers, name)) {
 //                    context.extensionWrappers = newWrappers;
+//                    context.extensionWrapperTrie = context.extensionWrapperTrie.without(name);
 //                }
 //            } else if (path.equals("/")) {
 //                // Default wrapper
@@ -575,6 +592,7 @@ public final class Mapper {
 //                MappedWrapper[] newWrappers = new MappedWrapper[oldWrappers.length - 1];
 //                if (removeMap(oldWrappers, newWrappers, name)) {
 //                    context.exactWrappers = newWrappers;
+//                    context.exactWrapperTrie = context.exactWrapperTrie.without(name);
 //                }
 //            }
 //        }
@@ -721,21 +739,15 @@ public final class Mapper {
 //        }
 //
 //        // Virtual host mapping
-//        MappedHost[] hosts = this.hosts;
-//        MappedHost mappedHost = exactFindIgnoreCase(hosts, host);
+//        MappingTrie<MappedHost> hostTrie = this.hostTrie;
+//        char[] hostBuf = host.getBuffer();
+//        MappedHost mappedHost = hostTrie.get(hostBuf, host.getStart(), host.getEnd());
 //        if (mappedHost == null) {
 //            // Note: Internally, the Mapper does not use the leading * on a
 //            // wildcard host. This is to allow this shortcut.
 //            int firstDot = host.indexOf('.');
 //            if (firstDot > -1) {
-//                int offset = host.getOffset();
-//                try {
-//                    host.setOffset(firstDot + offset);
-//                    mappedHost = exactFindIgnoreCase(hosts, host);
-//                } finally {
-//                    // Make absolutely sure this gets reset
-//                    host.setOffset(offset);
-//                }
+//                mappedHost = hostTrie.get(hostBuf, host.getStart() + firstDot, host.getEnd());
 //            }
 //            if (mappedHost == null) {
 //                mappedHost = defaultHost;
@@ -754,47 +766,10 @@ public final class Mapper {
 //        uri.setLimit(-1);
 //
 //        // Context mapping
-//        ContextList contextList = mappedHost.contextList;
-//        MappedContext[] contexts = contextList.contexts;
-//        int pos = find(contexts, uri);
-//        if (pos == -1) {
-//            return;
-//        }
-//
-//        int lastSlash = -1;
-//        int uriEnd = uri.getEnd();
-//        int length = -1;
-//        boolean found = false;
-//        MappedContext context = null;
-//        while (pos >= 0) {
-//            context = contexts[pos];
-//            if (uri.startsWith(context.name)) {
-//                length = context.name.length();
-//                if (uri.getLength() == length) {
-//                    found = true;
-//                    break;
-//                } else if (uri.startsWithIgnoreCase("/", length)) {
-//                    found = true;
-//                    break;
-//                }
-//            }
-//            if (lastSlash == -1) {
-//                lastSlash = nthSlash(uri, contextList.nesting + 1);
-//            } else {
-//                lastSlash = lastSlash(uri);
-//            }
-//            uri.setEnd(lastSlash);
-//            pos = find(contexts, uri);
-//        }
-//        uri.setEnd(uriEnd);
-//
-//        if (!found) {
-//            if (contexts[0].name.equals("")) {
-//                context = contexts[0];
-//            } else {
-//                context = null;
-//            }
-//        }
+//        // The longest context path that matches the URI, which may be the
+//        // ROOT context
+//        MappedContext context =
+//                mappedHost.contextList.trie.getLongestPrefix(uri.getBuffer(), uri.getStart(), uri.getEnd());
 //        if (context == null) {
 //            return;
 //        }
@@ -849,14 +824,14 @@ public final class Mapper {
 //        path.setOffset(servletPath);
 //
 //        // Rule 1 -- Exact Match
-//        MappedWrapper[] exactWrappers = contextVersion.exactWrappers;
+//        MappingTrie<MappedWrapper> exactWrappers = contextVersion.exactWrapperTrie;
 //        internalMapExactWrapper(exactWrappers, path, mappingData);
 //
 //        // Rule 2 -- Prefix Match
 //        boolean checkJspWelcomeFiles = false;
-//        MappedWrapper[] wildcardWrappers = contextVersion.wildcardWrappers;
+//        MappingTrie<MappedWrapper> wildcardWrappers = contextVersion.wildcardWrapperTrie;
 //        if (mappingData.wrapper == null) {
-//            internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+//            internalMapWildcardWrapper(wildcardWrappers, path, mappingData);
 //            if (mappingData.wrapper != null && mappingData.jspWildCard) {
 //                char[] buf = path.getBuffer();
 //                if (buf[pathEnd - 1] == '/') {
@@ -886,7 +861,7 @@ public final class Mapper {
 //        }
 //
 //        // Rule 3 -- Extension Match
-//        MappedWrapper[] extensionWrappers = contextVersion.extensionWrappers;
+//        MappingTrie<MappedWrapper> extensionWrappers = contextVersion.extensionWrapperTrie;
 //        if (mappingData.wrapper == null && !checkJspWelcomeFiles) {
 //            internalMapExtensionWrapper(extensionWrappers, path, mappingData, true);
 //        }
@@ -910,7 +885,7 @@ public final class Mapper {
 //
 //                    // Rule 4b -- Welcome resources processing for prefix match
 //                    if (mappingData.wrapper == null) {
-//                        internalMapWildcardWrapper(wildcardWrappers, contextVersion.nesting, path, mappingData);
+//                        internalMapWildcardWrapper(wildcardWrappers, path, mappingData);
 //                    }
 //
 //                    // Rule 4c -- Welcome resources processing
@@ -1012,8 +987,9 @@ public final class Mapper {
     /**
      * Exact mapping.
      */
-    private void internalMapExactWrapper(MappedWrapper[] wrappers, CharChunk path, MappingData mappingData) {
-//        MappedWrapper wrapper = exactFind(wrappers, path);
+    private void internalMapExactWrapper(MappingTrie<MappedWrapper> wrappers, CharChunk path,
+                                         MappingData mappingData) {
+//        MappedWrapper wrapper = wrappers.get(path.getBuffer(), path.getStart(), path.getEnd());
 //        if (wrapper != null) {
 //            mappingData.requestPath.setString(wrapper.name);
 //            mappingData.wrapper = wrapper.object;
@@ -1034,47 +1010,20 @@ public final class Mapper {
     /**
      * Wildcard mapping.
      */
-    private void internalMapWildcardWrapper(MappedWrapper[] wrappers, int nesting, CharChunk path,
+    private void internalMapWildcardWrapper(MappingTrie<MappedWrapper> wrappers, CharChunk path,
                                             MappingData mappingData) {
 
-//        int pathEnd = path.getEnd();
-//
-//        int lastSlash = -1;
-//        int length = -1;
-//        int pos = find(wrappers, path);
-//        if (pos != -1) {
-//            boolean found = false;
-//            while (pos >= 0) {
-//                if (path.startsWith(wrappers[pos].name)) {
-//                    length = wrappers[pos].name.length();
-//                    if (path.getLength() == length) {
-//                        found = true;
-//                        break;
-//                    } else if (path.startsWithIgnoreCase("/", length)) {
-//                        found = true;
-//                        break;
-//                    }
-//                }
-//                if (lastSlash == -1) {
-//                    lastSlash = nthSlash(path, nesting + 1);
-//                } else {
-//                    lastSlash = lastSlash(path);
-//                }
-//                path.setEnd(lastSlash);
-//                pos = find(wrappers, path);
-//            }
-//            path.setEnd(pathEnd);
-//            if (found) {
-//                mappingData.wrapperPath.setString(wrappers[pos].name);
-//                if (path.getLength() > length) {
-//                    mappingData.pathInfo.setChars(path.getBuffer(), path.getOffset() + length,
-//                            path.getLength() - length);
-//                }
-//                mappingData.requestPath.setChars(path.getBuffer(), path.getOffset(), path.getLength());
-//                mappingData.wrapper = wrappers[pos].object;
-//                mappingData.jspWildCard = wrappers[pos].jspWildCard;
-//                mappingData.matchType = MappingMatch.PATH;
+//        MappedWrapper wrapper = wrappers.getLongestPrefix(path.getBuffer(), path.getStart(), path.getEnd());
+//        if (wrapper != null) {
+//            int length = wrapper.name.length();
+//            mappingData.wrapperPath.setString(wrapper.name);
+//            if (path.getLength() > length) {
+//                mappingData.pathInfo.setChars(path.getBuffer(), path.getOffset() + length, path.getLength() - length);
 //            }
+//            mappingData.requestPath.setChars(path.getBuffer(), path.getOffset(), path.getLength());
+//            mappingData.wrapper = wrapper.object;
+//            mappingData.jspWildCard = wrapper.jspWildCard;
+//            mappingData.matchType = MappingMatch.PATH;
 //        }
         throw new UnsupportedOperationException();
     }
@@ -1088,8 +1037,8 @@ public final class Mapper {
      * @param mappingData      Mapping data for result
      * @param resourceExpected Is this mapping expecting to find a resource
      */
-    private void internalMapExtensionWrapper(MappedWrapper[] wrappers, CharChunk path, MappingData mappingData,
-                                             boolean resourceExpected) {
+    private void internalMapExtensionWrapper(MappingTrie<MappedWrapper> wrappers, CharChunk path,
+                                             MappingData mappingData, boolean resourceExpected) {
 //        char[] buf = path.getBuffer();
 //        int pathEnd = path.getEnd();
 //        int servletPath = path.getOffset();
@@ -1109,130 +1058,16 @@ public final class Mapper {
 //                }
 //            }
 //            if (period >= 0) {
-//                path.setOffset(period + 1);
-//                path.setEnd(pathEnd);
-//                MappedWrapper wrapper = exactFind(wrappers, path);
+//                MappedWrapper wrapper = wrappers.get(buf, period + 1, pathEnd);
 //                if (wrapper != null && (resourceExpected || !wrapper.resourceOnly)) {
 //                    mappingData.wrapperPath.setChars(buf, servletPath, pathEnd - servletPath);
 //                    mappingData.requestPath.setChars(buf, servletPath, pathEnd - servletPath);
 //                    mappingData.wrapper = wrapper.object;
 //                    mappingData.matchType = MappingMatch.EXTENSION;
 //                }
-//                path.setOffset(servletPath);
-//                path.setEnd(pathEnd);
-//            }
-//        }
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int find(MapElement<T>[] map, CharChunk name) {
-//        return find(map, name, name.getStart(), name.getEnd());
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int find(MapElement<T>[] map, CharChunk name, int start, int end) {
-
-//        int a = 0;
-//        int b = map.length - 1;
-//
-//        // Special cases: -1 and 0
-//        if (b == -1) {
-//            return -1;
-//        }
-//
-//        if (compare(name, start, end, map[0].name) < 0) {
-//            return -1;
-//        }
-//        if (b == 0) {
-//            return 0;
-//        }
-//
-//        int i = 0;
-//        while (true) {
-//            i = (b + a) >>> 1;
-//            int result = compare(name, start, end, map[i].name);
-//            if (result == 1) {
-//                a = i;
-//            } else if (result == 0) {
-//                return i;
-//            } else {
-//                b = i;
-//            }
-//            if ((b - a) == 1) {
-//                int result2 = compare(name, start, end, map[b].name);
-//                if (result2 < 0) {
-//                    return a;
-//                } else {
-//                    return b;
-//                }
 //            }
 //        }
         throw new UnsupportedOperationException();
-
-    }
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int findIgnoreCase(MapElement<T>[] map, CharChunk name) {
-//        return findIgnoreCase(map, name, name.getStart(), name.getEnd());
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the index for the closest
-     * inferior or equal item in the given array.
-     */
-    private static <T> int findIgnoreCase(MapElement<T>[] map, CharChunk name, int start, int end) {
-
-//        int a = 0;
-//        int b = map.length - 1;
-//
-//        // Special cases: -1 and 0
-//        if (b == -1) {
-//            return -1;
-//        }
-//        if (compareIgnoreCase(name, start, end, map[0].name) < 0) {
-//            return -1;
-//        }
-//        if (b == 0) {
-//            return 0;
-//        }
-//
-//        int i = 0;
-//        while (true) {
-//            i = (b + a) >>> 1;
-//            int result = compareIgnoreCase(name, start, end, map[i].name);
-//            if (result == 1) {
-//                a = i;
-//            } else if (result == 0) {
-//                return i;
-//            } else {
-//                b = i;
-//            }
-//            if ((b - a) == 1) {
-//                int result2 = compareIgnoreCase(name, start, end, map[b].name);
-//                if (result2 < 0) {
-//                    return a;
-//                } else {
-//                    return b;
-//                }
-//            }
-//        }
-        throw new UnsupportedOperationException();
-
     }
 
 
@@ -1317,148 +1152,6 @@ public final class Mapper {
         return null;
     }
 
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the element that you were
-     * searching for. Otherwise it will return <code>null</code>.
-     */
-    private static <T, E extends MapElement<T>> E exactFind(E[] map, CharChunk name) {
-//        int pos = find(map, name);
-//        if (pos >= 0) {
-//            E result = map[pos];
-//            if (name.equals(result.name)) {
-//                return result;
-//            }
-//        }
-//        return null;
-        throw new UnsupportedOperationException();
-    }
-
-    /**
-     * Find a map element given its name in a sorted array of map elements. This will return the element that you were
-     * searching for. Otherwise it will return <code>null</code>.
-     *
-     * @see #findIgnoreCase(MapElement[], CharChunk)
-     */
-    private static <T, E extends MapElement<T>> E exactFindIgnoreCase(E[] map, CharChunk name) {
-//        int pos = findIgnoreCase(map, name);
-//        if (pos >= 0) {
-//            E result = map[pos];
-//            if (name.equalsIgnoreCase(result.name)) {
-//                return result;
-//            }
-//        }
-//        return null;
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Compare given char chunk with String. Return -1, 0 or +1 if inferior, equal, or superior to the String.
-     */
-    private static int compare(CharChunk name, int start, int end, String compareTo) {
-//        int result = 0;
-//        char[] c = name.getBuffer();
-//        int compareLen = compareTo.length();
-//        int len = compareLen;
-//        if ((end - start) < len) {
-//            len = end - start;
-//        }
-//        for (int i = 0; (i < len) && (result == 0); i++) {
-//            char nameChar = c[i + start];
-//            char compareToChar = compareTo.charAt(i);
-//            if (nameChar > compareToChar) {
-//                result = 1;
-//            } else if (nameChar < compareToChar) {
-//                result = -1;
-//            }
-//        }
-//        if (result == 0) {
-//            if (compareLen > (end - start)) {
-//                result = -1;
-//            } else if (compareLen < (end - start)) {
-//                result = 1;
-//            }
-//        }
-//        return result;
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Compare given char chunk with String ignoring case. Return -1, 0 or +1 if inferior, equal, or superior to the
-     * String.
-     */
-    private static int compareIgnoreCase(CharChunk name, int start, int end, String compareTo) {
-//        int result = 0;
-//        char[] c = name.getBuffer();
-//        int compareLen = compareTo.length();
-//        int len = compareLen;
-//        if ((end - start) < len) {
-//            len = end - start;
-//        }
-//        for (int i = 0; (i < len) && (result == 0); i++) {
-//            int nameLower = Ascii.toLower(c[i + start]);
-//            int compareLower = Ascii.toLower(compareTo.charAt(i));
-//            if (nameLower > compareLower) {
-//                result = 1;
-//            } else if (nameLower < compareLower) {
-//                result = -1;
-//            }
-//        }
-//        if (result == 0) {
-//            if (compareLen > (end - start)) {
-//                result = -1;
-//            } else if (compareLen < (end - start)) {
-//                result = 1;
-//            }
-//        }
-//        return result;
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Find the position of the last slash in the given char chunk.
-     */
-    private static int lastSlash(CharChunk name) {
-//        char[] c = name.getBuffer();
-//        int end = name.getEnd();
-//        int start = name.getStart();
-//        int pos = end;
-//
-//        while (pos > start) {
-//            if (c[--pos] == '/') {
-//                break;
-//            }
-//        }
-//
-//        return pos;
-        throw new UnsupportedOperationException();
-    }
-
-
-    /**
-     * Find the position of the nth slash, in the given char chunk.
-     */
-    private static int nthSlash(CharChunk name, int n) {
-//        char[] c = name.getBuffer();
-//        int end = name.getEnd();
-//        int start = name.getStart();
-//        int pos = start;
-//        int count = 0;
-//
-//        while (pos < end) {
-//            if ((c[pos++] == '/') && ((++count) == n)) {
-//                pos--;
-//                break;
-//            }
-//        }
-//
-//        return pos;
-        throw new UnsupportedOperationException();
-    }
-
-
     /**
      * Return the slash count in a given string.
      */
@@ -1620,20 +1313,23 @@ public final class Mapper {
 
         public final MappedContext[] contexts;
         public final int nesting;
+        public final MappingTrie<MappedContext> trie;
 
         public ContextList() {
-            this(new MappedContext[0], 0);
+            this(new MappedContext[0], 0, MappingTrie.empty(false));
         }
 
-        private ContextList(MappedContext[] contexts, int nesting) {
+        private ContextList(MappedContext[] contexts, int nesting, MappingTrie<MappedContext> trie) {
             this.contexts = contexts;
             this.nesting = nesting;
+            this.trie = trie;
         }
 
         public ContextList addContext(MappedContext mappedContext, int slashCount) {
             MappedContext[] newContexts = new MappedContext[contexts.length + 1];
             if (insertMap(contexts, newContexts, mappedContext)) {
-                return new ContextList(newContexts, Math.max(nesting, slashCount));
+                return new ContextList(newContexts, Math.max(nesting, slashCount),
+                        trie.with(mappedContext.name, mappedContext));
             }
             return null;
         }
@@ -1645,7 +1341,7 @@ public final class Mapper {
 //                for (MappedContext context : newContexts) {
 //                    newNesting = Math.max(newNesting, slashCount(context.name));
 //                }
-//                return new ContextList(newContexts, newNesting);
+//                return new ContextList(newContexts, newNesting, trie.without(path));
 //            }
 //            return null;
             throw new UnsupportedOperationException();
@@ -1674,6 +1370,9 @@ public final class Mapper {
         public MappedWrapper[] exactWrappers = new MappedWrapper[0];
         public MappedWrapper[] wildcardWrappers = new MappedWrapper[0];
         public MappedWrapper[] extensionWrappers = new MappedWrapper[0];
+        public volatile MappingTrie<MappedWrapper> exactWrapperTrie = MappingTrie.empty(false);
+        public volatile MappingTrie<MappedWrapper> wildcardWrapperTrie = MappingTrie.empty(false);
+        public volatile MappingTrie<MappedWrapper> extensionWrapperTrie = MappingTrie.empty(false);
         public int nesting = 0;
         private volatile boolean paused;
 
@@ -1,6 +1,7 @@
 package org.apache.catalina.mapper;
 
 import org.apache.catalina.*;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.util.LifecycleMBeanBase;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -144,9 +145,11 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //        } else if (Host.ADD_ALIAS_EVENT.equals(event.getType())) {
 //            // Handle dynamically adding host aliases
 //            mapper.addHostAlias(((Host) event.getSource()).getName(), event.getData().toString());
+//            invalidateMappingCaches();
 //        } else if (Host.REMOVE_ALIAS_EVENT.equals(event.getType())) {
 //            // Handle dynamically removing host aliases
 //            mapper.removeHostAlias(event.getData().toString());
+//            invalidateMappingCaches();
 //        } else if (Wrapper.ADD_MAPPING_EVENT.equals(event.getType())) {
 //            // Handle dynamically adding wrappers
 //            Wrapper wrapper = (Wrapper) event.getSource();
@@ -162,6 +165,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //            boolean jspWildCard = ("jsp".equals(wrapperName) && mapping.endsWith("/*"));
 //            mapper.addWrapper(hostName, contextPath, version, mapping, wrapper, jspWildCard,
 //                    context.isResourceOnlyServlet(wrapperName));
+//            invalidateMappingCaches();
 //        } else if (Wrapper.REMOVE_MAPPING_EVENT.equals(event.getType())) {
 //            // Handle dynamically removing wrappers
 //            Wrapper wrapper = (Wrapper) event.getSource();
@@ -177,6 +181,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //            String mapping = (String) event.getData();
 //
 //            mapper.removeWrapper(hostName, contextPath, version, mapping);
+//            invalidateMappingCaches();
 //        } else if (Context.ADD_WELCOME_FILE_EVENT.equals(event.getType())) {
 //            // Handle dynamically adding welcome files
 //            Context context = (Context) event.getSource();
@@ -191,6 +196,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //            String welcomeFile = (String) event.getData();
 //
 //            mapper.addWelcomeFile(hostName, contextPath, context.getWebappVersion(), welcomeFile);
+//            invalidateMappingCaches();
 //        } else if (Context.REMOVE_WELCOME_FILE_EVENT.equals(event.getType())) {
 //            // Handle dynamically removing welcome files
 //            Context context = (Context) event.getSource();
@@ -205,6 +211,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //            String welcomeFile = (String) event.getData();
 //
 //            mapper.removeWelcomeFile(hostName, contextPath, context.getWebappVersion(), welcomeFile);
+//            invalidateMappingCaches();
 //        } else if (Context.CLEAR_WELCOME_FILES_EVENT.equals(event.getType())) {
 //            // Handle dynamically clearing welcome files
 //            Context context = (Context) event.getSource();
@@ -217,6 +224,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //            }
 //
 //            mapper.clearWelcomeFiles(hostName, contextPath, context.getWebappVersion());
+//            invalidateMappingCaches();
 //        }
         throw new UnsupportedOperationException();
     }
@@ -275,6 +283,8 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
         // Default host may have changed
         findDefaultHost();
 
+        invalidateMappingCaches();
+
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("mapperListener.registerHost", host.getName(), domain, service));
         }
@@ -293,6 +303,8 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
         // Default host may have changed
         findDefaultHost();
 
+        invalidateMappingCaches();
+
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("mapperListener.unregisterHost", hostname, domain, service));
         }
@@ -319,6 +331,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
         for (String mapping : mappings) {
             mapper.removeWrapper(hostName, contextPath, version, mapping);
         }
+        invalidateMappingCaches();
 
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("mapperListener.unregisterWrapper", wrapperName, contextPath, service));
@@ -351,6 +364,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 
         mapper.addContextVersion(host.getName(), host, contextPath, context.getWebappVersion(), context, welcomeFiles,
                 resources, wrappers);
+        invalidateMappingCaches();
 
         if (log.isDebugEnabled()) {
             log.debug(sm.getString("mapperListener.registerContext", contextPath, service));
@@ -382,6 +396,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 
             mapper.removeContextVersion(context, hostName, contextPath, context.getWebappVersion());
         }
+        invalidateMappingCaches();
     }
 
 
@@ -401,6 +416,7 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
 //        List<WrapperMappingInfo> wrappers = new ArrayList<>();
 //        prepareWrapperMappingInfo(context, wrapper, wrappers);
 //        mapper.addWrappers(hostName, contextPath, version, wrappers);
+//        invalidateMappingCaches();
 //
 //        if (log.isDebugEnabled()) {
 //            log.debug(sm.getString("mapperListener.registerWrapper", wrapper.getName(), contextPath, service));
@@ -408,6 +424,18 @@ public class MapperListener extends LifecycleMBeanBase implements ContainerListe
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Discard the mapping results cached by the connectors of the service as the mappings have changed.
+     */
+    private void invalidateMappingCaches() {
+        for (Connector connector : service.findConnectors()) {
+            MappingCache mappingCache = connector.getMappingCache();
+            if (mappingCache != null) {
+                mappingCache.invalidate();
+            }
+        }
+    }
+
     /*
      * Populate <code>wrappers</code> list with information for registration of mappings for this wrapper in this
      * context.
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.util.Arrays;
+
+import jakarta.servlet.http.MappingMatch;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.Host;
+import org.apache.catalina.Wrapper;
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.collections.ConcurrentLruCache;
+
+/**
+ * Caches the decoded, normalized request URI and the result of mapping it, keyed by the raw host name and the raw
+ * request URI. The decoding depends on the connector configuration so each connector has its own cache.
+ * <p>
+ * Only mapping results that depend solely on the registered hosts, contexts and wrappers are cached. Results that
+ * required the web application resources to be consulted (welcome files and directory redirects) are not. The cache
+ * must be invalidated whenever the mappings change, which the {@link MapperListener} does. Results calculated before
+ * an invalidation are never returned after it.
+ */
+public final class MappingCache {
+
+    private final ConcurrentLruCache<Key,Entry> cache;
+
+    private volatile long generation = 0;
+
+
+    public MappingCache(int size) {
+        cache = new ConcurrentLruCache<>(size);
+    }
+
+
+    /**
+     * Create the key for a request.
+     *
+     * @param host The server name used for mapping
+     * @param uri  The undecoded request URI
+     *
+     * @return The key or <code>null</code> if the result of mapping the request can't be cached
+     */
+    public Key getKey(MessageBytes host, MessageBytes uri) {
+        if (uri.getType() != MessageBytes.T_BYTES) {
+            return null;
+        }
+        ByteChunk uriBC = uri.getByteChunk();
+        if (uriBC.indexOf(';', 0) > -1) {
+            // Path parameters are parsed per request
+            return null;
+        }
+        byte[] hostBytes;
+        int hostStart;
+        int hostLength;
+        if (host.isNull()) {
+            hostBytes = null;
+            hostStart = 0;
+            hostLength = 0;
+        } else if (host.getType() == MessageBytes.T_BYTES) {
+            ByteChunk hostBC = host.getByteChunk();
+            hostBytes = hostBC.getBuffer();
+            hostStart = hostBC.getStart();
+            hostLength = hostBC.getLength();
+        } else {
+            String hostName = host.toString();
+            hostBytes = new byte[hostName.length()];
+            for (int i = 0; i < hostBytes.length; i++) {
+                char c = hostName.charAt(i);
+                if (c > 0xFF) {
+                    return null;
+                }
+                hostBytes[i] = (byte) c;
+            }
+            hostStart = 0;
+            hostLength = hostBytes.length;
+        }
+        byte[] data = new byte[hostLength + uriBC.getLength()];
+        if (hostLength > 0) {
+            System.arraycopy(hostBytes, hostStart, data, 0, hostLength);
+        }
+        System.arraycopy(uriBC.getBuffer(), uriBC.getStart(), data, hostLength, uriBC.getLength());
+        return new Key(data, hostLength, generation);
+    }
+
+
+    /**
+     * Look up the cached result for a request.
+     *
+     * @param key         The key for the request
+     * @param decodedURI  Populated with the decoded request URI if a result is found
+     * @param mappingData Populated with the mapping result if a result is found. Must have been recycled.
+     *
+     * @return <code>true</code> if a result was found
+     */
+    public boolean map(Key key, MessageBytes decodedURI, MappingData mappingData) {
+        Entry entry = cache.get(key);
+        if (entry == null || entry.generation != generation) {
+            return false;
+        }
+
+        int length = entry.decodedURI.length();
+        CharChunk cc = decodedURI.getCharChunk();
+        cc.allocate(length, -1);
+        entry.decodedURI.getChars(0, length, cc.getBuffer(), 0);
+        decodedURI.setChars(cc.getBuffer(), 0, length);
+
+        mappingData.host = entry.host;
+        mappingData.context = entry.context;
+        mappingData.contextSlashCount = entry.contextSlashCount;
+        mappingData.contexts = entry.contexts;
+        mappingData.wrapper = entry.wrapper;
+        mappingData.jspWildCard = entry.jspWildCard;
+        mappingData.matchType = entry.matchType;
+        mappingData.requestPath.setString(entry.requestPath);
+        mappingData.wrapperPath.setString(entry.wrapperPath);
+        mappingData.pathInfo.setString(entry.pathInfo);
+        return true;
+    }
+
+
+    /**
+     * Cache the result of mapping a request, if the result may be cached.
+     *
+     * @param key         The key for the request
+     * @param decodedURI  The decoded request URI
+     * @param mappingData The result of mapping the decoded request URI
+     */
+    public void put(Key key, MessageBytes decodedURI, MappingData mappingData) {
+        if (key.generation != generation || !isCacheable(decodedURI, mappingData)) {
+            return;
+        }
+        cache.put(key, new Entry(key.generation, decodedURI.toString(), mappingData));
+        if (key.generation != generation) {
+            // Invalidated while the entry was being added
+            cache.clear();
+        }
+    }
+
+
+    /**
+     * Discard all the cached results. Called when the mappings change.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        cache.clear();
+    }
+
+
+    public int size() {
+        return cache.size();
+    }
+
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+
+    /**
+     * @return The proportion of look-ups that found a result, between <code>0</code> and <code>1</code>
+     */
+    public double getHitRatio() {
+        return cache.getHitRatio();
+    }
+
+
+    private static boolean isCacheable(MessageBytes decodedURI, MappingData mappingData) {
+        Context context = mappingData.context;
+        if (context == null || mappingData.wrapper == null || mappingData.matchType == null ||
+                !mappingData.redirectPath.isNull() || context.getPaused()) {
+            return false;
+        }
+        String uri = decodedURI.toString();
+        if (uri == null || uri.length() <= context.getPath().length() || uri.charAt(uri.length() - 1) == '/') {
+            // Welcome files may be mapped based on the resources present
+            return false;
+        }
+        if (mappingData.matchType == MappingMatch.DEFAULT && context.getMapperDirectoryRedirectEnabled()) {
+            // The mapping depends on whether the resource is a directory
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * The raw host name and request URI. The generation of the cache at the time the key was created is recorded so
+     * that results calculated before an invalidation are not cached, but it is not part of the identity of the key.
+     */
+    public static final class Key {
+
+        private final byte[] data;
+        private final int hostLength;
+        private final int hashCode;
+        private final long generation;
+
+        private Key(byte[] data, int hostLength, long generation) {
+            this.data = data;
+            this.hostLength = hostLength;
+            this.hashCode = 31 * Arrays.hashCode(data) + hostLength;
+            this.generation = generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && hostLength == other.hostLength && Arrays.equals(data, other.data);
+        }
+    }
+
+
+    private static final class Entry {
+
+        private final long generation;
+        private final String decodedURI;
+        private final Host host;
+        private final Context context;
+        private final int contextSlashCount;
+        private final Context[] contexts;
+        private final Wrapper wrapper;
+        private final boolean jspWildCard;
+        private final MappingMatch matchType;
+        private final String requestPath;
+        private final String wrapperPath;
+        private final String pathInfo;
+
+        private Entry(long generation, String decodedURI, MappingData mappingData) {
+            this.generation = generation;
+            this.decodedURI = decodedURI;
+            host = mappingData.host;
+            context = mappingData.context;
+            contextSlashCount = mappingData.contextSlashCount;
+            contexts = mappingData.contexts;
+            wrapper = mappingData.wrapper;
+            jspWildCard = mappingData.jspWildCard;
+            matchType = mappingData.matchType;
+            requestPath = mappingData.requestPath.toString();
+            wrapperPath = mappingData.wrapperPath.toString();
+            pathInfo = mappingData.pathInfo.toString();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.mapper;
+
+import java.util.Arrays;
+
+/**
+ * An immutable radix trie used by the {@link Mapper} to look up host names, context paths and servlet mappings in a
+ * single pass over the characters of the name being mapped.
+ * <p>
+ * Updates return a new trie that shares all the nodes not on the path to the updated key so that the trie can be
+ * replaced with a volatile write while requests continue to be mapped without locking. Updates are expected to be
+ * serialized by the caller.
+ * <p>
+ * A case insensitive trie folds ASCII upper case characters to lower case, both when keys are added and when names
+ * are looked up.
+ *
+ * @param <T> The type of the mapped values
+ */
+final class MappingTrie<T> {
+
+    private static final char[] EMPTY_CHARS = new char[0];
+    private static final Node<?>[] EMPTY_CHILDREN = new Node<?>[0];
+
+    private static final MappingTrie<?> EMPTY = new MappingTrie<>(new Node<>(EMPTY_CHARS, null), false);
+    private static final MappingTrie<?> EMPTY_IGNORE_CASE = new MappingTrie<>(new Node<>(EMPTY_CHARS, null), true);
+
+
+    private final Node<T> root;
+    private final boolean ignoreCase;
+
+
+    private MappingTrie(Node<T> root, boolean ignoreCase) {
+        this.root = root;
+        this.ignoreCase = ignoreCase;
+    }
+
+
+    /**
+     * @param ignoreCase Should keys be matched ignoring the case of ASCII characters?
+     * @param <T>        The type of the mapped values
+     *
+     * @return An empty trie
+     */
+    @SuppressWarnings("unchecked")
+    static <T> MappingTrie<T> empty(boolean ignoreCase) {
+        return (MappingTrie<T>) (ignoreCase ? EMPTY_IGNORE_CASE : EMPTY);
+    }
+
+
+    /**
+     * Return a trie with the given key mapped to the given value, replacing any existing mapping for the key.
+     *
+     * @param key   The key
+     * @param value The value
+     *
+     * @return The updated trie
+     */
+    MappingTrie<T> with(String key, T value) {
+        return new MappingTrie<>(insert(root, fold(key), 0, value), ignoreCase);
+    }
+
+
+    /**
+     * Return a trie without any mapping for the given key.
+     *
+     * @param key The key
+     *
+     * @return The updated trie, or this trie if the key was not mapped
+     */
+    MappingTrie<T> without(String key) {
+        Node<T> newRoot = remove(root, fold(key), 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty(ignoreCase);
+        }
+        return new MappingTrie<>(newRoot, ignoreCase);
+    }
+
+
+    /**
+     * Look up an exact match for a name.
+     *
+     * @param name The name
+     *
+     * @return The mapped value or <code>null</code> if there is no mapping for the name
+     */
+    T get(String name) {
+        char[] chars = name.toCharArray();
+        return get(chars, 0, chars.length);
+    }
+
+
+    /**
+     * Look up an exact match for a name.
+     *
+     * @param buf   The buffer holding the name
+     * @param start The start of the name in the buffer
+     * @param end   The end (exclusive) of the name in the buffer
+     *
+     * @return The mapped value or <code>null</code> if there is no mapping for the name
+     */
+    T get(char[] buf, int start, int end) {
+        Node<T> node = root;
+        int pos = start;
+        while (pos < end) {
+            node = child(node, buf, pos, end);
+            if (node == null) {
+                return null;
+            }
+            pos += node.label.length;
+        }
+        return node.value;
+    }
+
+
+    /**
+     * Look up the longest key that is a path prefix of a name. A key is a path prefix if it is equal to the name or if
+     * the name continues with '/' after the key. The empty key is therefore a path prefix of every name that is empty
+     * or starts with '/'.
+     *
+     * @param buf   The buffer holding the name
+     * @param start The start of the name in the buffer
+     * @param end   The end (exclusive) of the name in the buffer
+     *
+     * @return The value mapped to the longest matching key or <code>null</code> if no key matches
+     */
+    T getLongestPrefix(char[] buf, int start, int end) {
+        Node<T> node = root;
+        int pos = start;
+        T result = null;
+        while (true) {
+            if (node.value != null && (pos == end || buf[pos] == '/')) {
+                result = node.value;
+            }
+            if (pos == end) {
+                return result;
+            }
+            node = child(node, buf, pos, end);
+            if (node == null) {
+                return result;
+            }
+            pos += node.label.length;
+        }
+    }
+
+
+    /*
+     * Returns the child of the given node whose label matches the name at pos, or null.
+     */
+    private Node<T> child(Node<T> node, char[] buf, int pos, int end) {
+        int index = indexOf(node.firstChars, fold(buf[pos]));
+        if (index < 0) {
+            return null;
+        }
+        Node<T> child = node.children[index];
+        char[] label = child.label;
+        if (end - pos < label.length) {
+            return null;
+        }
+        for (int i = 1; i < label.length; i++) {
+            if (fold(buf[pos + i]) != label[i]) {
+                return null;
+            }
+        }
+        return child;
+    }
+
+
+    private static <T> Node<T> insert(Node<T> node, char[] key, int pos, T value) {
+        if (pos == key.length) {
+            return new Node<>(node.label, value, node.firstChars, node.children);
+        }
+        int index = indexOf(node.firstChars, key[pos]);
+        if (index < 0) {
+            Node<T> leaf = new Node<>(Arrays.copyOfRange(key, pos, key.length), value);
+            return node.withChild(-(index + 1), leaf, true);
+        }
+        Node<T> child = node.children[index];
+        char[] label = child.label;
+        int common = 1;
+        while (common < label.length && pos + common < key.length && label[common] == key[pos + common]) {
+            common++;
+        }
+        Node<T> newChild;
+        if (common == label.length) {
+            newChild = insert(child, key, pos + common, value);
+        } else {
+            // Split the child at the end of the common prefix
+            Node<T> suffix = new Node<>(Arrays.copyOfRange(label, common, label.length), child.value,
+                    child.firstChars, child.children);
+            Node<T> split = new Node<T>(Arrays.copyOf(label, common), null).withChild(0, suffix, true);
+            newChild = insert(split, key, pos + common, value);
+        }
+        return node.withChild(index, newChild, false);
+    }
+
+
+    /*
+     * Returns the node unchanged if the key is not mapped, the updated node or null if the node is no longer needed.
+     */
+    private static <T> Node<T> remove(Node<T> node, char[] key, int pos) {
+        Node<T> result;
+        if (pos == key.length) {
+            if (node.value == null) {
+                return node;
+            }
+            result = new Node<>(node.label, null, node.firstChars, node.children);
+        } else {
+            int index = indexOf(node.firstChars, key[pos]);
+            if (index < 0) {
+                return node;
+            }
+            Node<T> child = node.children[index];
+            char[] label = child.label;
+            if (key.length - pos < label.length ||
+                    !Arrays.equals(label, 0, label.length, key, pos, pos + label.length)) {
+                return node;
+            }
+            Node<T> newChild = remove(child, key, pos + label.length);
+            if (newChild == child) {
+                return node;
+            }
+            if (newChild == null) {
+                result = node.withoutChild(index);
+            } else {
+                result = node.withChild(index, newChild, false);
+            }
+        }
+        if (result.value == null) {
+            if (result.children.length == 0) {
+                return null;
+            }
+            if (result.children.length == 1 && result.label.length > 0) {
+                // Merge with the only child
+                Node<T> child = result.children[0];
+                char[] label = Arrays.copyOf(result.label, result.label.length + child.label.length);
+                System.arraycopy(child.label, 0, label, result.label.length, child.label.length);
+                return new Node<>(label, child.value, child.firstChars, child.children);
+            }
+        }
+        return result;
+    }
+
+
+    private char[] fold(String key) {
+        char[] chars = key.toCharArray();
+        if (ignoreCase) {
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = toLower(chars[i]);
+            }
+        }
+        return chars;
+    }
+
+
+    private char fold(char c) {
+        return ignoreCase ? toLower(c) : c;
+    }
+
+
+    private static char toLower(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        return c;
+    }
+
+
+    /*
+     * Binary search of the sorted first characters of the children. Follows the contract of Arrays.binarySearch().
+     */
+    private static int indexOf(char[] firstChars, char c) {
+        int low = 0;
+        int high = firstChars.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = firstChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+
+    /*
+     * The shared empty array is never written to so it is safe to use for any type of value.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] emptyChildren() {
+        return (Node<T>[]) EMPTY_CHILDREN;
+    }
+
+
+    private static final class Node<T> {
+
+        /*
+         * The characters on the edge leading to this node. Empty only for the root.
+         */
+        private final char[] label;
+        private final T value;
+
+        /*
+         * The first character of the label of each child, in ascending order.
+         */
+        private final char[] firstChars;
+        private final Node<T>[] children;
+
+        private Node(char[] label, T value) {
+            this(label, value, EMPTY_CHARS, emptyChildren());
+        }
+
+        private Node(char[] label, T value, char[] firstChars, Node<T>[] children) {
+            this.label = label;
+            this.value = value;
+            this.firstChars = firstChars;
+            this.children = children;
+        }
+
+        private Node<T> withChild(int index, Node<T> child, boolean insert) {
+            char[] newFirstChars;
+            Node<T>[] newChildren;
+            if (insert) {
+                newFirstChars = new char[firstChars.length + 1];
+                System.arraycopy(firstChars, 0, newFirstChars, 0, index);
+                System.arraycopy(firstChars, index, newFirstChars, index + 1, firstChars.length - index);
+                newChildren = Arrays.copyOf(children, children.length + 1);
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                newFirstChars[index] = child.label[0];
+            } else {
+                // The replacement child starts with the same character
+                newFirstChars = firstChars;
+                newChildren = children.clone();
+            }
+            newChildren[index] = child;
+            return new Node<>(label, value, newFirstChars, newChildren);
+        }
+
+        private Node<T> withoutChild(int index) {
+            char[] newFirstChars = new char[firstChars.length - 1];
+            System.arraycopy(firstChars, 0, newFirstChars, 0, index);
+            System.arraycopy(firstChars, index + 1, newFirstChars, index, newFirstChars.length - index);
+            Node<T>[] newChildren = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+            return new Node<>(label, value, newFirstChars, newChildren);
+        }
+    }
+}
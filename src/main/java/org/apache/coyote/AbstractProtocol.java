@@ -366,6 +366,50 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
         return endpoint.getConnectionCount();
     }
 
+    public boolean getUseAdmissionControl() {
+        return endpoint.getUseAdmissionControl();
+    }
+
+    public void setUseAdmissionControl(boolean useAdmissionControl) {
+        endpoint.setUseAdmissionControl(useAdmissionControl);
+    }
+
+    public long getAdmissionTarget() {
+        return endpoint.getAdmissionTarget();
+    }
+
+    public void setAdmissionTarget(long admissionTarget) {
+        endpoint.setAdmissionTarget(admissionTarget);
+    }
+
+    public long getAdmissionInterval() {
+        return endpoint.getAdmissionInterval();
+    }
+
+    public void setAdmissionInterval(long admissionInterval) {
+        endpoint.setAdmissionInterval(admissionInterval);
+    }
+
+    public int getAdmissionRetryAfter() {
+        return endpoint.getAdmissionRetryAfter();
+    }
+
+    public void setAdmissionRetryAfter(int admissionRetryAfter) {
+        endpoint.setAdmissionRetryAfter(admissionRetryAfter);
+    }
+
+    public long getAdmissionRejectedCount() {
+        return endpoint.getAdmissionRejectedCount();
+    }
+
+    public long getAdmissionDelayedAcceptCount() {
+        return endpoint.getAdmissionDelayedAcceptCount();
+    }
+
+    public long getAdmissionClosedKeepAliveCount() {
+        return endpoint.getAdmissionClosedKeepAliveCount();
+    }
+
     public void setAcceptorThreadPriority(int threadPriority) {
         endpoint.setAcceptorThreadPriority(threadPriority);
     }
@@ -918,6 +962,9 @@ public abstract class AbstractProtocol<S> implements ProtocolHandler, MBeanRegis
 //                }
 //
 //                processor.setSslSupport(wrapper.getSslSupport());
+//                // Pass on the admission control decision made when this
+//                // event left the executor queue
+//                processor.getRequest().setAdmitted(wrapper.isAdmitted());
 //
 //                SocketState state = SocketState.CLOSED;
 //                do {
@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.coyote;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.tomcat.util.collections.SynchronizedStack;
+import org.apache.tomcat.util.net.ApplicationBufferHandler;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Decompresses a request body that uses the gzip or deflate content coding as it is read from the underlying
+ * {@link InputBuffer}. The body is inflated in a single streaming pass so parameter parsing, multipart parsing and
+ * applications all see the decompressed body without buffering it.
+ * <p>
+ * {@link Inflater} instances are pooled as they are expensive to create. To protect against compression bombs, the
+ * total size of the decompressed body and the ratio of decompressed to compressed bytes may both be limited. The
+ * ratio is only checked once more than one buffer of data has been decompressed so that small, highly compressible
+ * bodies are not rejected.
+ */
+public class InflaterInputBuffer implements InputBuffer, ApplicationBufferHandler {
+
+    private static final StringManager sm = StringManager.getManager(InflaterInputBuffer.class);
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    /*
+     * Inflaters for the gzip coding have no zlib wrapper. The two kinds can't be mixed.
+     */
+    private static final SynchronizedStack<Inflater> gzipInflaters = new SynchronizedStack<>();
+    private static final SynchronizedStack<Inflater> deflateInflaters = new SynchronizedStack<>();
+
+
+    private enum State {
+        /* Waiting for the first byte of a further gzip member or the end of the body */
+        MEMBER_START,
+        HEADER,
+        HEADER_EXTRA_LENGTH,
+        HEADER_EXTRA,
+        HEADER_NAME,
+        HEADER_COMMENT,
+        HEADER_CRC,
+        BODY,
+        TRAILER,
+        END
+    }
+
+
+    private InputBuffer next;
+    private boolean gzip;
+    private long maxInflatedSize = -1;
+    private int maxInflateRatio = -1;
+
+    private Inflater inflater;
+    private State state;
+
+    /*
+     * The compressed data most recently read from the next buffer. Owned by the next buffer.
+     */
+    private ByteBuffer input;
+    private final byte[] output = new byte[BUFFER_SIZE];
+    private final ByteBuffer outputBuffer = ByteBuffer.wrap(output);
+    private final CRC32 crc = new CRC32();
+
+    private long compressedCount;
+    private long inflatedCount;
+    private long memberInflatedCount;
+    private int memberCount;
+
+    /*
+     * Used to collect the fixed size parts of the gzip format that may be split across reads.
+     */
+    private final byte[] field = new byte[GZIP_HEADER_SIZE];
+    private int fieldPos;
+    private int fieldLength;
+    private int flags;
+
+
+    /**
+     * Prepare to decompress a request body.
+     *
+     * @param next            The buffer from which the compressed body is read
+     * @param gzip            <code>true</code> for the gzip coding, <code>false</code> for the deflate coding
+     * @param maxInflatedSize The maximum size in bytes of the decompressed body or -1 for no limit
+     * @param maxInflateRatio The maximum ratio of decompressed to compressed bytes or -1 for no limit
+     */
+    public void init(InputBuffer next, boolean gzip, long maxInflatedSize, int maxInflateRatio) {
+        this.next = next;
+        this.gzip = gzip;
+        this.maxInflatedSize = maxInflatedSize;
+        this.maxInflateRatio = maxInflateRatio;
+        inflater = gzip ? gzipInflaters.pop() : deflateInflaters.pop();
+        if (inflater == null) {
+            inflater = new Inflater(gzip);
+        }
+        if (gzip) {
+            state = State.MEMBER_START;
+        } else {
+            state = State.BODY;
+        }
+    }
+
+
+    /**
+     * Return the {@link Inflater} to the pool and release the reference to the next buffer.
+     */
+    public void recycle() {
+        if (inflater != null) {
+            inflater.reset();
+            if (gzip) {
+                gzipInflaters.push(inflater);
+            } else {
+                deflateInflaters.push(inflater);
+            }
+            inflater = null;
+        }
+        next = null;
+        input = null;
+        state = null;
+        crc.reset();
+        compressedCount = 0;
+        inflatedCount = 0;
+        memberInflatedCount = 0;
+        memberCount = 0;
+        fieldPos = 0;
+        fieldLength = 0;
+        flags = 0;
+    }
+
+
+    // ---------------------------------------------------- InputBuffer Methods
+
+    @Override
+    public int doRead(ApplicationBufferHandler handler) throws IOException {
+        while (true) {
+            if (state == State.END) {
+                return -1;
+            }
+            if (state == State.BODY) {
+                int n = inflate();
+                if (n > 0) {
+                    outputBuffer.position(0).limit(n);
+                    handler.setByteBuffer(outputBuffer);
+                    return n;
+                }
+                if (inflater.finished()) {
+                    // Any unused input remains in the input buffer
+                    if (gzip) {
+                        startField(State.TRAILER, GZIP_TRAILER_SIZE);
+                    } else {
+                        state = State.END;
+                    }
+                    continue;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException(sm.getString("inflaterInputBuffer.dictionary"));
+                }
+                if (!inflater.needsInput()) {
+                    // Input was consumed without producing any output
+                    continue;
+                }
+            }
+            if (input == null || !input.hasRemaining()) {
+                int n = fill();
+                if (n == 0) {
+                    return 0;
+                }
+                if (n < 0) {
+                    if (state == State.MEMBER_START && memberCount > 0) {
+                        state = State.END;
+                        return -1;
+                    }
+                    throw new EOFException(sm.getString("inflaterInputBuffer.eof"));
+                }
+                if (state == State.BODY) {
+                    inflater.setInput(input);
+                }
+                continue;
+            }
+            parseGzip();
+        }
+    }
+
+
+    @Override
+    public int available() {
+        if (state == State.END) {
+            return 0;
+        }
+        if (input != null && input.hasRemaining()) {
+            return 1;
+        }
+        return next.available() > 0 ? 1 : 0;
+    }
+
+
+    // ----------------------------------------- ApplicationBufferHandler Methods
+
+    @Override
+    public void setByteBuffer(ByteBuffer buffer) {
+        input = buffer;
+    }
+
+
+    @Override
+    public ByteBuffer getByteBuffer() {
+        return input;
+    }
+
+
+    @Override
+    public void expand(int size) {
+        // Not used
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+    private int fill() throws IOException {
+        int n = next.doRead(this);
+        if (n > 0) {
+            compressedCount += n;
+        }
+        return n;
+    }
+
+
+    private int inflate() throws IOException {
+        if (inflater.needsInput() || inflater.finished()) {
+            return 0;
+        }
+        int n;
+        try {
+            n = inflater.inflate(output);
+        } catch (DataFormatException e) {
+            throw new IOException(sm.getString("inflaterInputBuffer.invalid"), e);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        inflatedCount += n;
+        if (maxInflatedSize > -1 && inflatedCount > maxInflatedSize) {
+            throw new IOException(sm.getString("inflaterInputBuffer.maxSize", Long.valueOf(maxInflatedSize)));
+        }
+        if (maxInflateRatio > 0 && inflatedCount > BUFFER_SIZE && inflatedCount / maxInflateRatio > compressedCount) {
+            throw new IOException(sm.getString("inflaterInputBuffer.maxRatio", Integer.valueOf(maxInflateRatio)));
+        }
+        if (gzip) {
+            crc.update(output, 0, n);
+            memberInflatedCount += n;
+        }
+        return n;
+    }
+
+
+    private void startField(State state, int length) {
+        this.state = state;
+        fieldPos = 0;
+        fieldLength = length;
+    }
+
+
+    /*
+     * Returns true once the current field has been collected.
+     */
+    private boolean collectField() {
+        int n = Math.min(fieldLength - fieldPos, input.remaining());
+        input.get(field, fieldPos, n);
+        fieldPos += n;
+        return fieldPos == fieldLength;
+    }
+
+
+    private int fieldShort(int offset) {
+        return (field[offset] & 0xFF) | ((field[offset + 1] & 0xFF) << 8);
+    }
+
+
+    private long fieldInt(int offset) {
+        return (fieldShort(offset) | ((long) fieldShort(offset + 2) << 16)) & 0xFFFFFFFFL;
+    }
+
+
+    /*
+     * Processes the gzip member header and trailer. Called with input remaining.
+     */
+    private void parseGzip() throws IOException {
+        switch (state) {
+            case MEMBER_START:
+                startField(State.HEADER, GZIP_HEADER_SIZE);
+                break;
+            case HEADER:
+                if (collectField()) {
+                    if (fieldShort(0) != GZIP_MAGIC) {
+                        if (memberCount == 0) {
+                            throw new IOException(sm.getString("inflaterInputBuffer.notGzip"));
+                        }
+                        // Trailing data after the last member is ignored
+                        input.position(input.limit());
+                        state = State.END;
+                        return;
+                    }
+                    if (field[2] != 8) {
+                        throw new IOException(sm.getString("inflaterInputBuffer.method", Integer.valueOf(field[2])));
+                    }
+                    flags = field[3] & 0xFF;
+                    nextHeaderField(FHCRC | FEXTRA | FNAME | FCOMMENT);
+                }
+                break;
+            case HEADER_EXTRA_LENGTH:
+                if (collectField()) {
+                    startField(State.HEADER_EXTRA, fieldShort(0));
+                    if (fieldLength == 0) {
+                        nextHeaderField(FHCRC | FNAME | FCOMMENT);
+                    }
+                }
+                break;
+            case HEADER_EXTRA: {
+                int skip = Math.min(fieldLength - fieldPos, input.remaining());
+                input.position(input.position() + skip);
+                fieldPos += skip;
+                if (fieldPos == fieldLength) {
+                    nextHeaderField(FHCRC | FNAME | FCOMMENT);
+                }
+                break;
+            }
+            case HEADER_NAME:
+            case HEADER_COMMENT:
+                while (input.hasRemaining()) {
+                    if (input.get() == 0) {
+                        nextHeaderField(state == State.HEADER_NAME ? FHCRC | FCOMMENT : FHCRC);
+                        break;
+                    }
+                }
+                break;
+            case HEADER_CRC:
+                if (collectField()) {
+                    nextHeaderField(0);
+                }
+                break;
+            case TRAILER:
+                if (collectField()) {
+                    if (fieldInt(0) != crc.getValue()) {
+                        throw new IOException(sm.getString("inflaterInputBuffer.crc"));
+                    }
+                    if (fieldInt(4) != (memberInflatedCount & 0xFFFFFFFFL)) {
+                        throw new IOException(sm.getString("inflaterInputBuffer.size"));
+                    }
+                    memberCount++;
+                    state = State.MEMBER_START;
+                }
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+
+    /*
+     * Moves to the next optional header field that is present, considering only the given flags, or to the body.
+     */
+    private void nextHeaderField(int remaining) {
+        int present = flags & remaining;
+        if ((present & FEXTRA) != 0) {
+            startField(State.HEADER_EXTRA_LENGTH, 2);
+        } else if ((present & FNAME) != 0) {
+            state = State.HEADER_NAME;
+        } else if ((present & FCOMMENT) != 0) {
+            state = State.HEADER_COMMENT;
+        } else if ((present & FHCRC) != 0) {
+            startField(State.HEADER_CRC, 2);
+        } else {
+            state = State.BODY;
+            inflater.reset();
+            crc.reset();
+            memberInflatedCount = 0;
+            if (input.hasRemaining()) {
+                inflater.setInput(input);
+            }
+        }
+    }
+}
@@ -33,6 +33,7 @@ import jakarta.servlet.ServletConnection;
 import org.apache.tomcat.util.buf.B2CConverter;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.buf.UDecoder;
+import org.apache.tomcat.util.http.HeaderName;
 import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.Parameters;
 import org.apache.tomcat.util.http.ServerCookies;
@@ -128,6 +129,13 @@ public final class Request {
      */
     private InputBuffer inputBuffer = null;
 
+    /**
+     * Decompresses the request body when {@link #inflateBody(long, int)} has been called. Retained across requests.
+     */
+    private InflaterInputBuffer inflaterInputBuffer = null;
+
+    private boolean bodyInflated = false;
+
 
     /**
      * URL decoder.
@@ -171,6 +179,12 @@ public final class Request {
 
     private boolean sendfile = true;
 
+    /*
+     * Set to false by the processor when the endpoint's admission controller
+     * has decided to shed this request.
+     */
+    private boolean admitted = true;
+
     /**
      * Holds request body reading error exception.
      */
@@ -469,7 +483,7 @@ public final class Request {
 
     public MessageBytes contentType() {
         if (contentTypeMB == null) {
-            contentTypeMB = headers.getValue("content-type");
+            contentTypeMB = headers.getValue(HeaderName.CONTENT_TYPE);
         }
         return contentTypeMB;
     }
@@ -591,6 +605,14 @@ public final class Request {
         this.sendfile = sendfile;
     }
 
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public void setAdmitted(boolean admitted) {
+        this.admitted = admitted;
+    }
+
     public boolean isFinished() {
         AtomicBoolean result = new AtomicBoolean(false);
         action(ActionCode.REQUEST_BODY_FULLY_READ, result);
@@ -634,7 +656,7 @@ public final class Request {
             action(ActionCode.ACK, ContinueResponseTiming.ON_REQUEST_BODY_READ);
         }
 
-        int n = inputBuffer.doRead(handler);
+        int n = bodyInflated ? inflaterInputBuffer.doRead(handler) : inputBuffer.doRead(handler);
         if (n > 0) {
             bytesRead += n;
         }
@@ -642,6 +664,59 @@ public final class Request {
     }
 
 
+    /**
+     * Decompress the request body as it is read if it uses the gzip or deflate content coding. The Content-Encoding and
+     * Content-Length headers are removed so that everything reading the body sees the decompressed body. This must be
+     * called before any of the body has been read.
+     *
+     * @param maxInflatedSize The maximum size in bytes of the decompressed body or -1 for no limit
+     * @param maxInflateRatio The maximum ratio of decompressed to compressed bytes or -1 for no limit
+     *
+     * @return <code>true</code> if the body will be decompressed
+     */
+    public boolean inflateBody(long maxInflatedSize, int maxInflateRatio) {
+        if (bodyInflated || bytesRead > 0) {
+            return false;
+        }
+        MessageBytes contentEncoding;
+        try {
+            contentEncoding = headers.getUniqueValue("content-encoding");
+        } catch (IllegalArgumentException e) {
+            // More than one coding has been applied
+            return false;
+        }
+        if (contentEncoding == null || contentEncoding.isNull()) {
+            return false;
+        }
+        String coding = contentEncoding.toString().trim();
+        boolean gzip;
+        if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+            gzip = true;
+        } else if (coding.equalsIgnoreCase("deflate")) {
+            gzip = false;
+        } else {
+            return false;
+        }
+        if (inflaterInputBuffer == null) {
+            inflaterInputBuffer = new InflaterInputBuffer();
+        }
+        inflaterInputBuffer.init(inputBuffer, gzip, maxInflatedSize, maxInflateRatio);
+        bodyInflated = true;
+        headers.removeHeader("content-encoding");
+        headers.removeHeader("content-length");
+        contentLength = -1;
+        return true;
+    }
+
+
+    /**
+     * @return <code>true</code> if the request body is being decompressed as it is read
+     */
+    public boolean isBodyInflated() {
+        return bodyInflated;
+    }
+
+
     // -------------------- Error tracking --------------------
 
     /**
@@ -762,6 +837,10 @@ public final class Request {
 
     public void recycle() {
         bytesRead = 0;
+        if (bodyInflated) {
+            inflaterInputBuffer.recycle();
+            bodyInflated = false;
+        }
 
         contentLength = -1;
         contentTypeMB = null;
@@ -781,6 +860,7 @@ public final class Request {
         remotePort = -1;
         available = 0;
         sendfile = true;
+        admitted = true;
 
         // There may be multiple calls to recycle but only the first should
         // trigger a change in the request ID until a new request has been
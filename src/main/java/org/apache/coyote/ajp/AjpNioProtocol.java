@@ -20,6 +20,7 @@ import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.net.NioChannel;
 import org.apache.tomcat.util.net.NioEndpoint;
+import org.apache.tomcat.util.net.NioPollerGroup;
 
 /**
  * This the NIO based protocol handler implementation for AJP.
@@ -41,6 +42,17 @@ public class AjpNioProtocol extends AbstractAjpProtocol<NioChannel> {
     }
 
 
+    // -------------------- Pool setup --------------------
+
+    public void setPollerGroup(NioPollerGroup pollerGroup) {
+        ((NioEndpoint) getEndpoint()).setPollerGroup(pollerGroup);
+    }
+
+    public NioPollerGroup getPollerGroup() {
+        return ((NioEndpoint) getEndpoint()).getPollerGroup();
+    }
+
+
     // ----------------------------------------------------- JMX related methods
 
     @Override
@@ -20,6 +20,7 @@ import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.net.NioChannel;
 import org.apache.tomcat.util.net.NioEndpoint;
+import org.apache.tomcat.util.net.NioPollerGroup;
 
 
 /**
@@ -68,6 +69,14 @@ public class Http11NioProtocol extends AbstractHttp11JsseProtocol<NioChannel> {
         throw new UnsupportedOperationException();
     }
 
+    public void setPollerGroup(NioPollerGroup pollerGroup) {
+        ((NioEndpoint) getEndpoint()).setPollerGroup(pollerGroup);
+    }
+
+    public NioPollerGroup getPollerGroup() {
+        return ((NioEndpoint) getEndpoint()).getPollerGroup();
+    }
+
 
     // ----------------------------------------------------- JMX related methods
 
@@ -16,6 +16,12 @@
  */
 package org.apache.tomcat.util.buf;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 /**
  * This class implements some basic ASCII character handling functions.
  *
@@ -35,6 +41,15 @@ public final class Ascii {
 
     private static final long OVERFLOW_LIMIT = Long.MAX_VALUE / 10;
 
+    /*
+     * Used to read 8 bytes at a time from a byte array so that they can be
+     * tested together (SIMD within a register).
+     */
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
     /*
      * Initialize character translation and type tables.
      */
@@ -106,4 +121,128 @@ public final class Ascii {
 //        return n;
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * Finds the first byte that is not ASCII (i.e. has the high bit set).
+     * Eight bytes are tested at a time.
+     *
+     * @param b     the bytes to search
+     * @param start the index of the first byte to test
+     * @param end   the index after the last byte to test
+     *
+     * @return the index of the first non-ASCII byte or <code>end</code> if all
+     *         the bytes are ASCII
+     */
+    public static int firstNonAscii(byte[] b, int start, int end) {
+        int i = start;
+        for (int limit = end - 7; i < limit; i += 8) {
+            long word = (long) LONG_VIEW.get(b, i) & HIGH_BITS;
+            if (word != 0) {
+                // Little endian so the first byte is the least significant
+                return i + (Long.numberOfTrailingZeros(word) >>> 3);
+            }
+        }
+        for (; i < end; i++) {
+            if (b[i] < 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Widens ASCII bytes to chars, stopping at the first non-ASCII byte.
+     *
+     * @param src      the bytes to convert
+     * @param srcStart the index of the first byte to convert
+     * @param dst      the destination for the chars
+     * @param dstStart the index of the first char to write
+     * @param len      the maximum number of bytes to convert
+     *
+     * @return the number of bytes converted
+     */
+    public static int decodeAscii(byte[] src, int srcStart, char[] dst, int dstStart, int len) {
+        int count = firstNonAscii(src, srcStart, srcStart + len) - srcStart;
+        for (int i = 0; i < count; i++) {
+            dst[dstStart + i] = (char) src[srcStart + i];
+        }
+        return count;
+    }
+
+    /**
+     * Narrows ASCII chars to bytes, stopping at the first non-ASCII char.
+     * Four chars are tested at a time.
+     *
+     * @param src      the chars to convert
+     * @param srcStart the index of the first char to convert
+     * @param dst      the destination for the bytes
+     * @param dstStart the index of the first byte to write
+     * @param len      the maximum number of chars to convert
+     *
+     * @return the number of chars converted
+     */
+    public static int encodeAscii(char[] src, int srcStart, byte[] dst, int dstStart, int len) {
+        int i = 0;
+        for (int limit = len - 3; i < limit; i += 4) {
+            int s = srcStart + i;
+            char c0 = src[s];
+            char c1 = src[s + 1];
+            char c2 = src[s + 2];
+            char c3 = src[s + 3];
+            if (((c0 | c1 | c2 | c3) & 0xFF80) != 0) {
+                break;
+            }
+            int d = dstStart + i;
+            dst[d] = (byte) c0;
+            dst[d + 1] = (byte) c1;
+            dst[d + 2] = (byte) c2;
+            dst[d + 3] = (byte) c3;
+        }
+        for (; i < len; i++) {
+            char c = src[srcStart + i];
+            if (c > 0x7F) {
+                break;
+            }
+            dst[dstStart + i] = (byte) c;
+        }
+        return i;
+    }
+
+    /**
+     * Narrows ASCII chars to bytes, stopping at the first non-ASCII char.
+     *
+     * @param src      the chars to convert
+     * @param srcStart the index of the first char to convert
+     * @param dst      the destination for the bytes
+     * @param dstStart the index of the first byte to write
+     * @param len      the maximum number of chars to convert
+     *
+     * @return the number of chars converted
+     */
+    public static int encodeAscii(String src, int srcStart, byte[] dst, int dstStart, int len) {
+        int i = 0;
+        for (; i < len; i++) {
+            char c = src.charAt(srcStart + i);
+            if (c > 0x7F) {
+                break;
+            }
+            dst[dstStart + i] = (byte) c;
+        }
+        return i;
+    }
+
+    /**
+     * Can the ASCII fast paths be used for the given character set? That is
+     * the case if bytes 0x00 to 0x7F always represent the same characters as
+     * they do in US-ASCII and never form part of a multi-byte sequence.
+     *
+     * @param charset the character set
+     *
+     * @return <code>true</code> if ASCII bytes and chars may be converted
+     *         directly
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.ISO_8859_1.equals(charset) ||
+                StandardCharsets.US_ASCII.equals(charset);
+    }
 }
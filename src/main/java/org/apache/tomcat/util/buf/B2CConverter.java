@@ -69,6 +69,11 @@ public class B2CConverter {
 
 
     private final CharsetDecoder decoder;
+    /*
+     * If true, leading ASCII bytes are widened directly and the decoder is
+     * only used from the first non-ASCII byte.
+     */
+    private final boolean asciiCompatible;
     private ByteBuffer bb = null;
     private CharBuffer cb = null;
 
@@ -93,6 +98,7 @@ public class B2CConverter {
 //        decoder = charset.newDecoder();
 //        decoder.onMalformedInput(action);
 //        decoder.onUnmappableCharacter(action);
+//        asciiCompatible = Ascii.isAsciiCompatible(charset);
         throw new UnsupportedOperationException();
     }
 
@@ -153,6 +159,12 @@ public class B2CConverter {
 //            bb.position(bc.getStart());
 //            leftovers.position(0);
 //        }
+//        if (asciiCompatible) {
+//            int n = Ascii.decodeAscii(bb.array(), bb.position(), cb.array(), cb.position(),
+//                    Math.min(bb.remaining(), cb.remaining()));
+//            bb.position(bb.position() + n);
+//            cb.position(cb.position() + n);
+//        }
 //        // Do the decoding and get the results into the byte chunk and the char
 //        // chunk
 //        result = decoder.decode(bb, cb, endOfInput);
@@ -229,6 +241,12 @@ public class B2CConverter {
 //            bb.position(bc.position());
 //            leftovers.position(0);
 //        }
+//        if (asciiCompatible) {
+//            int n = Ascii.decodeAscii(bb.array(), bb.position(), cb.array(), cb.position(),
+//                    Math.min(bb.remaining(), cb.remaining()));
+//            bb.position(bb.position() + n);
+//            cb.position(cb.position() + n);
+//        }
 //        // Do the decoding and get the results into the byte chunk and the char
 //        // chunk
 //        result = decoder.decode(bb, cb, endOfInput);
@@ -0,0 +1,242 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.buf;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Search and comparison routines for byte arrays that process eight bytes at a
+ * time by reading them as a single long (SIMD within a register). These are
+ * used for delimiter searches and case insensitive comparisons of header
+ * names, URI segments and similar that are performed for every request.
+ * <p>
+ * Bytes are read in little endian order so that the first byte in the array is
+ * the least significant byte of the long and the first match in a word is
+ * given by the number of trailing zeros.
+ */
+public final class ByteArrayUtils {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    // Adding these to a byte in the range 0x00-0x7F sets its high bit if the
+    // byte is >= 'A' or > 'Z' respectively
+    private static final long GE_UPPER_A = (0x80 - 'A') * LOW_BITS;
+    private static final long GT_UPPER_Z = (0x80 - 'Z' - 1) * LOW_BITS;
+
+
+    private ByteArrayUtils() {
+        // Utility class. Hide default constructor.
+    }
+
+
+    /**
+     * Returns the first instance of the given byte in the byte array between
+     * the specified start and end.
+     *
+     * @param bytes The byte array to search
+     * @param start The point to start searching from in the byte array
+     * @param end   The point to stop searching in the byte array
+     * @param b     The byte to search for
+     *
+     * @return The position of the first instance of the byte or -1 if the
+     *         byte is not found.
+     */
+    public static int indexOf(byte[] bytes, int start, int end, byte b) {
+        int offset = start;
+        long pattern = (b & 0xFF) * LOW_BITS;
+        for (int limit = end - 7; offset < limit; offset += 8) {
+            long found = zeroBytes((long) LONG_VIEW.get(bytes, offset) ^ pattern);
+            if (found != 0) {
+                return offset + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; offset < end; offset++) {
+            if (bytes[offset] == b) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the first instance of any of the given bytes in the byte array
+     * between the specified start and end.
+     *
+     * @param bytes  The byte array to search
+     * @param start  The point to start searching from in the byte array
+     * @param end    The point to stop searching in the byte array
+     * @param values The bytes to search for
+     *
+     * @return The position of the first instance of any of the bytes or -1 if
+     *         none of the bytes are found.
+     */
+    public static int indexOfAny(byte[] bytes, int start, int end, byte[] values) {
+        // The common cases are searched without allocating an array of patterns
+        switch (values.length) {
+            case 0:
+                return -1;
+            case 1:
+                return indexOf(bytes, start, end, values[0]);
+            case 2:
+                return indexOfAny(bytes, start, end, values[0], values[1], values[1]);
+            case 3:
+                return indexOfAny(bytes, start, end, values[0], values[1], values[2]);
+            default:
+                break;
+        }
+        int offset = start;
+        for (int limit = end - 7; offset < limit; offset += 8) {
+            long word = (long) LONG_VIEW.get(bytes, offset);
+            long found = 0;
+            for (byte value : values) {
+                found |= zeroBytes(word ^ ((value & 0xFF) * LOW_BITS));
+            }
+            if (found != 0) {
+                return offset + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; offset < end; offset++) {
+            for (byte value : values) {
+                if (bytes[offset] == value) {
+                    return offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+
+    private static int indexOfAny(byte[] bytes, int start, int end, byte b1, byte b2, byte b3) {
+        int offset = start;
+        long pattern1 = (b1 & 0xFF) * LOW_BITS;
+        long pattern2 = (b2 & 0xFF) * LOW_BITS;
+        long pattern3 = (b3 & 0xFF) * LOW_BITS;
+        for (int limit = end - 7; offset < limit; offset += 8) {
+            long word = (long) LONG_VIEW.get(bytes, offset);
+            long found = zeroBytes(word ^ pattern1) | zeroBytes(word ^ pattern2) | zeroBytes(word ^ pattern3);
+            if (found != 0) {
+                return offset + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; offset < end; offset++) {
+            byte b = bytes[offset];
+            if (b == b1 || b == b2 || b == b3) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Compares two byte sequences of the same length, ignoring the case of
+     * ASCII letters. This is equivalent to comparing the results of
+     * {@link Ascii#toLower(int)} for each byte.
+     *
+     * @param b1   The first byte array
+     * @param off1 The start of the sequence in the first array
+     * @param b2   The second byte array
+     * @param off2 The start of the sequence in the second array
+     * @param len  The number of bytes to compare
+     *
+     * @return <code>true</code> if the sequences are equal ignoring case
+     */
+    public static boolean equalsIgnoreCase(byte[] b1, int off1, byte[] b2, int off2, int len) {
+        int i = 0;
+        for (int limit = len - 7; i < limit; i += 8) {
+            long w1 = (long) LONG_VIEW.get(b1, off1 + i);
+            long w2 = (long) LONG_VIEW.get(b2, off2 + i);
+            if (w1 != w2 && toLower(w1) != toLower(w2)) {
+                return false;
+            }
+        }
+        for (; i < len; i++) {
+            if (toLower(b1[off1 + i]) != toLower(b2[off2 + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Compares a byte sequence to part of a String, ignoring the case of ASCII
+     * letters. As for {@link Ascii#toLower(int)}, only the low byte of each
+     * char is considered.
+     *
+     * @param b   The byte array
+     * @param off The start of the sequence in the byte array
+     * @param s   The String
+     * @param sOff The index of the first char of the String to compare
+     * @param len The number of bytes to compare
+     *
+     * @return <code>true</code> if the sequences are equal ignoring case
+     */
+    public static boolean equalsIgnoreCase(byte[] b, int off, String s, int sOff, int len) {
+        int i = 0;
+        for (int limit = len - 7; i < limit; i += 8) {
+            long w1 = (long) LONG_VIEW.get(b, off + i);
+            long w2 = 0;
+            for (int j = 7; j >= 0; j--) {
+                w2 = (w2 << 8) | (s.charAt(sOff + i + j) & 0xFF);
+            }
+            if (w1 != w2 && toLower(w1) != toLower(w2)) {
+                return false;
+            }
+        }
+        for (; i < len; i++) {
+            if (toLower(b[off + i]) != toLower(s.charAt(sOff + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /*
+     * Sets the high bit of each byte of the result that corresponds to a zero
+     * byte in the input. Bytes above the first zero byte may be flagged
+     * incorrectly but the least significant flagged byte is always correct.
+     */
+    private static long zeroBytes(long word) {
+        return (word - LOW_BITS) & ~word & HIGH_BITS;
+    }
+
+
+    /*
+     * Converts the ASCII upper case letters in all eight bytes to lower case.
+     */
+    private static long toLower(long word) {
+        long low = word & SEVEN_BITS;
+        long upper = (low + GE_UPPER_A) & ~(low + GT_UPPER_Z) & ~word & HIGH_BITS;
+        // 0x80 >>> 2 == 0x20, the difference between upper and lower case
+        return word | (upper >>> 2);
+    }
+
+
+    private static int toLower(int c) {
+        c &= 0xFF;
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+}
@@ -25,6 +25,7 @@ import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /*
  * In a server it is very important to be able to operate on
@@ -670,17 +671,30 @@ public final class ByteChunk extends AbstractChunk {
 //        if (b == null || len != s.length()) {
 //            return false;
 //        }
-//        int off = start;
-//        for (int i = 0; i < len; i++) {
-//            if (Ascii.toLower(b[off++]) != Ascii.toLower(s.charAt(i))) {
-//                return false;
-//            }
-//        }
-//        return true;
+//        return ByteArrayUtils.equalsIgnoreCase(b, start, s, 0, len);
         throw new UnsupportedOperationException();
     }
 
 
+    /**
+     * Compares the message bytes to the specified bytes, ignoring the case of
+     * ASCII letters.
+     *
+     * @param b2   the bytes to compare
+     * @param off2 the start of the bytes to compare
+     * @param len2 the number of bytes to compare
+     *
+     * @return <code>true</code> if the comparison succeeded, <code>false</code> otherwise
+     */
+    public boolean equalsIgnoreCase(byte[] b2, int off2, int len2) {
+        byte[] b1 = buff;
+        if (b1 == null || b2 == null || end - start != len2) {
+            return false;
+        }
+        return ByteArrayUtils.equalsIgnoreCase(b1, start, b2, off2, len2);
+    }
+
+
     public boolean equals(ByteChunk bb) {
 //        return equals(bb.getBytes(), bb.getStart(), bb.getLength());
         throw new UnsupportedOperationException();
@@ -698,14 +712,7 @@ public final class ByteChunk extends AbstractChunk {
 //            return false;
 //        }
 //
-//        int off1 = start;
-//
-//        while (len-- > 0) {
-//            if (b1[off1++] != b2[off2++]) {
-//                return false;
-//            }
-//        }
-//        return true;
+//        return Arrays.equals(b1, start, end, b2, off2, off2 + len2);
         throw new UnsupportedOperationException();
     }
 
@@ -778,13 +785,7 @@ public final class ByteChunk extends AbstractChunk {
 //        if (b == null || len + pos > end - start) {
 //            return false;
 //        }
-//        int off = start + pos;
-//        for (int i = 0; i < len; i++) {
-//            if (Ascii.toLower(b[off++]) != Ascii.toLower(s.charAt(i))) {
-//                return false;
-//            }
-//        }
-//        return true;
+//        return ByteArrayUtils.equalsIgnoreCase(b, start + pos, s, 0, len);
         throw new UnsupportedOperationException();
     }
 
@@ -825,16 +826,11 @@ public final class ByteChunk extends AbstractChunk {
      * @return The position of the first instance of the character or -1 if the character is not found.
      */
     public static int indexOf(byte bytes[], int start, int end, char s) {
-        int offset = start;
-
-        while (offset < end) {
-            byte b = bytes[offset];
-            if (b == s) {
-                return offset;
-            }
-            offset++;
+        if (s > 0x7F) {
+            // Can't match a byte
+            return -1;
         }
-        return -1;
+        return ByteArrayUtils.indexOf(bytes, start, end, (byte) s);
     }
 
 
@@ -849,14 +845,7 @@ public final class ByteChunk extends AbstractChunk {
      * @return The position of the first instance of the byte or -1 if the byte is not found.
      */
     public static int findByte(byte bytes[], int start, int end, byte b) {
-        int offset = start;
-        while (offset < end) {
-            if (bytes[offset] == b) {
-                return offset;
-            }
-            offset++;
-        }
-        return -1;
+        return ByteArrayUtils.indexOf(bytes, start, end, b);
     }
 
 
@@ -871,16 +860,7 @@ public final class ByteChunk extends AbstractChunk {
      * @return The position of the first instance of the byte or -1 if the byte is not found.
      */
     public static int findBytes(byte bytes[], int start, int end, byte b[]) {
-        int offset = start;
-        while (offset < end) {
-            for (byte value : b) {
-                if (bytes[offset] == value) {
-                    return offset;
-                }
-            }
-            offset++;
-        }
-        return -1;
+        return ByteArrayUtils.indexOfAny(bytes, start, end, b);
     }
 
 
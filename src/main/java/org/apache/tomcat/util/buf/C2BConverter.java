@@ -23,6 +23,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -38,6 +39,16 @@ public final class C2BConverter {
     private static final StringManager sm = StringManager.getManager(C2BConverter.class);
 
     private final CharsetEncoder encoder;
+    /*
+     * If true, leading ASCII chars are narrowed directly and the encoder is
+     * only used from the first non-ASCII char.
+     */
+    private final boolean asciiCompatible;
+    /*
+     * If true, chars are encoded directly rather than by the encoder when
+     * writing into the free space of a byte buffer.
+     */
+    private final boolean utf8;
     private ByteBuffer bb = null;
     private CharBuffer cb = null;
 
@@ -49,6 +60,8 @@ public final class C2BConverter {
     public C2BConverter(Charset charset) {
         encoder = charset.newEncoder();
         encoder.onUnmappableCharacter(CodingErrorAction.REPLACE).onMalformedInput(CodingErrorAction.REPLACE);
+        asciiCompatible = Ascii.isAsciiCompatible(charset);
+        utf8 = StandardCharsets.UTF_8.equals(charset);
         char[] left = new char[4];
         leftovers = CharBuffer.wrap(left);
     }
@@ -115,6 +128,12 @@ public final class C2BConverter {
 //            cb.position(cc.getStart());
 //            leftovers.position(0);
 //        }
+//        if (asciiCompatible) {
+//            int n = Ascii.encodeAscii(cb.array(), cb.position(), bb.array(), bb.position(),
+//                    Math.min(cb.remaining(), bb.remaining()));
+//            cb.position(cb.position() + n);
+//            bb.position(bb.position() + n);
+//        }
 //        // Do the decoding and get the results into the byte chunk and the char
 //        // chunk
 //        result = encoder.encode(cb, bb, false);
@@ -181,6 +200,12 @@ public final class C2BConverter {
 //            cb.position(cc.position());
 //            leftovers.position(0);
 //        }
+//        if (asciiCompatible) {
+//            int n = Ascii.encodeAscii(cb.array(), cb.position(), bb.array(), bb.position(),
+//                    Math.min(cb.remaining(), bb.remaining()));
+//            cb.position(cb.position() + n);
+//            bb.position(bb.position() + n);
+//        }
 //        // Do the decoding and get the results into the byte chunk and the char
 //        // chunk
 //        result = encoder.encode(cb, bb, false);
@@ -204,6 +229,193 @@ public final class C2BConverter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Convert chars to bytes, writing the bytes directly into the space
+     * between the limit and the capacity of the given buffer and advancing its
+     * limit. The chars are not copied into an intermediate buffer. The byte
+     * buffer must be backed by an array and must have at least four bytes of
+     * space so that any char can be converted.
+     *
+     * @param src The chars to convert
+     * @param off The index of the first char to convert
+     * @param len The number of chars to convert
+     * @param bc  The byte buffer to write to
+     *
+     * @return The number of chars consumed. This is less than
+     *             <code>len</code> if the byte buffer has filled.
+     *
+     * @throws IOException An encoding error occurred
+     */
+    public int convert(char[] src, int off, int len, ByteBuffer bc) throws IOException {
+        int n = 0;
+        if (asciiCompatible && leftovers.position() == 0) {
+            int start = bc.limit();
+            n = Ascii.encodeAscii(src, off, bc.array(), bc.arrayOffset() + start, Math.min(len, bc.capacity() - start));
+            bc.limit(start + n);
+            if (n == len) {
+                return n;
+            }
+        }
+        return n + convertRemaining(CharBuffer.wrap(src, off + n, len - n), bc);
+    }
+
+    /**
+     * Convert chars to bytes, writing the bytes directly into the space
+     * between the limit and the capacity of the given buffer and advancing its
+     * limit. The chars are not copied into an intermediate buffer. The byte
+     * buffer must be backed by an array and must have at least four bytes of
+     * space so that any char can be converted.
+     *
+     * @param src The String containing the chars to convert
+     * @param off The index of the first char to convert
+     * @param len The number of chars to convert
+     * @param bc  The byte buffer to write to
+     *
+     * @return The number of chars consumed. This is less than
+     *             <code>len</code> if the byte buffer has filled.
+     *
+     * @throws IOException An encoding error occurred
+     */
+    public int convert(String src, int off, int len, ByteBuffer bc) throws IOException {
+        int n = 0;
+        if (asciiCompatible && leftovers.position() == 0) {
+            int start = bc.limit();
+            n = Ascii.encodeAscii(src, off, bc.array(), bc.arrayOffset() + start, Math.min(len, bc.capacity() - start));
+            bc.limit(start + n);
+            if (n == len) {
+                return n;
+            }
+        }
+        return n + convertRemaining(CharBuffer.wrap(src, off + n, off + len), bc);
+    }
+
+    private int convertRemaining(CharBuffer in, ByteBuffer bc) throws IOException {
+        if (!in.hasRemaining()) {
+            return 0;
+        }
+        if (utf8) {
+            return encodeUtf8(in, bc);
+        }
+        int start = in.position();
+        ByteBuffer out = bc.duplicate();
+        out.position(bc.limit()).limit(bc.capacity());
+        CoderResult result;
+        if (leftovers.position() > 0) {
+            int pos = out.position();
+            int taken = 0;
+            // Loop until one char is encoded or there is a encoder error
+            do {
+                leftovers.put(in.get());
+                taken++;
+                leftovers.flip();
+                result = encoder.encode(leftovers, out, false);
+                leftovers.compact();
+            } while (result.isUnderflow() && out.position() == pos && in.hasRemaining());
+            if (result.isError() || result.isMalformed()) {
+                result.throwException();
+            }
+            if (out.position() == pos) {
+                // Still incomplete
+                bc.limit(out.position());
+                return in.position() - start;
+            }
+            // Return any chars the encoder did not use, such as a high
+            // surrogate that followed an unpaired one, to the input
+            in.position(in.position() - Math.min(leftovers.position(), taken));
+            leftovers.position(0);
+        }
+        result = encoder.encode(in, out, false);
+        if (result.isError() || result.isMalformed()) {
+            result.throwException();
+        } else if (result.isUnderflow() && in.hasRemaining()) {
+            // Retain the start of an incomplete character for the next call
+            leftovers.limit(leftovers.array().length);
+            leftovers.position(0);
+            leftovers.put(in);
+        }
+        bc.limit(out.position());
+        return in.position() - start;
+    }
+
+    /*
+     * UTF-8 is encoded directly. As with the encoder, an unpaired surrogate is
+     * replaced with '?' and a high surrogate at the end of the input is held
+     * until the next call.
+     */
+    private int encodeUtf8(CharBuffer in, ByteBuffer bc) {
+        byte[] dst = bc.array();
+        int base = bc.arrayOffset();
+        int pos = base + bc.limit();
+        int end = base + bc.capacity();
+        int len = in.remaining();
+        int i = 0;
+        if (leftovers.position() > 0 && len > 0) {
+            char high = leftovers.get(0);
+            char c = in.charAt(0);
+            if (Character.isLowSurrogate(c)) {
+                pos = putUtf8(Character.toCodePoint(high, c), dst, pos);
+                i = 1;
+            } else {
+                dst[pos++] = '?';
+            }
+            leftovers.position(0);
+        }
+        while (i < len) {
+            char c = in.charAt(i);
+            if (c < 0x80) {
+                if (pos == end) {
+                    break;
+                }
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                if (end - pos < 2) {
+                    break;
+                }
+                dst[pos++] = (byte) (0xC0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c)) {
+                    if (i + 1 == len) {
+                        leftovers.put(c);
+                        i++;
+                        break;
+                    }
+                    char low = in.charAt(i + 1);
+                    if (Character.isLowSurrogate(low)) {
+                        if (end - pos < 4) {
+                            break;
+                        }
+                        pos = putUtf8(Character.toCodePoint(c, low), dst, pos);
+                        i += 2;
+                        continue;
+                    }
+                }
+                if (pos == end) {
+                    break;
+                }
+                dst[pos++] = '?';
+            } else {
+                if (end - pos < 3) {
+                    break;
+                }
+                dst[pos++] = (byte) (0xE0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+            i++;
+        }
+        bc.limit(pos - base);
+        return i;
+    }
+
+    private static int putUtf8(int codePoint, byte[] dst, int pos) {
+        dst[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        dst[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        dst[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        dst[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+        return pos;
+    }
+
     public Charset getCharset() {
         return encoder.charset();
     }
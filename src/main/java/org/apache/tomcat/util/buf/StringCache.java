@@ -19,26 +19,34 @@ package org.apache.tomcat.util.buf;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CodingErrorAction;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map.Entry;
-import java.util.Objects;
-import java.util.TreeMap;
-
-import org.apache.juli.logging.Log;
-import org.apache.juli.logging.LogFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class implements a String cache for ByteChunk and CharChunk.
+ * <p>
+ * The cache adapts continuously to the traffic. Each cache has a fixed number
+ * of slots and every value may be stored in one of two slots. A compact
+ * frequency sketch (a count-min sketch of 4-bit counters that is periodically
+ * halved so that old popularity decays) estimates how often each value has
+ * been seen recently. On a miss, the new value replaces the least frequently
+ * seen of the current occupants of its two slots, but only if it has been seen
+ * more often than that occupant (TinyLFU admission). One-off values therefore
+ * do not displace popular ones while values that become popular, for example
+ * after a new application is deployed, are admitted quickly.
+ * <p>
+ * All operations are lock-free. Lookups and updates race benignly: the worst
+ * outcome of a race is a lost frequency increment or a cache miss.
  *
  * @author Remy Maucherat
  */
 public class StringCache {
 
 
-    private static final Log log = LogFactory.getLog(StringCache.class);
-
-
     // ------------------------------------------------------- Static Variables
 
 
@@ -51,6 +59,9 @@ public class StringCache {
     protected static boolean charEnabled = Boolean.getBoolean("tomcat.util.buf.StringCache.char.enabled");
 
 
+    /**
+     * No longer used. The cache no longer has a training phase.
+     */
     protected static int trainThreshold =
             Integer.getInteger("tomcat.util.buf.StringCache.trainThreshold", 20000).intValue();
 
@@ -62,52 +73,28 @@ public class StringCache {
             Integer.getInteger("tomcat.util.buf.StringCache.maxStringSize", 128).intValue();
 
 
-    /**
-     * Statistics hash map for byte chunk.
-     */
-    protected static final HashMap<ByteEntry,int[]> bcStats = new HashMap<>(cacheSize);
-
-
-    /**
-     * toString count for byte chunk.
-     */
-    protected static int bcCount = 0;
-
-
     /**
      * Cache for byte chunk.
      */
-    protected static volatile ByteEntry[] bcCache = null;
-
-
-    /**
-     * Statistics hash map for char chunk.
-     */
-    protected static final HashMap<CharEntry,int[]> ccStats = new HashMap<>(cacheSize);
-
-
-    /**
-     * toString count for char chunk.
-     */
-    protected static int ccCount = 0;
+    private static volatile Cache<ByteEntry> bcCache = new Cache<>(cacheSize);
 
 
     /**
      * Cache for char chunk.
      */
-    protected static volatile CharEntry[] ccCache = null;
+    private static volatile Cache<CharEntry> ccCache = new Cache<>(cacheSize);
 
 
     /**
      * Access count.
      */
-    protected static int accessCount = 0;
+    private static final LongAdder accessCount = new LongAdder();
 
 
     /**
      * Hit count.
      */
-    protected static int hitCount = 0;
+    private static final LongAdder hitCount = new LongAdder();
 
 
     // ------------------------------------------------------------ Properties
@@ -122,10 +109,14 @@ public class StringCache {
 
 
     /**
+     * Set the number of entries in each of the byte and char caches. The
+     * caches are cleared.
+     *
      * @param cacheSize The cacheSize to set.
      */
     public void setCacheSize(int cacheSize) {
         StringCache.cacheSize = cacheSize;
+        reset();
     }
 
 
@@ -163,7 +154,11 @@ public class StringCache {
 
     /**
      * @return Returns the trainThreshold.
+     *
+     * @deprecated The cache no longer has a training phase. This value is
+     *                 ignored.
      */
+    @Deprecated
     public int getTrainThreshold() {
         return trainThreshold;
     }
@@ -171,7 +166,11 @@ public class StringCache {
 
     /**
      * @param trainThreshold The trainThreshold to set.
+     *
+     * @deprecated The cache no longer has a training phase. This value is
+     *                 ignored.
      */
+    @Deprecated
     public void setTrainThreshold(int trainThreshold) {
         StringCache.trainThreshold = trainThreshold;
     }
@@ -181,7 +180,7 @@ public class StringCache {
      * @return Returns the accessCount.
      */
     public int getAccessCount() {
-        return accessCount;
+        return accessCount.intValue();
     }
 
 
@@ -189,81 +188,380 @@ public class StringCache {
      * @return Returns the hitCount.
      */
     public int getHitCount() {
-        return hitCount;
+        return hitCount.intValue();
+    }
+
+
+    /**
+     * @return The proportion of accesses, since the last reset, that were
+     *         served from the cache
+     */
+    public double getHitRatio() {
+        long accesses = accessCount.sum();
+        return accesses == 0 ? 0 : (double) hitCount.sum() / accesses;
+    }
+
+
+    /**
+     * @return The number of entries currently in the byte cache
+     */
+    public int getByteCacheEntryCount() {
+        return bcCache.entryCount();
+    }
+
+
+    /**
+     * @return The number of entries currently in the char cache
+     */
+    public int getCharCacheEntryCount() {
+        return ccCache.entryCount();
     }
 
 
     // -------------------------------------------------- Public Static Methods
 
 
+    /**
+     * Clear the caches and the statistics.
+     */
+    public void reset() {
+        bcCache = new Cache<>(cacheSize);
+        ccCache = new Cache<>(cacheSize);
+        accessCount.reset();
+        hitCount.reset();
+    }
 
 
-    // -------------------------------------------------- ByteEntry Inner Class
+    public static String toString(ByteChunk bc) {
+        try {
+            return toString(bc, CodingErrorAction.REPLACE, CodingErrorAction.REPLACE);
+        } catch (CharacterCodingException e) {
+            // Unreachable code. Use of REPLACE above means the exception will never be thrown.
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    public static String toString(ByteChunk bc, CodingErrorAction malformedInputAction,
+            CodingErrorAction unmappableCharacterAction) throws CharacterCodingException {
+
+        int length = bc.getLength();
+        if (!byteEnabled || length > maxStringSize) {
+            return bc.toStringInternal(malformedInputAction, unmappableCharacterAction);
+        }
+        accessCount.increment();
+
+        byte[] buf = bc.getBuffer();
+        int start = bc.getStart();
+        int end = start + length;
+        Charset charset = bc.getCharset();
+        int hash = hash(buf, start, end);
+
+        Cache<ByteEntry> cache = bcCache;
+        int first = cache.firstSlot(hash);
+        int second = cache.secondSlot(hash);
+        ByteEntry entry = cache.get(first);
+        if (entry == null || !entry.matches(hash, buf, start, end, charset, malformedInputAction,
+                unmappableCharacterAction)) {
+            entry = cache.get(second);
+        }
+        if (entry != null && entry.matches(hash, buf, start, end, charset, malformedInputAction,
+                unmappableCharacterAction)) {
+            cache.sketch.increment(hash);
+            hitCount.increment();
+            return entry.value;
+        }
+
+        String value = bc.toStringInternal(malformedInputAction, unmappableCharacterAction);
+        cache.admit(first, second, hash, () -> new ByteEntry(hash, Arrays.copyOfRange(buf, start, end), charset,
+                malformedInputAction, unmappableCharacterAction, value));
+        return value;
+    }
+
+
+    public static String toString(CharChunk cc) {
+
+        int length = cc.getLength();
+        if (!charEnabled || length > maxStringSize) {
+            return cc.toStringInternal();
+        }
+        accessCount.increment();
+
+        char[] buf = cc.getBuffer();
+        int start = cc.getStart();
+        int end = start + length;
+        int hash = hash(buf, start, end);
+
+        Cache<CharEntry> cache = ccCache;
+        int first = cache.firstSlot(hash);
+        int second = cache.secondSlot(hash);
+        CharEntry entry = cache.get(first);
+        if (entry == null || !entry.matches(hash, buf, start, end)) {
+            entry = cache.get(second);
+        }
+        if (entry != null && entry.matches(hash, buf, start, end)) {
+            cache.sketch.increment(hash);
+            hitCount.increment();
+            return entry.value;
+        }
+
+        String value = cc.toStringInternal();
+        cache.admit(first, second, hash, () -> new CharEntry(hash, Arrays.copyOfRange(buf, start, end), value));
+        return value;
+    }
+
+
+    private static int hash(byte[] buf, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        return spread(hash);
+    }
+
+
+    private static int hash(char[] buf, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        return spread(hash);
+    }
 
-    private static class ByteEntry {
 
-        private byte[] name = null;
-        private Charset charset = null;
-        private CodingErrorAction malformedInputAction = null;
-        private CodingErrorAction unmappableCharacterAction = null;
-        private String value = null;
+    private static int spread(int hash) {
+        // Murmur3 32-bit finalizer
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        return hash ^ (hash >>> 16);
+    }
+
+
+    // ------------------------------------------------------ Cache Inner Class
+
+
+    private interface EntryFactory<E> {
+        E create();
+    }
+
+
+    private static class Entry {
+
+        protected final int hash;
+        protected final String value;
+
+        Entry(int hash, String value) {
+            this.hash = hash;
+            this.value = value;
+        }
 
         @Override
         public String toString() {
             return value;
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(malformedInputAction, unmappableCharacterAction, value);
+
+    private static class Cache<E extends Entry> {
+
+        private final AtomicReferenceArray<E> slots;
+        private final int mask;
+        private final FrequencySketch sketch;
+
+        Cache(int size) {
+            int capacity = Math.max(2, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+            slots = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            sketch = new FrequencySketch(capacity);
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
+        E get(int slot) {
+            return slots.get(slot);
+        }
+
+        int firstSlot(int hash) {
+            return hash & mask;
+        }
+
+        int secondSlot(int hash) {
+            // Use the upper bits and ensure the second slot differs from the first
+            int slot = (hash >>> 16) & mask;
+            return slot == (hash & mask) ? slot ^ 1 : slot;
+        }
+
+        /*
+         * Record an access that missed and, if the value is more popular than
+         * the least popular of the current occupants of its slots, replace it.
+         */
+        void admit(int first, int second, int hash, EntryFactory<E> factory) {
+            sketch.increment(hash);
+            E firstEntry = slots.get(first);
+            if (firstEntry == null) {
+                slots.compareAndSet(first, null, factory.create());
+                return;
+            }
+            E secondEntry = slots.get(second);
+            if (secondEntry == null) {
+                slots.compareAndSet(second, null, factory.create());
+                return;
+            }
+            int firstFrequency = sketch.frequency(firstEntry.hash);
+            int secondFrequency = sketch.frequency(secondEntry.hash);
+            int victim = first;
+            E victimEntry = firstEntry;
+            int victimFrequency = firstFrequency;
+            if (secondFrequency < firstFrequency) {
+                victim = second;
+                victimEntry = secondEntry;
+                victimFrequency = secondFrequency;
             }
-            if (obj == null) {
-                return false;
+            if (sketch.frequency(hash) > victimFrequency) {
+                slots.compareAndSet(victim, victimEntry, factory.create());
             }
-            if (getClass() != obj.getClass()) {
-                return false;
+        }
+
+        int entryCount() {
+            int result = 0;
+            for (int i = 0; i < slots.length(); i++) {
+                if (slots.get(i) != null) {
+                    result++;
+                }
             }
-            ByteEntry other = (ByteEntry) obj;
-            return Objects.equals(malformedInputAction, other.malformedInputAction) &&
-                    Objects.equals(unmappableCharacterAction, other.unmappableCharacterAction) &&
-                    Objects.equals(value, other.value);
+            return result;
         }
     }
 
 
+    /**
+     * Count-min sketch with four rows of 4-bit counters. Sixteen counters are
+     * packed into each long. Once the number of increments reaches ten times
+     * the number of cache slots, all the counters are halved.
+     */
+    private static class FrequencySketch {
+
+        private static final long[] SEEDS = { 0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L,
+                0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final AtomicLongArray table;
+        private final int mask;
+        private final int sampleSize;
+        private final AtomicInteger additions = new AtomicInteger();
+        private final AtomicBoolean resetting = new AtomicBoolean();
+
+        FrequencySketch(int capacity) {
+            int length = Math.max(8, capacity);
+            table = new AtomicLongArray(length);
+            mask = length - 1;
+            sampleSize = 10 * capacity;
+        }
 
-    // -------------------------------------------------- CharEntry Inner Class
+        int frequency(int hash) {
+            int result = 15;
+            for (int i = 0; i < 4; i++) {
+                result = Math.min(result, (int) ((table.get(indexOf(hash, i)) >>> offsetOf(hash, i)) & 0xF));
+            }
+            return result;
+        }
 
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+            }
+            if (added && additions.incrementAndGet() >= sampleSize) {
+                halve();
+            }
+        }
 
-    private static class CharEntry {
+        private boolean incrementAt(int index, int offset) {
+            while (true) {
+                long value = table.get(index);
+                if (((value >>> offset) & 0xF) == 0xF) {
+                    return false;
+                }
+                if (table.compareAndSet(index, value, value + (1L << offset))) {
+                    return true;
+                }
+            }
+        }
 
-        private char[] name = null;
-        private String value = null;
+        private void halve() {
+            if (!resetting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                for (int i = 0; i < table.length(); i++) {
+                    long value;
+                    do {
+                        value = table.get(i);
+                    } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+                }
+                additions.set(additions.get() / 2);
+            } finally {
+                resetting.set(false);
+            }
+        }
 
-        @Override
-        public String toString() {
-            return value;
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
         }
 
-        @Override
-        public int hashCode() {
-            return value.hashCode();
+        private static int offsetOf(int hash, int row) {
+            // Select one of the 16 counters in the long
+            return ((hash >>> (row << 3)) & 0xF) << 2;
         }
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj instanceof CharEntry) {
-                return value.equals(((CharEntry) obj).value);
-            }
-            return false;
+
+    // -------------------------------------------------- ByteEntry Inner Class
+
+    private static class ByteEntry extends Entry {
+
+        private final byte[] name;
+        private final Charset charset;
+        private final CodingErrorAction malformedInputAction;
+        private final CodingErrorAction unmappableCharacterAction;
+
+        ByteEntry(int hash, byte[] name, Charset charset, CodingErrorAction malformedInputAction,
+                CodingErrorAction unmappableCharacterAction, String value) {
+            super(hash, value);
+            this.name = name;
+            this.charset = charset;
+            this.malformedInputAction = malformedInputAction;
+            this.unmappableCharacterAction = unmappableCharacterAction;
+        }
+
+        boolean matches(int hash, byte[] buf, int start, int end, Charset charset,
+                CodingErrorAction malformedInputAction, CodingErrorAction unmappableCharacterAction) {
+            return this.hash == hash && this.charset == charset &&
+                    this.malformedInputAction == malformedInputAction &&
+                    this.unmappableCharacterAction == unmappableCharacterAction &&
+                    Arrays.equals(name, 0, name.length, buf, start, end);
+        }
+    }
+
+
+
+    // -------------------------------------------------- CharEntry Inner Class
+
+
+    private static class CharEntry extends Entry {
+
+        private final char[] name;
+
+        CharEntry(int hash, char[] name, String value) {
+            super(hash, value);
+            this.name = name;
         }
 
+        boolean matches(int hash, char[] buf, int start, int end) {
+            return this.hash == hash && Arrays.equals(name, 0, name.length, buf, start, end);
+        }
     }
 
-}
\ No newline at end of file
+}
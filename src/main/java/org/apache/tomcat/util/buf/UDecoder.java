@@ -171,6 +171,196 @@ public final class UDecoder {
         mb.setEnd(idx);
     }
 
+
+    /**
+     * URLDecode and normalize a request URI in a single pass, modifying the
+     * source. The result is the same as calling
+     * {@link #convert(ByteChunk, EncodedSolidusHandling)} followed by
+     * normalization of "\", "//", "/./" and "/../" but the URI is only scanned
+     * once and no bytes are copied more than once. Assumes source bytes are
+     * encoded using a superset of US-ASCII as per RFC 7230.
+     *
+     * @param mb                     The URL encoded bytes
+     * @param encodedSolidusHandling How should the %2f sequence handled by the
+     *                                   decoder? A %2f sequence that is passed
+     *                                   through is not treated as a segment
+     *                                   separator.
+     * @param allowBackslash         <code>true</code> if backslash characters
+     *                                   are allowed and should be treated as
+     *                                   '/'
+     *
+     * @return <code>false</code> if the URI is empty, does not start with '/',
+     *             contains a null byte or a backslash that is not allowed or
+     *             if normalizing it would require going above the root,
+     *             otherwise <code>true</code>
+     *
+     * @throws IOException Invalid %xx URL encoding
+     */
+    public boolean decodeAndNormalize(ByteChunk mb, EncodedSolidusHandling encodedSolidusHandling,
+            boolean allowBackslash) throws IOException {
+
+        final byte[] buff = mb.getBytes();
+        final int start = mb.getStart();
+        final int end = mb.getEnd();
+
+        if (start == end) {
+            return false;
+        }
+
+        // Bytes are read from r and written to w. Decoding and normalization
+        // only ever remove bytes so w never overtakes r.
+        int r = start;
+        int w = start;
+        // Start of the current segment in the output
+        int segmentStart = start + 1;
+
+        while (r < end) {
+            int c = buff[r];
+            if (c == '%') {
+                if (r + 2 >= end) {
+                    throw EXCEPTION_EOF;
+                }
+                byte b1 = buff[r + 1];
+                byte b2 = buff[r + 2];
+                if (!isHexDigit(b1) || !isHexDigit(b2)) {
+                    throw EXCEPTION_NOT_HEX_DIGIT;
+                }
+                c = x2c(b1, b2);
+                r += 3;
+                if (c == '/') {
+                    if (encodedSolidusHandling == EncodedSolidusHandling.REJECT) {
+                        throw EXCEPTION_SLASH;
+                    } else if (encodedSolidusHandling == EncodedSolidusHandling.PASS_THROUGH) {
+                        if (w == start) {
+                            return checkDecoding(buff, r, end, encodedSolidusHandling);
+                        }
+                        // Not a separator. Copy the encoded form unchanged.
+                        buff[w++] = buff[r - 3];
+                        buff[w++] = buff[r - 2];
+                        buff[w++] = buff[r - 1];
+                        continue;
+                    }
+                }
+            } else {
+                r++;
+            }
+
+            if (c == '\\') {
+                if (!allowBackslash) {
+                    return checkDecoding(buff, r, end, encodedSolidusHandling);
+                }
+                c = '/';
+            } else if (c == 0) {
+                return checkDecoding(buff, r, end, encodedSolidusHandling);
+            }
+
+            if (w == start) {
+                // The URI must start with '/'
+                if (c != '/') {
+                    return checkDecoding(buff, r, end, encodedSolidusHandling);
+                }
+                buff[w++] = '/';
+                continue;
+            }
+
+            if (c != '/') {
+                buff[w++] = (byte) c;
+                continue;
+            }
+
+            // End of a segment
+            int segmentLength = w - segmentStart;
+            if (segmentLength == 0) {
+                // Collapse "//"
+                continue;
+            }
+            if (isDot(buff, segmentStart, segmentLength)) {
+                // Remove "./"
+                w = segmentStart;
+                continue;
+            }
+            if (isDotDot(buff, segmentStart, segmentLength)) {
+                // Remove the previous segment and "../"
+                if (segmentStart == start + 1) {
+                    // Prevent from going outside our context
+                    return checkDecoding(buff, r, end, encodedSolidusHandling);
+                }
+                w = previousSegmentStart(buff, start, segmentStart);
+                segmentStart = w;
+                continue;
+            }
+            buff[w++] = '/';
+            segmentStart = w;
+        }
+
+        // Resolve a final "." or ".." segment. As for a final "." or "..",
+        // the trailing "/" is removed unless the result is "/".
+        int segmentLength = w - segmentStart;
+        if (isDot(buff, segmentStart, segmentLength)) {
+            w = segmentStart;
+            if (w - start > 1) {
+                w--;
+            }
+        } else if (isDotDot(buff, segmentStart, segmentLength)) {
+            if (segmentStart == start + 1) {
+                return false;
+            }
+            w = previousSegmentStart(buff, start, segmentStart);
+            if (w - start > 1) {
+                w--;
+            }
+        }
+
+        mb.setEnd(w);
+        return true;
+    }
+
+
+    /*
+     * Invalid %xx sequences take precedence over an invalid normalized form so
+     * check the remainder of the URI for them before reporting the latter.
+     */
+    private static boolean checkDecoding(byte[] buff, int pos, int end,
+            EncodedSolidusHandling encodedSolidusHandling) throws IOException {
+        pos = ByteChunk.findByte(buff, pos, end, (byte) '%');
+        while (pos >= 0) {
+            if (pos + 2 >= end) {
+                throw EXCEPTION_EOF;
+            }
+            if (!isHexDigit(buff[pos + 1]) || !isHexDigit(buff[pos + 2])) {
+                throw EXCEPTION_NOT_HEX_DIGIT;
+            }
+            if (encodedSolidusHandling == EncodedSolidusHandling.REJECT && x2c(buff[pos + 1], buff[pos + 2]) == '/') {
+                throw EXCEPTION_SLASH;
+            }
+            pos = ByteChunk.findByte(buff, pos + 3, end, (byte) '%');
+        }
+        return false;
+    }
+
+
+    private static boolean isDot(byte[] buff, int start, int length) {
+        return length == 1 && buff[start] == '.';
+    }
+
+
+    private static boolean isDotDot(byte[] buff, int start, int length) {
+        return length == 2 && buff[start] == '.' && buff[start + 1] == '.';
+    }
+
+
+    /*
+     * segmentStart is the position after a '/'. Returns the position after the
+     * '/' that precedes it.
+     */
+    private static int previousSegmentStart(byte[] buff, int start, int segmentStart) {
+        int pos = segmentStart - 2;
+        while (pos > start && buff[pos] != '/') {
+            pos--;
+        }
+        return pos + 1;
+    }
+
     // -------------------- Additional methods --------------------
 
     /**
@@ -197,6 +387,40 @@ public final class UDecoder {
             charset = StandardCharsets.UTF_8;
         }
 
+        if (Ascii.isAsciiCompatible(charset)) {
+            // Fast path for the usual case of a US-ASCII source String. The
+            // %nn sequences are decoded straight to bytes and the bytes are
+            // converted to a String once.
+            int len = str.length();
+            byte[] bytes = new byte[len];
+            int count = 0;
+            int ix = 0;
+            while (ix < len) {
+                char c = str.charAt(ix++);
+                if (c == '%') {
+                    if (ix + 2 > len) {
+                        throw new IllegalArgumentException(sm.getString("uDecoder.urlDecode.missingDigit", str));
+                    }
+                    char c1 = str.charAt(ix++);
+                    char c2 = str.charAt(ix++);
+                    if (isHexDigit(c1) && isHexDigit(c2)) {
+                        bytes[count++] = (byte) x2c(c1, c2);
+                    } else {
+                        throw new IllegalArgumentException(sm.getString("uDecoder.urlDecode.missingDigit", str));
+                    }
+                } else if (c < 0x80) {
+                    bytes[count++] = (byte) c;
+                } else {
+                    // Partially decoded source. Use the general approach.
+                    count = -1;
+                    break;
+                }
+            }
+            if (count >= 0) {
+                return new String(bytes, 0, count, charset);
+            }
+        }
+
         /*
          * Decoding is required.
          *
@@ -59,8 +59,11 @@ public class Utf8Encoder extends CharsetEncoder {
                     out.position(outPos);
                     return CoderResult.OVERFLOW;
                 }
-                bArr[outPos++] = (byte) (jchar & 0xFF);
-                outRemaining--;
+                // Encode the whole run of ASCII characters starting here
+                int n = Ascii.encodeAscii(cArr, x, bArr, outPos, Math.min(pos + rem - x, outRemaining));
+                outPos += n;
+                outRemaining -= n;
+                x += n - 1;
             } else if (jchar <= 0x7FF) {
 
                 if (outRemaining < 2) {
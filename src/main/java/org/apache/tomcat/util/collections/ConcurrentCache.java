@@ -20,6 +20,12 @@ import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * @deprecated Replaced by {@link ConcurrentLruCache} which is bounded, does not
+ *                 periodically copy all of its entries and provides hit and
+ *                 miss statistics. Will be removed in Tomcat 11 onwards
+ */
+@Deprecated
 public final class ConcurrentCache<K,V> {
 
     private final int size;
@@ -0,0 +1,200 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.collections;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache that is safe for concurrent use. It never holds more than
+ * the configured number of entries.
+ * <p>
+ * Eviction uses the CLOCK algorithm, which approximates least recently used
+ * eviction. Each entry has a referenced flag. {@link #get(Object)} sets the
+ * flag and otherwise only reads from a {@link ConcurrentHashMap}, so it takes
+ * no locks. When a new entry is added to a full cache, a hand sweeps the
+ * entries in insertion order. It clears each referenced flag it passes and
+ * evicts the first entry whose flag is already clear. Adding entries is
+ * serialized, which is acceptable because caches are expected to be read far
+ * more often than they are written.
+ * <p>
+ * Neither keys nor values may be <code>null</code>.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+public final class ConcurrentLruCache<K,V> {
+
+    private final int size;
+
+    private final Map<K,Node<K,V>> map;
+
+    /*
+     * The eviction ring. Guarded by the lock on the ring.
+     */
+    private final Node<K,V>[] ring;
+    private int count = 0;
+    private int hand = 0;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+
+    public ConcurrentLruCache(int size) {
+        this.size = Math.max(1, size);
+        this.map = new ConcurrentHashMap<>(this.size);
+        this.ring = newRing(this.size);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static <K,V> Node<K,V>[] newRing(int size) {
+        return (Node<K,V>[]) new Node<?,?>[size];
+    }
+
+
+    /**
+     * Look up a value in the cache.
+     *
+     * @param k The key
+     *
+     * @return The cached value or <code>null</code> if there is no value for
+     *             the key
+     */
+    public V get(K k) {
+        Node<K,V> node = map.get(k);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        // Avoid writing to a shared cache line when the flag is already set
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hitCount.increment();
+        return node.value;
+    }
+
+
+    /**
+     * Add a value to the cache, replacing any existing value for the key. If
+     * the cache is full, an entry that has not been used recently is evicted.
+     *
+     * @param k The key
+     * @param v The value
+     */
+    public void put(K k, V v) {
+        Node<K,V> node = new Node<>(k, v);
+        synchronized (ring) {
+            Node<K,V> previous = map.get(k);
+            if (previous != null) {
+                node.slot = previous.slot;
+            } else if (count < size) {
+                node.slot = count++;
+            } else {
+                // A full sweep clears every flag so the second sweep always
+                // finds a victim unless gets keep setting the flags. The
+                // sweep is bounded so it can't be held up indefinitely.
+                Node<K,V> victim = ring[hand];
+                for (int i = 0; victim.referenced && i < 2 * size; i++) {
+                    victim.referenced = false;
+                    hand = (hand + 1) % size;
+                    victim = ring[hand];
+                }
+                map.remove(victim.key);
+                evictionCount.increment();
+                node.slot = hand;
+                hand = (hand + 1) % size;
+            }
+            ring[node.slot] = node;
+            map.put(k, node);
+        }
+    }
+
+
+    /**
+     * Remove all the entries from the cache. The statistics are not reset.
+     */
+    public void clear() {
+        synchronized (ring) {
+            map.clear();
+            for (int i = 0; i < count; i++) {
+                ring[i] = null;
+            }
+            count = 0;
+            hand = 0;
+        }
+    }
+
+
+    /**
+     * @return The number of entries currently in the cache
+     */
+    public int size() {
+        return map.size();
+    }
+
+
+    /**
+     * @return The maximum number of entries the cache will hold
+     */
+    public int getMaxSize() {
+        return size;
+    }
+
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+
+    /**
+     * @return The proportion of look-ups that found a value, between
+     *             <code>0</code> and <code>1</code>
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+
+    private static final class Node<K,V> {
+        private final K key;
+        private final V value;
+        private volatile boolean referenced = false;
+        // Guarded by the lock on the ring
+        private int slot;
+
+        private Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -31,6 +31,20 @@ public interface CookieProcessor {
      */
     void parseCookieHeader(MimeHeaders headers, ServerCookies serverCookies);
 
+    /**
+     * Parse the provided headers into server cookie objects, only retaining the cookies with the given name. This is
+     * intended for callers that only need a single cookie, such as the session cookie, so the remaining cookies do not
+     * have to be processed. Implementations that do not support this may retain all the cookies so callers must still
+     * check the name of each cookie.
+     *
+     * @param headers       The HTTP headers to parse
+     * @param name          The name of the cookies to retain
+     * @param serverCookies The server cookies object to populate with the results of the parsing
+     */
+    default void parseCookieHeader(MimeHeaders headers, String name, ServerCookies serverCookies) {
+        parseCookieHeader(headers, serverCookies);
+    }
+
     /**
      * Generate the {@code Set-Cookie} HTTP header value for the given Cookie. This method receives as parameter the
      * servlet request so that it can make decisions based on request properties. One such use-case is decide if the
@@ -45,6 +59,37 @@ public interface CookieProcessor {
      */
     String generateHeader(Cookie cookie, HttpServletRequest request);
 
+    /**
+     * Generate the attributes that follow the name, value and expiry (Max-Age and Expires) attributes of the
+     * {@code Set-Cookie} HTTP header value for the given Cookie. Callers that generate many cookies with identical
+     * attributes, such as session cookies, may cache the result and pass it to
+     * {@link #generateHeader(Cookie, HttpServletRequest, String)}.
+     *
+     * @param cookie  The cookie for which the attributes will be generated
+     * @param request The servlet request
+     *
+     * @return The attributes or {@code null} if they cannot be generated separately, for example because they
+     *             depend on the request
+     */
+    default String generateHeaderAttributes(Cookie cookie, HttpServletRequest request) {
+        return null;
+    }
+
+    /**
+     * Generate the {@code Set-Cookie} HTTP header value for the given Cookie using previously generated attributes.
+     *
+     * @param cookie     The cookie for which the header will be generated
+     * @param request    The servlet request
+     * @param attributes The attributes previously generated for an identically configured cookie by
+     *                       {@link #generateHeaderAttributes(Cookie, HttpServletRequest)} or {@code null} to generate
+     *                       them
+     *
+     * @return The header value in a form that can be added directly to the response
+     */
+    default String generateHeader(Cookie cookie, HttpServletRequest request, String attributes) {
+        return generateHeader(cookie, request);
+    }
+
     /**
      * Obtain the character set that will be used when converting between bytes and characters when parsing and/or
      * generating HTTP headers for cookies.
@@ -16,12 +16,13 @@
  */
 package org.apache.tomcat.util.http;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.Date;
 import java.util.Locale;
-import java.util.Map;
 import java.util.TimeZone;
-import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.tomcat.util.collections.ConcurrentLruCache;
 
 /**
  * Utility class to generate HTTP dates.
@@ -61,28 +62,40 @@ public final class FastHttpDateFormat {
                 new ConcurrentDateFormat[] { FORMAT_RFC5322, FORMAT_OBSOLETE_RFC850, FORMAT_OBSOLETE_ASCTIME };
     }
 
-    /**
-     * Instant on which the currentDate object was generated.
-     */
-    private static volatile long currentDateGenerated = 0L;
+    // Three letter day names, starting with the day of 1970-01-01
+    private static final String[] DAY_NAMES = { "Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed" };
+
+    private static final String[] MONTH_NAMES =
+            { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+    private static final int RECENT_PARSE_CACHE_SIZE = 16;
 
 
     /**
-     * Current formatted date.
+     * Current formatted date, regenerated once per second.
      */
-    private static String currentDate = null;
+    private static volatile CurrentDate currentDate = null;
 
 
     /**
      * Formatter cache.
      */
-    private static final Map<Long,String> formatCache = new ConcurrentHashMap<>(CACHE_SIZE);
+    private static final ConcurrentLruCache<Long,String> formatCache = new ConcurrentLruCache<>(CACHE_SIZE);
 
 
     /**
      * Parser cache.
      */
-    private static final Map<String,Long> parseCache = new ConcurrentHashMap<>(CACHE_SIZE);
+    private static final ConcurrentLruCache<String,Long> parseCache = new ConcurrentLruCache<>(CACHE_SIZE);
+
+
+    /**
+     * Small direct mapped cache of recently parsed dates. Conditional request
+     * headers usually repeat a handful of Last-Modified values. Entries are
+     * immutable so unsynchronized access is safe - at worst a value is parsed
+     * again.
+     */
+    private static final ParsedDate[] recentParses = new ParsedDate[RECENT_PARSE_CACHE_SIZE];
 
 
     // --------------------------------------------------------- Public Methods
@@ -94,13 +107,32 @@ public final class FastHttpDateFormat {
      * @return the HTTP date
      */
     public static String getCurrentDate() {
-        long now = System.currentTimeMillis();
-        // Handle case where time moves backwards (e.g. system time corrected)
-        if (Math.abs(now - currentDateGenerated) > 1000) {
-            currentDate = FORMAT_RFC5322.format(new Date(now));
-            currentDateGenerated = now;
+        return currentDate().value;
+    }
+
+
+    /**
+     * Get the current date in HTTP format, encoded as ISO-8859-1 bytes ready to
+     * be written as the value of the <code>Date</code> response header. The
+     * same array is returned for every call within a second so the caller must
+     * not modify it.
+     *
+     * @return the HTTP date as bytes
+     */
+    public static byte[] getCurrentDateBytes() {
+        return currentDate().bytes;
+    }
+
+
+    private static CurrentDate currentDate() {
+        long second = System.currentTimeMillis() / 1000;
+        CurrentDate current = currentDate;
+        // Also handles time moving backwards (e.g. system time corrected)
+        if (current == null || current.second != second) {
+            current = new CurrentDate(second, FORMAT_RFC5322.format(new Date(second * 1000)));
+            currentDate = current;
         }
-        return currentDate;
+        return current;
     }
 
 
@@ -133,12 +165,25 @@ public final class FastHttpDateFormat {
      */
     public static long parseDate(String value) {
 
+        int index = value.hashCode() & (RECENT_PARSE_CACHE_SIZE - 1);
+        ParsedDate recent = recentParses[index];
+        if (recent != null && recent.value.equals(value)) {
+            return recent.date;
+        }
+
+        // Almost all clients send the preferred format so try that without
+        // the overhead of a DateFormat
+        long date = parseRfc5322(value);
+        if (date != -1) {
+            recentParses[index] = new ParsedDate(value, date);
+            return date;
+        }
+
         Long cachedDate = parseCache.get(value);
         if (cachedDate != null) {
             return cachedDate.longValue();
         }
 
-        long date = -1;
         for (int i = 0; (date == -1) && (i < httpParseFormats.length); i++) {
             try {
                 date = httpParseFormats[i].parse(value).getTime();
@@ -152,6 +197,91 @@ public final class FastHttpDateFormat {
     }
 
 
+    /*
+     * Parses dates of the form "Sun, 06 Nov 1994 08:49:37 GMT" without
+     * allocating. Anything that is not exactly in that form, including valid
+     * but unusual variations such as a different case or an incorrect day of
+     * the week, returns -1 so the caller can fall back to the DateFormat
+     * parsers. That ensures the result is always the same as if the DateFormat
+     * had been used.
+     */
+    private static long parseRfc5322(String value) {
+        if (value.length() != 29 || value.charAt(3) != ',' || value.charAt(4) != ' ' || value.charAt(7) != ' ' ||
+                value.charAt(11) != ' ' || value.charAt(16) != ' ' || value.charAt(19) != ':' ||
+                value.charAt(22) != ':' || value.charAt(25) != ' ' || !value.startsWith("GMT", 26)) {
+            return -1;
+        }
+        int day = parseDigits(value, 5, 2);
+        int month = parseMonth(value, 8);
+        int year = parseDigits(value, 12, 4);
+        int hour = parseDigits(value, 17, 2);
+        int minute = parseDigits(value, 20, 2);
+        int second = parseDigits(value, 23, 2);
+        // Dates before 1600 are excluded to avoid the Julian/Gregorian cut-over
+        if (month < 0 || day < 1 || day > daysInMonth(year, month) || year < 1600 || hour < 0 || hour > 23 ||
+                minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return -1;
+        }
+        long days = epochDay(year, month + 1, day);
+        if (!value.startsWith(DAY_NAMES[Math.floorMod(days, 7)])) {
+            return -1;
+        }
+        return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+    }
+
+
+    private static int parseDigits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+
+    private static int parseMonth(String value, int start) {
+        for (int i = 0; i < MONTH_NAMES.length; i++) {
+            if (value.startsWith(MONTH_NAMES[i], start)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 1:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 3:
+            case 5:
+            case 8:
+            case 10:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+
+    /*
+     * Days since 1970-01-01 in the proleptic Gregorian calendar for a year of
+     * zero or more and a month from 1 to 12.
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+
     /**
      * Update cache.
      */
@@ -159,9 +289,6 @@ public final class FastHttpDateFormat {
         if (value == null) {
             return;
         }
-        if (formatCache.size() > CACHE_SIZE) {
-            formatCache.clear();
-        }
         formatCache.put(key, value);
     }
 
@@ -173,11 +300,32 @@ public final class FastHttpDateFormat {
         if (value == null) {
             return;
         }
-        if (parseCache.size() > CACHE_SIZE) {
-            parseCache.clear();
-        }
         parseCache.put(key, value);
     }
 
 
+    private static final class CurrentDate {
+        private final long second;
+        private final String value;
+        private final byte[] bytes;
+
+        private CurrentDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+            this.bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+
+    private static final class ParsedDate {
+        private final String value;
+        private final long date;
+
+        private ParsedDate(String value, long date) {
+            this.value = value;
+            this.date = date;
+        }
+    }
+
+
 }
@@ -0,0 +1,116 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.util.Arrays;
+
+import org.apache.tomcat.util.http.Parameters.FailReason;
+
+/**
+ * Parses an <code>application/x-www-form-urlencoded</code> body incrementally as it is read so that the whole body
+ * does not have to be held in memory.
+ * <p>
+ * The body is passed to {@link #parse(byte[], int, int)} in pieces of any size. All the complete parameters in each
+ * piece are decoded and added to the {@link Parameters} immediately, using exactly the same rules as
+ * {@link Parameters#processParameters(byte[], int, int)}, and only the trailing incomplete parameter is retained until
+ * the next piece arrives. {@link #finish()} must be called once the end of the body is reached.
+ * <p>
+ * The bytes passed to {@link #parse(byte[], int, int)} may be modified by %nn decoding. The caller is responsible for
+ * limiting the total size of the body.
+ */
+public class FormParameterParser {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Parameters parameters;
+
+    private byte[] pending = EMPTY;
+    private int pendingLength = 0;
+    private boolean limitReached = false;
+
+
+    public FormParameterParser(Parameters parameters) {
+        this.parameters = parameters;
+    }
+
+
+    /**
+     * Parse the next piece of the body.
+     *
+     * @param bytes The buffer containing the body bytes
+     * @param off   The offset of the body bytes in the buffer
+     * @param len   The number of body bytes
+     */
+    public void parse(byte[] bytes, int off, int len) {
+        if (limitReached || len <= 0) {
+            return;
+        }
+        int end = off + len;
+        // Parameters are independent so the bytes can be processed up to and
+        // including the last separator
+        int last = end - 1;
+        while (last >= off && bytes[last] != '&') {
+            last--;
+        }
+        if (last < off) {
+            append(bytes, off, len);
+            return;
+        }
+        if (pendingLength == 0) {
+            process(bytes, off, last + 1 - off);
+        } else {
+            append(bytes, off, last + 1 - off);
+            process(pending, 0, pendingLength);
+            pendingLength = 0;
+        }
+        if (!limitReached) {
+            append(bytes, last + 1, end - last - 1);
+        }
+    }
+
+
+    /**
+     * Process any remaining parameter once the end of the body has been reached.
+     */
+    public void finish() {
+        if (pendingLength > 0 && !limitReached) {
+            process(pending, 0, pendingLength);
+        }
+        pending = EMPTY;
+        pendingLength = 0;
+    }
+
+
+    private void process(byte[] bytes, int off, int len) {
+        parameters.processParameters(bytes, off, len, false);
+        // Once the limit has been reached no further parameters will be
+        // accepted so there is no need to parse the rest of the body
+        limitReached = parameters.getParseFailedReason() == FailReason.TOO_MANY_PARAMETERS;
+    }
+
+
+    private void append(byte[] bytes, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        if (pendingLength + len > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pendingLength + len, pending.length * 2));
+        }
+        System.arraycopy(bytes, off, pending, pendingLength, len);
+        pendingLength += len;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+/**
+ * HTTP header names that are frequently used by the container. {@link MimeHeaders} identifies these names when a header
+ * is added so that look-ups by name only need to compare the identifiers.
+ * <p>
+ * Header names are case insensitive. Only the US-ASCII letters are folded when comparing names, consistent with the
+ * comparisons used for header names elsewhere.
+ */
+public enum HeaderName {
+
+    ACCEPT("Accept"),
+    ACCEPT_CHARSET("Accept-Charset"),
+    ACCEPT_ENCODING("Accept-Encoding"),
+    ACCEPT_LANGUAGE("Accept-Language"),
+    ACCEPT_RANGES("Accept-Ranges"),
+    AUTHORIZATION("Authorization"),
+    CACHE_CONTROL("Cache-Control"),
+    CONNECTION("Connection"),
+    CONTENT_DISPOSITION("Content-Disposition"),
+    CONTENT_ENCODING("Content-Encoding"),
+    CONTENT_LANGUAGE("Content-Language"),
+    CONTENT_LENGTH("Content-Length"),
+    CONTENT_RANGE("Content-Range"),
+    CONTENT_TYPE("Content-Type"),
+    COOKIE("Cookie"),
+    DATE("Date"),
+    ETAG("ETag"),
+    EXPECT("Expect"),
+    EXPIRES("Expires"),
+    FORWARDED("Forwarded"),
+    HOST("Host"),
+    HTTP2_SETTINGS("HTTP2-Settings"),
+    IF_MATCH("If-Match"),
+    IF_MODIFIED_SINCE("If-Modified-Since"),
+    IF_NONE_MATCH("If-None-Match"),
+    IF_RANGE("If-Range"),
+    IF_UNMODIFIED_SINCE("If-Unmodified-Since"),
+    KEEP_ALIVE("Keep-Alive"),
+    LAST_MODIFIED("Last-Modified"),
+    LOCATION("Location"),
+    ORIGIN("Origin"),
+    PRAGMA("Pragma"),
+    PROXY_AUTHORIZATION("Proxy-Authorization"),
+    RANGE("Range"),
+    REFERER("Referer"),
+    SEC_WEBSOCKET_KEY("Sec-WebSocket-Key"),
+    SEC_WEBSOCKET_VERSION("Sec-WebSocket-Version"),
+    SERVER("Server"),
+    SET_COOKIE("Set-Cookie"),
+    TE("TE"),
+    TRAILER("Trailer"),
+    TRANSFER_ENCODING("Transfer-Encoding"),
+    UPGRADE("Upgrade"),
+    USER_AGENT("User-Agent"),
+    VARY("Vary"),
+    VIA("Via"),
+    WWW_AUTHENTICATE("WWW-Authenticate"),
+    X_FORWARDED_FOR("X-Forwarded-For"),
+    X_FORWARDED_HOST("X-Forwarded-Host"),
+    X_FORWARDED_PROTO("X-Forwarded-Proto");
+
+
+    private static final HeaderName[] TABLE;
+    private static final int TABLE_MASK;
+
+    static {
+        HeaderName[] values = values();
+        if (values.length > Long.SIZE) {
+            // MimeHeaders tracks the names present with one bit per name in a long
+            throw new IllegalStateException("Too many header names for MimeHeaders: " + values.length);
+        }
+        int size = Integer.highestOneBit(values.length * 4 - 1);
+        TABLE = new HeaderName[size];
+        TABLE_MASK = size - 1;
+        for (HeaderName header : values) {
+            int slot = header.hash & TABLE_MASK;
+            while (TABLE[slot] != null) {
+                slot = (slot + 1) & TABLE_MASK;
+            }
+            TABLE[slot] = header;
+        }
+    }
+
+
+    private final String name;
+    private final int hash;
+
+
+    HeaderName(String name) {
+        this.name = name;
+        this.hash = hash(name);
+    }
+
+
+    /**
+     * @return the name of the header in its usual case
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * Identify the header with the given name.
+     *
+     * @param name The header name
+     *
+     * @return the matching header or <code>null</code> if the header is not one of the known headers
+     */
+    public static HeaderName lookup(String name) {
+        if (name == null) {
+            return null;
+        }
+        int len = name.length();
+        int hash = hash(name);
+        int slot = hash & TABLE_MASK;
+        HeaderName candidate;
+        while ((candidate = TABLE[slot]) != null) {
+            if (candidate.hash == hash && candidate.name.length() == len) {
+                int i = 0;
+                while (i < len && toLower(candidate.name.charAt(i)) == toLower(name.charAt(i))) {
+                    i++;
+                }
+                if (i == len) {
+                    return candidate;
+                }
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return null;
+    }
+
+
+    /**
+     * Identify the header with the given name.
+     *
+     * @param b     The buffer containing the header name
+     * @param start The start of the name in the buffer
+     * @param len   The length of the name
+     *
+     * @return the matching header or <code>null</code> if the header is not one of the known headers
+     */
+    public static HeaderName lookup(byte[] b, int start, int len) {
+        int hash = hash(b, start, start + len);
+        int slot = hash & TABLE_MASK;
+        HeaderName candidate;
+        while ((candidate = TABLE[slot]) != null) {
+            if (candidate.hash == hash && candidate.name.length() == len) {
+                int i = 0;
+                while (i < len && toLower(candidate.name.charAt(i)) == toLower(b[start + i] & 0xFF)) {
+                    i++;
+                }
+                if (i == len) {
+                    return candidate;
+                }
+            }
+            slot = (slot + 1) & TABLE_MASK;
+        }
+        return null;
+    }
+
+
+    /*
+     * Case insensitive hashes. Names that are equal ignoring case have the
+     * same hash regardless of whether they are held as bytes, chars or a
+     * String.
+     */
+    static int hash(String name) {
+        int result = 0;
+        for (int i = 0; i < name.length(); i++) {
+            result = 31 * result + toLower(name.charAt(i));
+        }
+        return result;
+    }
+
+
+    static int hash(byte[] b, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            result = 31 * result + toLower(b[i] & 0xFF);
+        }
+        return result;
+    }
+
+
+    static int hash(char[] c, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            result = 31 * result + toLower(c[i]);
+        }
+        return result;
+    }
+
+
+    private static int toLower(int c) {
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+}
@@ -19,8 +19,11 @@ package org.apache.tomcat.util.http;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Enumeration;
 
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.res.StringManager;
 
@@ -55,11 +58,11 @@ import org.apache.tomcat.util.res.StringManager;
    Apache seems to be using a similar method for storing and manipulating
    headers.
 
-   Future enhancements:
-   - hash the headers the first time a header is requested ( i.e. if the
-   servlet needs direct access to headers).
-   - scan "common" values ( length, cookies, etc ) during the parse
-   ( addHeader hook )
+   Names that are one of the well-known HeaderNames are identified when the
+   header is added and look-ups for those names compare the identifiers
+   rather than the bytes. Other names are compared directly unless there are
+   many headers, in which case a hash index of those names is built the
+   first time such a name is requested.
 
  */
 
@@ -96,6 +99,11 @@ public class MimeHeaders {
 
     private static final StringManager sm = StringManager.getManager("org.apache.tomcat.util.http");
 
+    /**
+     * The number of header fields above which look-ups of names that are not well-known use a hash index.
+     */
+    private static final int INDEX_THRESHOLD = 16;
+
     /**
      * The header fields.
      */
@@ -111,6 +119,23 @@ public class MimeHeaders {
      */
     private int limit = -1;
 
+    /**
+     * One bit per {@link HeaderName} that has been added since the last clear. A set bit does not guarantee the header
+     * is still present as removal does not clear the bit.
+     */
+    private long knownHeaders;
+
+    /**
+     * Open addressing index of the header fields with names that are not well-known. Each slot holds the field index
+     * plus one or zero if the slot is empty. Created lazily.
+     */
+    private int[] index;
+
+    /**
+     * The number of header fields, from the start of the array, that have been added to the index.
+     */
+    private int indexedCount;
+
     /**
      * Creates a new MimeHeaders object using a default buffer size.
      */
@@ -149,6 +174,8 @@ public class MimeHeaders {
             headers[i].recycle();
         }
         count = 0;
+        knownHeaders = 0;
+        resetIndex();
     }
 
     /**
@@ -178,6 +205,7 @@ public class MimeHeaders {
             MimeHeaderField mhf = createHeader();
             mhf.getName().duplicate(source.getName(i));
             mhf.getValue().duplicate(source.getValue(i));
+            setHeaderName(mhf, source.headers[i].headerName);
         }
     }
 
@@ -220,21 +248,105 @@ public class MimeHeaders {
      * @return the header index
      */
     public int findHeader(String name, int starting) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
+        HeaderName headerName = HeaderName.lookup(name);
+        if (headerName != null) {
+            return findHeader(headerName, starting);
+        }
+        if (count > INDEX_THRESHOLD) {
+            return findIndexedHeader(name, starting);
+        }
+        for (int i = starting; i < count; i++) {
+            if (headers[i].headerName == null && headers[i].getName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        // A custom search tree may be better
+    /**
+     * Find the index of a header with the given well-known name.
+     *
+     * @param headerName The header name
+     * @param starting   Index on which to start looking
+     *
+     * @return the header index
+     */
+    public int findHeader(HeaderName headerName, int starting) {
+        if ((knownHeaders & (1L << headerName.ordinal())) == 0) {
+            return -1;
+        }
         for (int i = starting; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
+            if (headers[i].headerName == headerName) {
                 return i;
             }
         }
         return -1;
     }
 
+    private int findIndexedHeader(String name, int starting) {
+        updateIndex();
+        int hash = HeaderName.hash(name);
+        int mask = index.length - 1;
+        int result = -1;
+        int slot = hash & mask;
+        int entry;
+        // Fields with the same name are in the index in the order they were
+        // added so they are found in order
+        while ((entry = index[slot]) != 0) {
+            int i = entry - 1;
+            if (i >= starting && headers[i].nameHash == hash && headers[i].getName().equalsIgnoreCase(name)) {
+                result = i;
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return result;
+    }
+
+    private void updateIndex() {
+        if (index == null || count * 2 > index.length) {
+            index = new int[Integer.highestOneBit(Math.max(INDEX_THRESHOLD, count) * 4 - 1)];
+            indexedCount = 0;
+        }
+        int mask = index.length - 1;
+        for (; indexedCount < count; indexedCount++) {
+            MimeHeaderField mhf = headers[indexedCount];
+            if (mhf.headerName != null) {
+                continue;
+            }
+            mhf.nameHash = hash(mhf.getName());
+            int slot = mhf.nameHash & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = indexedCount + 1;
+        }
+    }
+
+    private void resetIndex() {
+        if (index != null && indexedCount > 0) {
+            Arrays.fill(index, 0);
+        }
+        indexedCount = 0;
+    }
+
+    private static int hash(MessageBytes mb) {
+        switch (mb.getType()) {
+            case MessageBytes.T_BYTES: {
+                ByteChunk bc = mb.getByteChunk();
+                return HeaderName.hash(bc.getBuffer(), bc.getStart(), bc.getEnd());
+            }
+            case MessageBytes.T_CHARS: {
+                CharChunk cc = mb.getCharChunk();
+                return HeaderName.hash(cc.getBuffer(), cc.getStart(), cc.getEnd());
+            }
+            case MessageBytes.T_STR:
+                return HeaderName.hash(mb.toString());
+            default:
+                return 0;
+        }
+    }
+
     // -------------------- --------------------
 
     /**
@@ -280,6 +392,13 @@ public class MimeHeaders {
         return mh;
     }
 
+    private void setHeaderName(MimeHeaderField mh, HeaderName headerName) {
+        mh.headerName = headerName;
+        if (headerName != null) {
+            knownHeaders |= 1L << headerName.ordinal();
+        }
+    }
+
     /**
      * Create a new named header , return the MessageBytes container for the new value
      *
@@ -290,6 +409,7 @@ public class MimeHeaders {
     public MessageBytes addValue(String name) {
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        setHeaderName(mh, HeaderName.lookup(name));
         return mh.getValue();
     }
 
@@ -306,6 +426,7 @@ public class MimeHeaders {
     public MessageBytes addValue(byte b[], int startN, int len) {
         MimeHeaderField mhf = createHeader();
         mhf.getName().setBytes(b, startN, len);
+        setHeaderName(mhf, HeaderName.lookup(b, startN, len));
         return mhf.getValue();
     }
 
@@ -317,18 +438,15 @@ public class MimeHeaders {
      * @return the message bytes container for the value
      */
     public MessageBytes setValue(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                for (int j = i + 1; j < count; j++) {
-                    if (headers[j].getName().equalsIgnoreCase(name)) {
-                        removeHeader(j--);
-                    }
-                }
-                return headers[i].getValue();
-            }
+        HeaderName headerName = HeaderName.lookup(name);
+        int i = headerName != null ? findHeader(headerName, 0) : findHeader(name, 0);
+        if (i >= 0) {
+            removeHeaders(i + 1, headerName, name);
+            return headers[i].getValue();
         }
         MimeHeaderField mh = createHeader();
         mh.getName().setString(name);
+        setHeaderName(mh, headerName);
         return mh.getValue();
     }
 
@@ -342,12 +460,21 @@ public class MimeHeaders {
      * @return the value
      */
     public MessageBytes getValue(String name) {
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                return headers[i].getValue();
-            }
-        }
-        return null;
+        int i = findHeader(name, 0);
+        return i >= 0 ? headers[i].getValue() : null;
+    }
+
+    /**
+     * Finds and returns a header field with the given well-known name. If no such field exists, null is returned. If
+     * more than one such field is in the header, an arbitrary one is returned.
+     *
+     * @param headerName The header name
+     *
+     * @return the value
+     */
+    public MessageBytes getValue(HeaderName headerName) {
+        int i = findHeader(headerName, 0);
+        return i >= 0 ? headers[i].getValue() : null;
     }
 
     /**
@@ -361,17 +488,14 @@ public class MimeHeaders {
      * @throws IllegalArgumentException if the header has multiple values
      */
     public MessageBytes getUniqueValue(String name) {
-        MessageBytes result = null;
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                if (result == null) {
-                    result = headers[i].getValue();
-                } else {
-                    throw new IllegalArgumentException();
-                }
-            }
+        int i = findHeader(name, 0);
+        if (i < 0) {
+            return null;
         }
-        return result;
+        if (findHeader(name, i + 1) >= 0) {
+            throw new IllegalArgumentException();
+        }
+        return headers[i].getValue();
     }
 
     // bad shortcut - it'll convert to string ( too early probably,
@@ -388,13 +512,10 @@ public class MimeHeaders {
      * @param name the name of the header field to be removed
      */
     public void removeHeader(String name) {
-        // XXX
-        // warning: rather sticky code; heavily tuned
-
-        for (int i = 0; i < count; i++) {
-            if (headers[i].getName().equalsIgnoreCase(name)) {
-                removeHeader(i--);
-            }
+        HeaderName headerName = HeaderName.lookup(name);
+        int i = headerName != null ? findHeader(headerName, 0) : findHeader(name, 0);
+        if (i >= 0) {
+            removeHeaders(i, headerName, name);
         }
     }
 
@@ -422,6 +543,37 @@ public class MimeHeaders {
 
         // Reduce the count
         count--;
+
+        // Field indexes have changed
+        resetIndex();
+    }
+
+    /*
+     * Removes all the header fields with the given name from the given index onwards in a single pass, retaining the
+     * order of the remaining fields. The index is reset once rather than once per removed field.
+     */
+    private void removeHeaders(int starting, HeaderName headerName, String name) {
+        int kept = starting;
+        for (int i = starting; i < count; i++) {
+            MimeHeaderField mhf = headers[i];
+            boolean match;
+            if (headerName != null) {
+                match = mhf.headerName == headerName;
+            } else {
+                match = mhf.headerName == null && mhf.getName().equalsIgnoreCase(name);
+            }
+            if (match) {
+                mhf.recycle();
+            } else {
+                // Swap so the removed fields end up after the remaining ones
+                headers[i] = headers[kept];
+                headers[kept++] = mhf;
+            }
+        }
+        if (kept < count) {
+            count = kept;
+            resetIndex();
+        }
     }
 
 }
@@ -497,14 +649,15 @@ class ValuesEnumerator implements Enumeration<String> {
 
     private void findNext() {
         next = null;
-        for (; pos < size; pos++) {
-            MessageBytes n1 = headers.getName(pos);
-            if (n1.equalsIgnoreCase(name)) {
+        if (pos < size) {
+            pos = headers.findHeader(name, pos);
+            if (pos >= 0 && pos < size) {
                 next = headers.getValue(pos);
-                break;
+                pos++;
+            } else {
+                pos = size;
             }
         }
-        pos++;
     }
 
     @Override
@@ -525,6 +678,18 @@ class MimeHeaderField {
     private final MessageBytes nameB = MessageBytes.newInstance();
     private final MessageBytes valueB = MessageBytes.newInstance();
 
+    /*
+     * The well-known name of this header, if any. Set when the header is
+     * added so the name must not be changed once the header has been added.
+     */
+    HeaderName headerName;
+
+    /*
+     * Case insensitive hash of the name. Only valid while the header is in
+     * the index of names that are not well-known.
+     */
+    int nameHash;
+
     /**
      * Creates a new, uninitialized header field.
      */
@@ -535,6 +700,7 @@ class MimeHeaderField {
     public void recycle() {
         nameB.recycle();
         valueB.recycle();
+        headerName = null;
     }
 
     public MessageBytes getName() {
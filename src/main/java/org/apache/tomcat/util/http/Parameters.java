@@ -20,10 +20,13 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -58,6 +61,27 @@ public final class Parameters {
     private int limit = -1;
     private int parameterCount = 0;
 
+    /*
+     * Lazy parsing. Processed parameters are indexed but not decoded. Names
+     * are decoded when the first look-up is made and values are only decoded
+     * when requested. Once any parameter has been indexed, parameters added
+     * via addParameter() are also added to the index so that order is
+     * maintained.
+     */
+    private boolean lazy = false;
+    private int lazyCount = 0;
+    // Four offsets per parameter: name start, name end, value start (-1 if
+    // there is no value) and value end
+    private int[] lazyOffsets = null;
+    private LazySource[] lazySources = null;
+    private String[] lazyNames = null;
+    private String[] lazyValues = null;
+    // Next parameter with the same name or -1
+    private int[] lazyNext = null;
+    // Name to the first and last parameter with that name
+    private final Map<String,int[]> lazyNameIndex = new LinkedHashMap<>();
+    private int lazyIndexedCount = 0;
+
     /**
      * Set to the reason for the failure (the first failure if there is more than one) if there were failures during
      * parameter parsing.
@@ -76,6 +100,24 @@ public final class Parameters {
         this.limit = limit;
     }
 
+    /**
+     * Enable or disable lazy parsing for subsequent calls to the processParameters methods. When enabled, the
+     * parameters are indexed as they are processed and the values are only decoded when they are requested. This
+     * reduces the work and garbage for large bodies where only a few parameters are used. The parameters that are
+     * visible, their order and the parse failures that are reported are the same in both modes. Bodies processed
+     * incrementally by a {@link FormParameterParser} are always decoded as they are read so callers that want lazy
+     * parsing must pass the whole body to {@link #processParameters(byte[], int, int)}.
+     *
+     * @param lazy {@code true} to enable lazy parsing
+     */
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
     public Charset getCharset() {
         return charset;
     }
@@ -131,6 +173,7 @@ public final class Parameters {
 //        charset = DEFAULT_BODY_CHARSET;
 //        decodedQuery.recycle();
 //        parseFailedReason = null;
+//        recycleLazy();
         throw new UnsupportedOperationException();
     }
 
@@ -143,6 +186,9 @@ public final class Parameters {
 //        handleQueryParameters();
 //        // no "facade"
 //        ArrayList<String> values = paramHashValues.get(name);
+//        if (lazyCount > 0) {
+//            return getLazyParameterValues(name, values);
+//        }
 //        if (values == null) {
 //            return null;
 //        }
@@ -152,6 +198,9 @@ public final class Parameters {
 
     public Enumeration<String> getParameterNames() {
 //        handleQueryParameters();
+//        if (lazyCount > 0) {
+//            return Collections.enumeration(getLazyParameterNames());
+//        }
 //        return Collections.enumeration(paramHashValues.keySet());
         throw new UnsupportedOperationException();
     }
@@ -164,6 +213,8 @@ public final class Parameters {
 //                return "";
 //            }
 //            return values.get(0);
+//        } else if (lazyCount > 0) {
+//            return getLazyParameter(name);
 //        } else {
 //            return null;
 //        }
@@ -214,6 +265,12 @@ public final class Parameters {
 //        }
 //        parameterCount++;
 //
+//        if (lazyCount > 0) {
+//            addLazyParameter(null, -1, -1, -1, -1);
+//            lazyNames[lazyCount - 1] = key;
+//            lazyValues[lazyCount - 1] = value;
+//            return;
+//        }
 //        paramHashValues.computeIfAbsent(key, k -> new ArrayList<>(1)).add(value);
         throw new UnsupportedOperationException();
     }
@@ -231,18 +288,32 @@ public final class Parameters {
     private final ByteChunk origValue = new ByteChunk();
     private static final Charset DEFAULT_BODY_CHARSET = StandardCharsets.ISO_8859_1;
     private static final Charset DEFAULT_URI_CHARSET = StandardCharsets.UTF_8;
+    private static final byte[] DECODE_BYTES = new byte[] { '%', '+' };
 
 
     public void processParameters(byte bytes[], int start, int len) {
-        processParameters(bytes, start, len, charset);
+        processParameters(bytes, start, len, charset, true);
+    }
+
+    /*
+     * Used by FormParameterParser. The bytes are only valid for the duration
+     * of the call so they may not be indexed for lazy parsing.
+     */
+    void processParameters(byte bytes[], int start, int len, boolean allowLazy) {
+        processParameters(bytes, start, len, charset, allowLazy);
     }
 
-    private void processParameters(byte bytes[], int start, int len, Charset charset) {
+    private void processParameters(byte bytes[], int start, int len, Charset charset, boolean allowLazy) {
 
 //        if (log.isDebugEnabled()) {
 //            log.debug(sm.getString("parameters.bytes", new String(bytes, start, len, DEFAULT_BODY_CHARSET)));
 //        }
 //
+//        if (lazy && allowLazy) {
+//            indexParameters(bytes, start, len, charset);
+//            return;
+//        }
+//
 //        int decodeFailCount = 0;
 //
 //        int pos = start;
@@ -330,18 +401,8 @@ public final class Parameters {
 //                    } else {
 //                        extract = "";
 //                    }
-//                    String message = sm.getString("parameters.invalidChunk", Integer.valueOf(nameStart),
-//                            Integer.valueOf(valueEnd), extract);
-//                    switch (logMode) {
-//                        case INFO_THEN_DEBUG:
-//                            message += sm.getString("parameters.fallToDebug");
-//                            //$FALL-THROUGH$
-//                        case INFO:
-//                            log.info(message);
-//                            break;
-//                        case DEBUG:
-//                            log.debug(message);
-//                    }
+//                    log(logMode, sm.getString("parameters.invalidChunk", Integer.valueOf(nameStart),
+//                            Integer.valueOf(valueEnd), extract), "parameters.fallToDebug");
 //                }
 //                setParseFailedReason(FailReason.NO_NAME);
 //                continue;
@@ -399,17 +460,7 @@ public final class Parameters {
 //                    // not cause request to fail.
 //                    UserDataHelper.Mode logMode = maxParamCountLog.getNextMode();
 //                    if (logMode != null) {
-//                        String message = ise.getMessage();
-//                        switch (logMode) {
-//                            case INFO_THEN_DEBUG:
-//                                message += sm.getString("parameters.maxCountFail.fallToDebug");
-//                                //$FALL-THROUGH$
-//                            case INFO:
-//                                log.info(message);
-//                                break;
-//                            case DEBUG:
-//                                log.debug(message);
-//                        }
+//                        log(logMode, ise.getMessage(), "parameters.maxCountFail.fallToDebug");
 //                    }
 //                    break;
 //                }
@@ -424,18 +475,9 @@ public final class Parameters {
 //                    } else if (log.isInfoEnabled()) {
 //                        UserDataHelper.Mode logMode = userDataLog.getNextMode();
 //                        if (logMode != null) {
-//                            String message =
-//                                    sm.getString("parameters.decodeFail.info", tmpName.toString(), tmpValue.toString());
-//                            switch (logMode) {
-//                                case INFO_THEN_DEBUG:
-//                                    message += sm.getString("parameters.fallToDebug");
-//                                    //$FALL-THROUGH$
-//                                case INFO:
-//                                    log.info(message);
-//                                    break;
-//                                case DEBUG:
-//                                    log.debug(message);
-//                            }
+//                            log(logMode,
+//                                    sm.getString("parameters.decodeFail.info", tmpName.toString(), tmpValue.toString()),
+//                                    "parameters.fallToDebug");
 //                        }
 //                    }
 //                }
@@ -453,22 +495,280 @@ public final class Parameters {
 //        if (decodeFailCount > 1 && !log.isDebugEnabled()) {
 //            UserDataHelper.Mode logMode = userDataLog.getNextMode();
 //            if (logMode != null) {
-//                String message = sm.getString("parameters.multipleDecodingFail", Integer.valueOf(decodeFailCount));
-//                switch (logMode) {
-//                    case INFO_THEN_DEBUG:
-//                        message += sm.getString("parameters.fallToDebug");
-//                        //$FALL-THROUGH$
-//                    case INFO:
-//                        log.info(message);
-//                        break;
-//                    case DEBUG:
-//                        log.debug(message);
-//                }
+//                log(logMode, sm.getString("parameters.multipleDecodingFail", Integer.valueOf(decodeFailCount)),
+//                        "parameters.fallToDebug");
 //            }
 //        }
         throw new UnsupportedOperationException();
     }
 
+    /*
+     * Lazy equivalent of processParameters(). The bytes are split into
+     * parameters using the same rules and %nn sequences are validated so that
+     * the same parameters are skipped and the same failures reported but
+     * nothing is decoded.
+     */
+    private void indexParameters(byte bytes[], int start, int len, Charset charset) {
+
+        LazySource source = new LazySource(bytes, charset);
+        int decodeFailCount = 0;
+
+        int pos = start;
+        int end = start + len;
+
+        while (pos < end) {
+            int nameStart = pos;
+            int nameEnd = -1;
+            int valueStart = -1;
+            int valueEnd = -1;
+
+            boolean decodeFailed = false;
+            boolean parameterComplete = false;
+
+            do {
+                switch (bytes[pos]) {
+                    case '=':
+                        if (nameEnd == -1) {
+                            // Name finished. Value starts from next character
+                            nameEnd = pos;
+                            valueStart = pos + 1;
+                        }
+                        break;
+                    case '&':
+                        if (nameEnd == -1) {
+                            // Name finished. No value.
+                            nameEnd = pos;
+                        } else {
+                            // Value finished
+                            valueEnd = pos;
+                        }
+                        parameterComplete = true;
+                        break;
+                    case '%':
+                        // '=' and '&' are not hex digits so a valid sequence
+                        // can't span the end of the name or value
+                        if (pos + 2 >= end || !isHexDigit(bytes[pos + 1]) || !isHexDigit(bytes[pos + 2])) {
+                            decodeFailed = true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                pos++;
+            } while (!parameterComplete && pos < end);
+
+            if (pos == end) {
+                if (nameEnd == -1) {
+                    nameEnd = pos;
+                } else if (valueStart > -1 && valueEnd == -1) {
+                    valueEnd = pos;
+                }
+            }
+
+            if (nameEnd <= nameStart) {
+                if (valueStart == -1) {
+                    // &&
+                    continue;
+                }
+                // &=foo&
+                UserDataHelper.Mode logMode = userDataLog.getNextMode();
+                if (logMode != null) {
+                    String extract = valueEnd > nameStart ?
+                            new String(bytes, nameStart, valueEnd - nameStart, DEFAULT_BODY_CHARSET) : "";
+                    log(logMode, sm.getString("parameters.invalidChunk", Integer.valueOf(nameStart),
+                            Integer.valueOf(valueEnd), extract), "parameters.fallToDebug");
+                }
+                setParseFailedReason(FailReason.NO_NAME);
+                continue;
+            }
+
+            if (decodeFailed) {
+                setParseFailedReason(FailReason.URL_DECODING);
+                decodeFailCount++;
+                if (log.isDebugEnabled() || decodeFailCount == 1 && log.isInfoEnabled()) {
+                    String name = new String(bytes, nameStart, nameEnd - nameStart, DEFAULT_BODY_CHARSET);
+                    String value = valueStart >= 0 ?
+                            new String(bytes, valueStart, valueEnd - valueStart, DEFAULT_BODY_CHARSET) : "";
+                    if (log.isDebugEnabled()) {
+                        log.debug(sm.getString("parameters.decodeFail.debug", name, value));
+                    } else {
+                        UserDataHelper.Mode logMode = userDataLog.getNextMode();
+                        if (logMode != null) {
+                            log(logMode, sm.getString("parameters.decodeFail.info", name, value),
+                                    "parameters.fallToDebug");
+                        }
+                    }
+                }
+                continue;
+            }
+
+            if (limit > -1 && parameterCount >= limit) {
+                // Hitting limit stops processing further params but does
+                // not cause request to fail.
+                setParseFailedReason(FailReason.TOO_MANY_PARAMETERS);
+                UserDataHelper.Mode logMode = maxParamCountLog.getNextMode();
+                if (logMode != null) {
+                    log(logMode, sm.getString("parameters.maxCountFail", Integer.valueOf(limit)),
+                            "parameters.maxCountFail.fallToDebug");
+                }
+                break;
+            }
+            parameterCount++;
+            addLazyParameter(source, nameStart, nameEnd, valueStart, valueEnd);
+        }
+
+        if (decodeFailCount > 1 && !log.isDebugEnabled()) {
+            UserDataHelper.Mode logMode = userDataLog.getNextMode();
+            if (logMode != null) {
+                log(logMode, sm.getString("parameters.multipleDecodingFail", Integer.valueOf(decodeFailCount)),
+                        "parameters.fallToDebug");
+            }
+        }
+    }
+
+    private static boolean isHexDigit(byte b) {
+        return (b >= '0' && b <= '9') || (b >= 'a' && b <= 'f') || (b >= 'A' && b <= 'F');
+    }
+
+    private static void log(UserDataHelper.Mode logMode, String message, String fallToDebugKey) {
+        switch (logMode) {
+            case INFO_THEN_DEBUG:
+                log.info(message + sm.getString(fallToDebugKey));
+                break;
+            case INFO:
+                log.info(message);
+                break;
+            case DEBUG:
+                log.debug(message);
+                break;
+        }
+    }
+
+    private void addLazyParameter(LazySource source, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        if (lazyOffsets == null) {
+            lazyOffsets = new int[4 * 16];
+            lazySources = new LazySource[16];
+            lazyNames = new String[16];
+            lazyValues = new String[16];
+            lazyNext = new int[16];
+        } else if (lazyCount == lazySources.length) {
+            int newLength = lazyCount * 2;
+            lazyOffsets = Arrays.copyOf(lazyOffsets, 4 * newLength);
+            lazySources = Arrays.copyOf(lazySources, newLength);
+            lazyNames = Arrays.copyOf(lazyNames, newLength);
+            lazyValues = Arrays.copyOf(lazyValues, newLength);
+            lazyNext = Arrays.copyOf(lazyNext, newLength);
+        }
+        int offset = 4 * lazyCount;
+        lazyOffsets[offset] = nameStart;
+        lazyOffsets[offset + 1] = nameEnd;
+        lazyOffsets[offset + 2] = valueStart;
+        lazyOffsets[offset + 3] = valueEnd;
+        lazySources[lazyCount] = source;
+        lazyNames[lazyCount] = null;
+        lazyValues[lazyCount] = null;
+        lazyNext[lazyCount] = -1;
+        lazyCount++;
+    }
+
+    /*
+     * Decodes the names of any parameters indexed since the last call and
+     * adds them to the name index.
+     */
+    private Map<String,int[]> lazyNameIndex() {
+        for (; lazyIndexedCount < lazyCount; lazyIndexedCount++) {
+            int i = lazyIndexedCount;
+            if (lazyNames[i] == null) {
+                lazyNames[i] = decodeLazy(i, lazyOffsets[4 * i], lazyOffsets[4 * i + 1], tmpName);
+            }
+            int[] firstAndLast = lazyNameIndex.get(lazyNames[i]);
+            if (firstAndLast == null) {
+                lazyNameIndex.put(lazyNames[i], new int[] { i, i });
+            } else {
+                lazyNext[firstAndLast[1]] = i;
+                firstAndLast[1] = i;
+            }
+        }
+        return lazyNameIndex;
+    }
+
+    private String lazyValue(int i) {
+        String value = lazyValues[i];
+        if (value == null) {
+            int valueStart = lazyOffsets[4 * i + 2];
+            if (valueStart < 0) {
+                value = "";
+            } else {
+                value = decodeLazy(i, valueStart, lazyOffsets[4 * i + 3], tmpValue);
+            }
+            lazyValues[i] = value;
+        }
+        return value;
+    }
+
+    private String decodeLazy(int i, int start, int end, ByteChunk bc) {
+        LazySource source = lazySources[i];
+        bc.setBytes(source.bytes, start, end - start);
+        try {
+            // Each name and value is decoded at most once so it is safe to
+            // decode in place
+            if (ByteChunk.findBytes(source.bytes, start, end, DECODE_BYTES) >= 0) {
+                urlDecode(bc);
+            }
+            bc.setCharset(source.charset);
+            return bc.toString();
+        } catch (IOException e) {
+            // Can't happen, as the encoding was validated when the parameters
+            // were indexed
+            setParseFailedReason(FailReason.URL_DECODING);
+            return "";
+        } finally {
+            bc.recycle();
+        }
+    }
+
+    private String getLazyParameter(String name) {
+        int[] firstAndLast = lazyNameIndex().get(name);
+        if (firstAndLast == null) {
+            return null;
+        }
+        return lazyValue(firstAndLast[0]);
+    }
+
+    private String[] getLazyParameterValues(String name, ArrayList<String> values) {
+        int[] firstAndLast = lazyNameIndex().get(name);
+        if (firstAndLast == null) {
+            return values == null ? null : values.toArray(new String[0]);
+        }
+        ArrayList<String> result = values == null ? new ArrayList<>() : new ArrayList<>(values);
+        for (int i = firstAndLast[0]; i != -1; i = lazyNext[i]) {
+            result.add(lazyValue(i));
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private Set<String> getLazyParameterNames() {
+        Map<String,int[]> index = lazyNameIndex();
+        if (paramHashValues.isEmpty()) {
+            return index.keySet();
+        }
+        Set<String> result = new LinkedHashSet<>(paramHashValues.keySet());
+        result.addAll(index.keySet());
+        return result;
+    }
+
+    private void recycleLazy() {
+        if (lazyCount > 0) {
+            // Release the references to the request bytes
+            Arrays.fill(lazySources, 0, lazyCount, null);
+            Arrays.fill(lazyNames, 0, lazyCount, null);
+            Arrays.fill(lazyValues, 0, lazyCount, null);
+            lazyCount = 0;
+        }
+        lazyNameIndex.clear();
+        lazyIndexedCount = 0;
+    }
+
     private void urlDecode(ByteChunk bc) throws IOException {
         if (urlDec == null) {
             urlDec = new UDecoder();
@@ -485,7 +785,7 @@ public final class Parameters {
 //            data.toBytes();
 //        }
 //        ByteChunk bc = data.getByteChunk();
-//        processParameters(bc.getBytes(), bc.getOffset(), bc.getLength(), charset);
+//        processParameters(bc.getBytes(), bc.getOffset(), bc.getLength(), charset, true);
         throw new UnsupportedOperationException();
     }
 
@@ -500,10 +800,31 @@ public final class Parameters {
             StringUtils.join(e.getValue(), ',', sb);
             sb.append('\n');
         }
+        for (Map.Entry<String,int[]> e : lazyNameIndex().entrySet()) {
+            sb.append(e.getKey()).append('=');
+            for (int i = e.getValue()[0]; i != -1; i = lazyNext[i]) {
+                sb.append(lazyValue(i));
+                if (lazyNext[i] != -1) {
+                    sb.append(',');
+                }
+            }
+            sb.append('\n');
+        }
         return sb.toString();
     }
 
 
+    private static final class LazySource {
+        private final byte[] bytes;
+        private final Charset charset;
+
+        private LazySource(byte[] bytes, Charset charset) {
+            this.bytes = bytes;
+            this.charset = charset;
+        }
+    }
+
+
     public enum FailReason {
         CLIENT_DISCONNECT,
         MULTIPART_CONFIG_INVALID,
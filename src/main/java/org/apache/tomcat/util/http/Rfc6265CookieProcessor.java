@@ -66,145 +66,179 @@ public class Rfc6265CookieProcessor extends CookieProcessorBase {
 
     @Override
     public void parseCookieHeader(MimeHeaders headers, ServerCookies serverCookies) {
-
-//        if (headers == null) {
-//            // nothing to process
-//            return;
-//        }
-//
-//        // process each "cookie" header
-//        int pos = headers.findHeader("Cookie", 0);
-//        while (pos >= 0) {
-//            MessageBytes cookieValue = headers.getValue(pos);
-//
-//            if (cookieValue != null && !cookieValue.isNull()) {
-//                if (cookieValue.getType() != MessageBytes.T_BYTES) {
-//                    if (log.isDebugEnabled()) {
-//                        Exception e = new Exception();
-//                        // TODO: Review this in light of HTTP/2
-//                        log.debug("Cookies: Parsing cookie as String. Expected bytes.", e);
-//                    }
-//                    cookieValue.toBytes();
-//                }
-//                if (log.isDebugEnabled()) {
-//                    log.debug("Cookies: Parsing b[]: " + cookieValue.toString());
-//                }
-//                ByteChunk bc = cookieValue.getByteChunk();
-//
-//                Cookie.parseCookie(bc.getBytes(), bc.getOffset(), bc.getLength(), serverCookies);
-//            }
-//
-//            // search from the next position
-//            pos = headers.findHeader("Cookie", ++pos);
-//        }
+//        parseCookieHeader(headers, null, serverCookies);
         throw new UnsupportedOperationException();
     }
 
 
     @Override
-    public String generateHeader(jakarta.servlet.http.Cookie cookie, HttpServletRequest request) {
+    public void parseCookieHeader(MimeHeaders headers, String name, ServerCookies serverCookies) {
 
-//        // Can't use StringBuilder due to DateFormat
-//        StringBuffer header = new StringBuffer();
-//
-//        /*
-//         * TODO: Name validation takes place in Cookie and cannot be configured per Context. Moving it to here would
-//         * allow per Context config but delay validation until the header is generated. However, the spec requires an
-//         * IllegalArgumentException on Cookie generation.
-//         */
-//        header.append(cookie.getName());
-//        header.append('=');
-//        String value = cookie.getValue();
-//        if (value != null && value.length() > 0) {
-//            validateCookieValue(value);
-//            header.append(value);
-//        }
-//
-//        // RFC 6265 prefers Max-Age to Expires but... (see below)
-//        int maxAge = cookie.getMaxAge();
-//        if (maxAge > -1) {
-//            // Negative Max-Age is equivalent to no Max-Age
-//            header.append("; Max-Age=");
-//            header.append(maxAge);
-//
-//            // Microsoft IE and Microsoft Edge don't understand Max-Age so send
-//            // expires as well. Without this, persistent cookies fail with those
-//            // browsers. See http://tomcat.markmail.org/thread/g6sipbofsjossacn
-//
-//            // Wdy, DD-Mon-YY HH:MM:SS GMT ( Expires Netscape format )
-//            header.append("; Expires=");
-//            // To expire immediately we need to set the time in past
-//            if (maxAge == 0) {
-//                header.append(ANCIENT_DATE);
-//            } else {
-//                COOKIE_DATE_FORMAT.get().format(new Date(System.currentTimeMillis() + maxAge * 1000L), header,
-//                        new FieldPosition(0));
-//            }
-//        }
-//
-//        String domain = cookie.getDomain();
-//        if (domain != null && domain.length() > 0) {
-//            validateDomain(domain);
-//            header.append("; Domain=");
-//            header.append(domain);
-//        }
-//
-//        String path = cookie.getPath();
-//        if (path != null && path.length() > 0) {
-//            validatePath(path);
-//            header.append("; Path=");
-//            header.append(path);
-//        }
-//
-//        if (cookie.getSecure()) {
-//            header.append("; Secure");
-//        }
-//
-//        if (cookie.isHttpOnly()) {
-//            header.append("; HttpOnly");
-//        }
-//
-//        String cookieSameSite = cookie.getAttribute(Constants.COOKIE_SAME_SITE_ATTR);
-//        if (cookieSameSite == null) {
-//            // Use processor config
-//            SameSiteCookies sameSiteCookiesValue = getSameSiteCookies();
-//            if (!sameSiteCookiesValue.equals(SameSiteCookies.UNSET)) {
-//                header.append("; SameSite=");
-//                header.append(sameSiteCookiesValue.getValue());
-//            }
-//        } else {
-//            // Use explicit config
-//            header.append("; SameSite=");
-//            header.append(cookieSameSite);
-//        }
-//
-//        // Add the remaining attributes
-//        for (Map.Entry<String,String> entry : cookie.getAttributes().entrySet()) {
-//            switch (entry.getKey()) {
-//                case Constants.COOKIE_COMMENT_ATTR:
-//                case Constants.COOKIE_DOMAIN_ATTR:
-//                case Constants.COOKIE_MAX_AGE_ATTR:
-//                case Constants.COOKIE_PATH_ATTR:
-//                case Constants.COOKIE_SECURE_ATTR:
-//                case Constants.COOKIE_HTTP_ONLY_ATTR:
-//                case Constants.COOKIE_SAME_SITE_ATTR:
-//                    // Handled above so NO-OP
-//                    break;
-//                default: {
-//                    validateAttribute(entry.getKey(), entry.getValue());
-//                    header.append("; ");
-//                    header.append(entry.getKey());
-//                    header.append('=');
-//                    header.append(entry.getValue());
-//                }
-//            }
-//        }
-//
-//        return header.toString();
+        if (headers == null) {
+            // nothing to process
+            return;
+        }
+
+        // process each "cookie" header
+        int pos = headers.findHeader(HeaderName.COOKIE, 0);
+        while (pos >= 0) {
+            MessageBytes cookieValue = headers.getValue(pos);
+
+            if (cookieValue != null && !cookieValue.isNull()) {
+                if (cookieValue.getType() != MessageBytes.T_BYTES) {
+                    if (log.isDebugEnabled()) {
+                        Exception e = new Exception();
+                        // TODO: Review this in light of HTTP/2
+                        log.debug("Cookies: Parsing cookie as String. Expected bytes.", e);
+                    }
+                    cookieValue.toBytes();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Cookies: Parsing b[]: " + cookieValue.toString());
+                }
+                ByteChunk bc = cookieValue.getByteChunk();
+
+                Cookie.parseCookie(bc.getBytes(), bc.getOffset(), bc.getLength(), name, serverCookies);
+            }
+
+            // search from the next position
+            pos = headers.findHeader(HeaderName.COOKIE, ++pos);
+        }
+    }
+
+
+    @Override
+    public String generateHeader(jakarta.servlet.http.Cookie cookie, HttpServletRequest request) {
+//        return generateHeader(cookie, request, null);
         throw new UnsupportedOperationException();
     }
 
 
+    @Override
+    public String generateHeader(jakarta.servlet.http.Cookie cookie, HttpServletRequest request, String attributes) {
+
+        // Can't use StringBuilder due to DateFormat
+        StringBuffer header = new StringBuffer();
+
+        /*
+         * TODO: Name validation takes place in Cookie and cannot be configured per Context. Moving it to here would
+         * allow per Context config but delay validation until the header is generated. However, the spec requires an
+         * IllegalArgumentException on Cookie generation.
+         */
+        header.append(cookie.getName());
+        header.append('=');
+        String value = cookie.getValue();
+        if (value != null && value.length() > 0) {
+            validateCookieValue(value);
+            header.append(value);
+        }
+
+        // RFC 6265 prefers Max-Age to Expires but... (see below)
+        int maxAge = cookie.getMaxAge();
+        if (maxAge > -1) {
+            // Negative Max-Age is equivalent to no Max-Age
+            header.append("; Max-Age=");
+            header.append(maxAge);
+
+            // Microsoft IE and Microsoft Edge don't understand Max-Age so send
+            // expires as well. Without this, persistent cookies fail with those
+            // browsers. See http://tomcat.markmail.org/thread/g6sipbofsjossacn
+
+            // Wdy, DD-Mon-YY HH:MM:SS GMT ( Expires Netscape format )
+            header.append("; Expires=");
+            // To expire immediately we need to set the time in past
+            if (maxAge == 0) {
+                header.append(ANCIENT_DATE);
+            } else {
+                COOKIE_DATE_FORMAT.get().format(new Date(System.currentTimeMillis() + maxAge * 1000L), header,
+                        new FieldPosition(0));
+            }
+        }
+
+        if (attributes == null) {
+            appendAttributes(cookie, header);
+        } else {
+            header.append(attributes);
+        }
+
+        return header.toString();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The attributes generated by this implementation do not depend on the request.
+     */
+    @Override
+    public String generateHeaderAttributes(jakarta.servlet.http.Cookie cookie, HttpServletRequest request) {
+        StringBuffer attributes = new StringBuffer();
+        appendAttributes(cookie, attributes);
+        return attributes.toString();
+    }
+
+
+    private void appendAttributes(jakarta.servlet.http.Cookie cookie, StringBuffer header) {
+        String domain = cookie.getDomain();
+        if (domain != null && domain.length() > 0) {
+            validateDomain(domain);
+            header.append("; Domain=");
+            header.append(domain);
+        }
+
+        String path = cookie.getPath();
+        if (path != null && path.length() > 0) {
+            validatePath(path);
+            header.append("; Path=");
+            header.append(path);
+        }
+
+        if (cookie.getSecure()) {
+            header.append("; Secure");
+        }
+
+        if (cookie.isHttpOnly()) {
+            header.append("; HttpOnly");
+        }
+
+        String cookieSameSite = cookie.getAttribute(Constants.COOKIE_SAME_SITE_ATTR);
+        if (cookieSameSite == null) {
+            // Use processor config
+            SameSiteCookies sameSiteCookiesValue = getSameSiteCookies();
+            if (!sameSiteCookiesValue.equals(SameSiteCookies.UNSET)) {
+                header.append("; SameSite=");
+                header.append(sameSiteCookiesValue.getValue());
+            }
+        } else {
+            // Use explicit config
+            header.append("; SameSite=");
+            header.append(cookieSameSite);
+        }
+
+        // Add the remaining attributes
+        for (Map.Entry<String,String> entry : cookie.getAttributes().entrySet()) {
+            switch (entry.getKey()) {
+                case Constants.COOKIE_COMMENT_ATTR:
+                case Constants.COOKIE_DOMAIN_ATTR:
+                case Constants.COOKIE_MAX_AGE_ATTR:
+                case Constants.COOKIE_PATH_ATTR:
+                case Constants.COOKIE_SECURE_ATTR:
+                case Constants.COOKIE_HTTP_ONLY_ATTR:
+                case Constants.COOKIE_SAME_SITE_ATTR:
+                    // Handled above so NO-OP
+                    break;
+                default: {
+                    validateAttribute(entry.getKey(), entry.getValue());
+                    header.append("; ");
+                    header.append(entry.getKey());
+                    header.append('=');
+                    header.append(entry.getValue());
+                }
+            }
+        }
+    }
+
+
     private void validateCookieValue(String value) {
 //        int start = 0;
 //        int end = value.length();
@@ -16,10 +16,16 @@
  */
 package org.apache.tomcat.util.http.fileupload;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
 
 
 /**
@@ -32,9 +38,20 @@ import java.io.OutputStream;
  * not know in advance the size of the file being uploaded. If the file is small
  * you want to store it in memory (for speed), but if the file is large you want
  * to store it to file (to avoid memory issues).
+ * <p>
+ * Once the threshold has been exceeded, data is written to the file through a
+ * {@link FileChannel}. Data written via {@link #write(ByteBuffer)} is passed
+ * to the channel without being copied into an intermediate array.
+ * <p>
+ * If a {@link DirectBufferPool} is provided, data below the threshold is
+ * retained in buffers from the pool rather than on the heap. If the pool runs
+ * out of buffers, the data is written to disk before the threshold is
+ * reached. The buffers must be returned to the pool by calling
+ * {@link #release()}.
  */
 public class DeferredFileOutputStream
         extends ThresholdingOutputStream
+        implements WritableByteChannel
 {
     // ----------------------------------------------------------- Data members
 
@@ -46,6 +63,15 @@ public class DeferredFileOutputStream
     private ByteArrayOutputStream memoryOutputStream;
 
 
+    /**
+     * The output stream to which data will be written prior to the threshold
+     * being reached if a buffer pool is used. Only one of
+     * <code>memoryOutputStream</code> and <code>segmentOutputStream</code> is
+     * used.
+     */
+    private DirectSegmentOutputStream segmentOutputStream;
+
+
     /**
      * The output stream to which data will be written at any given time. This
      * will always be one of <code>memoryOutputStream</code> or
@@ -54,6 +80,19 @@ public class DeferredFileOutputStream
     private OutputStream currentOutputStream;
 
 
+    /**
+     * The channel to which output is written once the threshold has been
+     * exceeded. <code>currentOutputStream</code> writes to this channel.
+     */
+    private FileChannel diskChannel;
+
+
+    /**
+     * True when close() has been called successfully.
+     */
+    private boolean closed = false;
+
+
     /**
      * The file to which output will be directed if the threshold is exceeded.
      */
@@ -91,6 +130,27 @@ public class DeferredFileOutputStream
     }
 
 
+    /**
+     * Constructs an instance of this class which will trigger an event at the
+     * specified threshold, and save data to a file beyond that point. Data
+     * below the threshold is retained in buffers from the given pool.
+     *
+     * @param threshold  The number of bytes at which to trigger an event.
+     * @param outputFile The file to which data is saved beyond the threshold.
+     * @param bufferPool The pool from which buffers are obtained, or
+     *                   {@code null} to retain data on the heap.
+     */
+    public DeferredFileOutputStream(final int threshold, final File outputFile, final DirectBufferPool bufferPool)
+    {
+        this(threshold, outputFile);
+        if (bufferPool != null) {
+            memoryOutputStream = null;
+            segmentOutputStream = new DirectSegmentOutputStream(bufferPool);
+            currentOutputStream = segmentOutputStream;
+        }
+    }
+
+
     /**
      * Constructs an instance of this class which will trigger an event at the
      * specified threshold, and save data either to a file beyond that point.
@@ -144,19 +204,71 @@ public class DeferredFileOutputStream
     @Override
     protected void thresholdReached() throws IOException
     {
+        if (diskChannel != null) {
+            // Already switched as the buffer pool was exhausted
+            return;
+        }
         if (prefix != null) {
             outputFile = File.createTempFile(prefix, suffix, directory);
         }
         FileUtils.forceMkdirParent(outputFile);
-        final FileOutputStream fos = new FileOutputStream(outputFile);
+        final FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        final OutputStream fos = Channels.newOutputStream(channel);
         try {
-            memoryOutputStream.writeTo(fos);
+            if (segmentOutputStream != null) {
+                segmentOutputStream.writeTo(channel);
+            } else {
+                memoryOutputStream.writeTo(fos);
+            }
         } catch (final IOException e){
-            fos.close();
+            channel.close();
             throw e;
         }
+        diskChannel = channel;
         currentOutputStream = fos;
         memoryOutputStream = null;
+        if (segmentOutputStream != null) {
+            segmentOutputStream.release();
+            segmentOutputStream = null;
+        }
+    }
+
+
+    /**
+     * Switches to disk-based storage early if the buffer pool cannot provide
+     * the space for the pending write.
+     *
+     * @throws IOException if an error occurs.
+     */
+    @Override
+    protected void checkThreshold(final int count) throws IOException
+    {
+        if (segmentOutputStream != null && !segmentOutputStream.reserve(count)) {
+            thresholdReached();
+        }
+        super.checkThreshold(count);
+    }
+
+
+    /**
+     * Writes the buffer directly to the file channel once the threshold has
+     * been exceeded.
+     *
+     * @throws IOException if an error occurs.
+     */
+    @Override
+    protected void writeBuffer(final ByteBuffer src) throws IOException
+    {
+        if (segmentOutputStream != null) {
+            segmentOutputStream.write(src);
+        } else if (diskChannel == null) {
+            super.writeBuffer(src);
+        } else {
+            while (src.hasRemaining()) {
+                diskChannel.write(src);
+            }
+        }
     }
 
 
@@ -172,7 +284,20 @@ public class DeferredFileOutputStream
      */
     public boolean isInMemory()
     {
-        return !isThresholdExceeded();
+        return diskChannel == null;
+    }
+
+
+    /**
+     * Determines whether or not the data retained in memory is held in
+     * buffers from a {@link DirectBufferPool}.
+     *
+     * @return {@code true} if the data is held in pooled buffers;
+     *         {@code false} otherwise.
+     */
+    public boolean isPooled()
+    {
+        return segmentOutputStream != null;
     }
 
 
@@ -190,10 +315,49 @@ public class DeferredFileOutputStream
         {
             return memoryOutputStream.toByteArray();
         }
+        if (segmentOutputStream != null)
+        {
+            return segmentOutputStream.toByteArray();
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns a stream which reads the data retained in memory. Data held in
+     * pooled buffers is read without being copied onto the heap. If the data
+     * was written to disk, this method returns {@code null}.
+     *
+     * @return A stream for the data, or {@code null} if no such data is
+     *         available.
+     */
+    public InputStream getMemoryInputStream()
+    {
+        if (memoryOutputStream != null)
+        {
+            return new ByteArrayInputStream(memoryOutputStream.toByteArray());
+        }
+        if (segmentOutputStream != null)
+        {
+            return segmentOutputStream.getInputStream();
+        }
         return null;
     }
 
 
+    /**
+     * Returns any pooled buffers to the pool. Data retained in memory is
+     * discarded.
+     */
+    public void release()
+    {
+        if (segmentOutputStream != null)
+        {
+            segmentOutputStream.release();
+        }
+    }
+
+
     /**
      * Returns either the output file specified in the constructor or
      * the temporary file created or null.
@@ -223,5 +387,13 @@ public class DeferredFileOutputStream
     public void close() throws IOException
     {
         super.close();
+        closed = true;
+    }
+
+
+    @Override
+    public boolean isOpen()
+    {
+        return !closed;
     }
 }
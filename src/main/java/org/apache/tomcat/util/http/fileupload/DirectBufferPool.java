@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.fileupload;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tomcat.util.collections.SynchronizedStack;
+
+/**
+ * A bounded pool of fixed size direct buffers, used to hold the contents of
+ * file items that are retained in memory outside of the heap.
+ * <p>
+ * No more than <code>maxSegments</code> buffers are ever allocated so the
+ * memory used by the pool is bounded regardless of the number of concurrent
+ * uploads. Once every buffer is in use, {@link #allocate()} returns
+ * <code>null</code> and {@link DeferredFileOutputStream} writes the item to
+ * disk instead.
+ */
+public class DirectBufferPool {
+
+    /**
+     * The default size, in bytes, of each buffer.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 8192;
+
+    private final int segmentSize;
+
+    private final int maxSegments;
+
+    private final SynchronizedStack<ByteBuffer> free;
+
+    private final AtomicInteger allocated = new AtomicInteger(0);
+
+
+    /**
+     * Constructs a pool.
+     *
+     * @param segmentSize The size, in bytes, of each buffer.
+     * @param maxSegments The maximum number of buffers to allocate.
+     */
+    public DirectBufferPool(final int segmentSize, final int maxSegments) {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be greater than zero: " + segmentSize);
+        }
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(0, maxSegments);
+        free = new SynchronizedStack<>(Math.min(SynchronizedStack.DEFAULT_SIZE, this.maxSegments),
+                this.maxSegments);
+    }
+
+
+    /**
+     * Obtains an empty buffer from the pool.
+     *
+     * @return A buffer ready to be written to, or <code>null</code> if every
+     *         buffer the pool may allocate is in use.
+     */
+    public ByteBuffer allocate() {
+        final ByteBuffer buffer = free.pop();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocated.incrementAndGet() > maxSegments) {
+            allocated.decrementAndGet();
+            return null;
+        }
+        return ByteBuffer.allocateDirect(segmentSize);
+    }
+
+
+    /**
+     * Returns a buffer to the pool. The buffer must have been obtained from
+     * {@link #allocate()} and must not be used after it has been released.
+     *
+     * @param buffer The buffer to return.
+     */
+    public void release(final ByteBuffer buffer) {
+        buffer.clear();
+        if (!free.push(buffer)) {
+            allocated.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * @return The size, in bytes, of each buffer.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+
+    /**
+     * @return The maximum number of buffers the pool will allocate.
+     */
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+
+    /**
+     * @return The number of buffers the pool has allocated.
+     */
+    public int getAllocatedSegments() {
+        return allocated.get();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.fileupload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An output stream which writes to a chain of buffers obtained from a
+ * {@link DirectBufferPool}. Buffers are added to the chain as it fills so the
+ * contents are never copied to grow the storage.
+ * <p>
+ * Space must be reserved with {@link #reserve(int)} before it is written to.
+ * The buffers are returned to the pool by {@link #release()}.
+ */
+final class DirectSegmentOutputStream extends OutputStream {
+
+    private final DirectBufferPool pool;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The index of the segment currently being written.
+     */
+    private int current = 0;
+
+    private long count = 0;
+
+    private boolean released = false;
+
+
+    DirectSegmentOutputStream(final DirectBufferPool pool) {
+        this.pool = pool;
+    }
+
+
+    /**
+     * Ensures that the given number of bytes can be written without obtaining
+     * further buffers from the pool.
+     *
+     * @param len The number of bytes about to be written.
+     *
+     * @return <code>true</code> if the space is available or
+     *         <code>false</code> if the pool has no more buffers.
+     */
+    boolean reserve(final int len) {
+        long available = -count;
+        for (final ByteBuffer segment : segments) {
+            available += segment.capacity();
+        }
+        while (available < len) {
+            final ByteBuffer segment = pool.allocate();
+            if (segment == null) {
+                return false;
+            }
+            segments.add(segment);
+            available += segment.capacity();
+        }
+        return true;
+    }
+
+
+    @Override
+    public void write(final int b) throws IOException {
+        currentSegment(1).put((byte) b);
+        count++;
+    }
+
+
+    @Override
+    public void write(final byte[] b, final int off, int len) throws IOException {
+        int pos = off;
+        while (len > 0) {
+            final ByteBuffer segment = currentSegment(len);
+            final int n = Math.min(len, segment.remaining());
+            segment.put(b, pos, n);
+            pos += n;
+            len -= n;
+            count += n;
+        }
+    }
+
+
+    /**
+     * Writes the remaining bytes from the given buffer.
+     *
+     * @param src The buffer from which the data will be written.
+     *
+     * @throws IOException if insufficient space was reserved.
+     */
+    void write(final ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            final ByteBuffer segment = currentSegment(src.remaining());
+            final int n = Math.min(src.remaining(), segment.remaining());
+            final int limit = src.limit();
+            src.limit(src.position() + n);
+            segment.put(src);
+            src.limit(limit);
+            count += n;
+        }
+    }
+
+
+    /**
+     * Writes the contents to the given channel.
+     *
+     * @param out The channel to which the contents will be written.
+     *
+     * @throws IOException if an error occurs.
+     */
+    void writeTo(final WritableByteChannel out) throws IOException {
+        for (final ByteBuffer segment : readableSegments()) {
+            while (segment.hasRemaining()) {
+                out.write(segment);
+            }
+        }
+    }
+
+
+    /**
+     * @return A copy of the contents on the heap.
+     */
+    byte[] toByteArray() {
+        final byte[] result = new byte[(int) count];
+        int pos = 0;
+        for (final ByteBuffer segment : readableSegments()) {
+            final int n = segment.remaining();
+            segment.get(result, pos, n);
+            pos += n;
+        }
+        return result;
+    }
+
+
+    /**
+     * @return A stream which reads the contents without copying them onto the
+     *         heap. The stream must not be used once the buffers have been
+     *         released.
+     */
+    InputStream getInputStream() {
+        final List<ByteBuffer> readable = readableSegments();
+        return new InputStream() {
+
+            private int index = 0;
+
+            private ByteBuffer next() {
+                while (index < readable.size()) {
+                    final ByteBuffer segment = readable.get(index);
+                    if (segment.hasRemaining()) {
+                        return segment;
+                    }
+                    index++;
+                }
+                return null;
+            }
+
+            @Override
+            public int read() throws IOException {
+                final ByteBuffer segment = next();
+                return segment == null ? -1 : segment.get() & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                final ByteBuffer segment = next();
+                if (segment == null) {
+                    return -1;
+                }
+                final int n = Math.min(len, segment.remaining());
+                segment.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() throws IOException {
+                int result = 0;
+                for (int i = index; i < readable.size(); i++) {
+                    result += readable.get(i).remaining();
+                }
+                return result;
+            }
+        };
+    }
+
+
+    /**
+     * @return The number of bytes written.
+     */
+    long size() {
+        return count;
+    }
+
+
+    /**
+     * Returns the buffers to the pool. Any contents are discarded.
+     */
+    void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        for (final ByteBuffer segment : segments) {
+            pool.release(segment);
+        }
+        segments.clear();
+        current = 0;
+        count = 0;
+    }
+
+
+    private ByteBuffer currentSegment(final int len) throws IOException {
+        if (released) {
+            throw new IOException("The buffers have been released");
+        }
+        while (current < segments.size()) {
+            final ByteBuffer segment = segments.get(current);
+            if (segment.hasRemaining()) {
+                return segment;
+            }
+            current++;
+        }
+        if (!reserve(len)) {
+            throw new IOException("No buffers are available from the pool");
+        }
+        return segments.get(current);
+    }
+
+
+    private List<ByteBuffer> readableSegments() {
+        final List<ByteBuffer> result = new ArrayList<>(segments.size());
+        for (final ByteBuffer segment : segments) {
+            if (segment.position() == 0) {
+                break;
+            }
+            final ByteBuffer readable = segment.duplicate();
+            readable.flip();
+            result.add(readable);
+        }
+        return result;
+    }
+}
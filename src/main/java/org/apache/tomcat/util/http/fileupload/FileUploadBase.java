@@ -17,6 +17,8 @@
 package org.apache.tomcat.util.http.fileupload;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -26,6 +28,7 @@ import java.util.Objects;
 
 import org.apache.tomcat.util.http.fileupload.impl.FileCountLimitExceededException;
 import org.apache.tomcat.util.http.fileupload.impl.FileItemIteratorImpl;
+import org.apache.tomcat.util.http.fileupload.impl.FileItemStreamImpl;
 import org.apache.tomcat.util.http.fileupload.impl.FileUploadIOException;
 import org.apache.tomcat.util.http.fileupload.impl.IOFileUploadException;
 import org.apache.tomcat.util.http.fileupload.util.FileItemHeadersImpl;
@@ -289,7 +292,15 @@ public abstract class FileUploadBase {
                         item.isFormField(), fileName);
                 items.add(fileItem);
                 try {
-                    Streams.copy(item.openStream(), fileItem.getOutputStream(), true, buffer);
+                    final OutputStream out = fileItem.getOutputStream();
+                    if (item instanceof FileItemStreamImpl && out instanceof WritableByteChannel) {
+                        // Avoid copying the contents via the intermediate buffer
+                        try (OutputStream os = out) {
+                            ((FileItemStreamImpl) item).transferTo((WritableByteChannel) os);
+                        }
+                    } else {
+                        Streams.copy(item.openStream(), out, true, buffer);
+                    }
                 } catch (final FileUploadIOException e) {
                     throw (FileUploadException) e.getCause();
                 } catch (final IOException e) {
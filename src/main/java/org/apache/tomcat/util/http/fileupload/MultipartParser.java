@@ -0,0 +1,440 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.fileupload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import org.apache.tomcat.util.http.fileupload.MultipartStream.MalformedStreamException;
+import org.apache.tomcat.util.http.fileupload.MultipartStream.ProgressNotifier;
+
+/**
+ * <p> Push based parser for MIME 'multipart' streams.
+ *
+ * <p> Unlike {@link MultipartStream}, which reads from an
+ * {@link java.io.InputStream}, this parser is given the data as it becomes
+ * available via {@link #parse(byte[], int, int)} and reports the parts it
+ * finds to a {@link Handler}. It never needs to wait for more data so it may
+ * be used to process a request without blocking, for example from a
+ * {@code ReadListener}.
+ *
+ * <p> The same syntax as {@link MultipartStream} is accepted, including a
+ * single level of nested {@code multipart/mixed} parts. The delimiter is
+ * found with the Knuth-Morris-Pratt algorithm. A partial match at the end of
+ * the provided data is carried over to the next call so the body data is
+ * never buffered.
+ */
+public class MultipartParser {
+
+    /**
+     * Receives the parts found by a {@link MultipartParser}. For every call to
+     * {@link #partStart(String, boolean)} that does not return a boundary,
+     * there is zero or more calls to {@link #partData(byte[], int, int)}
+     * followed by one call to {@link #partEnd()}.
+     */
+    public interface Handler {
+
+        /**
+         * Called once the headers of a part have been read.
+         *
+         * @param headers The unparsed headers of the part.
+         * @param nested  {@code true} if the part is contained in a nested
+         *                multipart body.
+         * @return The boundary if the body of the part is a nested multipart
+         *         body that should be parsed, otherwise {@code null}. Ignored
+         *         for parts that are already nested.
+         * @throws IOException If the part is rejected.
+         */
+        byte[] partStart(String headers, boolean nested) throws IOException;
+
+        /**
+         * Called with the body data of the current part.
+         *
+         * @param b   The buffer containing the data.
+         * @param off The offset of the data in the buffer.
+         * @param len The length of the data.
+         * @throws IOException If the data cannot be processed.
+         */
+        void partData(byte[] b, int off, int len) throws IOException;
+
+        /**
+         * Called once all the body data of the current part has been passed
+         * to {@link #partData(byte[], int, int)}.
+         *
+         * @throws IOException If the part cannot be completed.
+         */
+        void partEnd() throws IOException;
+    }
+
+
+    private enum State {
+        PREAMBLE,
+        DELIMITER_SUFFIX,
+        HEADERS,
+        BODY,
+        EPILOGUE
+    }
+
+
+    private final Handler handler;
+
+    private final ProgressNotifier notifier;
+
+    private final byte[] outerBoundary;
+
+    private String headerEncoding;
+
+    /**
+     * The delimiter, CRLF followed by two dashes and the boundary.
+     */
+    private byte[] delimiter;
+
+    /**
+     * KMP table for the delimiter.
+     */
+    private int[] delimiterTable;
+
+    /**
+     * KMP table for the delimiter less the leading CRLF which is the pattern
+     * that ends the preamble.
+     */
+    private int[] preambleTable;
+
+    /**
+     * The number of bytes of the delimiter that matched the end of the data
+     * seen so far.
+     */
+    private int matched;
+
+    private State state = State.PREAMBLE;
+
+    private boolean nested = false;
+
+    private boolean inPart = false;
+
+    private boolean partsFound = false;
+
+    /**
+     * Is the delimiter being completed the one that ended the preamble.
+     */
+    private boolean afterPreamble;
+
+    private byte suffix;
+
+    private int suffixLength;
+
+    private final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+
+    private int headerMatched;
+
+
+    /**
+     * Creates a new parser.
+     *
+     * @param boundary  The token used for dividing the stream into
+     *                  {@code encapsulations}.
+     * @param pNotifier The notifier, which is used for calling the progress
+     *                  listener, if any.
+     * @param handler   The handler that receives the parts.
+     */
+    public MultipartParser(final byte[] boundary, final ProgressNotifier pNotifier, final Handler handler) {
+        if (boundary == null) {
+            throw new IllegalArgumentException("boundary may not be null");
+        }
+        this.outerBoundary = boundary.clone();
+        this.notifier = pNotifier;
+        this.handler = handler;
+        setBoundary(outerBoundary);
+    }
+
+
+    public String getHeaderEncoding() {
+        return headerEncoding;
+    }
+
+
+    /**
+     * Specifies the character encoding to be used when reading the headers of
+     * individual parts. When not specified, or {@code null}, the platform
+     * default encoding is used.
+     *
+     * @param encoding The encoding used to read part headers.
+     */
+    public void setHeaderEncoding(final String encoding) {
+        headerEncoding = encoding;
+    }
+
+
+    /**
+     * Parses the next section of the multipart stream.
+     *
+     * @param b   The buffer containing the data.
+     * @param off The offset of the data in the buffer.
+     * @param len The length of the data.
+     * @throws IOException If the stream is malformed or the handler fails.
+     */
+    public void parse(final byte[] b, final int off, final int len) throws IOException {
+        if (notifier != null) {
+            notifier.noteBytesRead(len);
+        }
+        final int end = off + len;
+        int pos = off;
+        while (pos < end) {
+            switch (state) {
+                case PREAMBLE: {
+                    // First delimiter may be not preceded with a CRLF.
+                    pos = findDelimiter(b, pos, end, 2, preambleTable, false);
+                    if (pos == -1) {
+                        return;
+                    }
+                    state = State.DELIMITER_SUFFIX;
+                    suffixLength = 0;
+                    afterPreamble = true;
+                    break;
+                }
+                case BODY: {
+                    pos = findDelimiter(b, pos, end, 0, delimiterTable, inPart);
+                    if (pos == -1) {
+                        return;
+                    }
+                    if (inPart) {
+                        inPart = false;
+                        handler.partEnd();
+                    }
+                    state = State.DELIMITER_SUFFIX;
+                    suffixLength = 0;
+                    afterPreamble = false;
+                    break;
+                }
+                case DELIMITER_SUFFIX: {
+                    final byte c = b[pos++];
+                    if (suffixLength == 0) {
+                        if (c == MultipartStream.LF) {
+                            // Work around IE5 Mac bug with input type=image.
+                            // See MultipartStream.readBoundary()
+                            startHeaders(0);
+                        } else {
+                            suffix = c;
+                            suffixLength = 1;
+                        }
+                    } else if (suffix == MultipartStream.DASH && c == MultipartStream.DASH) {
+                        endOfBody();
+                    } else if (suffix == MultipartStream.CR && c == MultipartStream.LF) {
+                        // The CRLF that ends the delimiter also ends a
+                        // (possibly empty) header section
+                        startHeaders(2);
+                    } else if (afterPreamble) {
+                        // MultipartStream.skipPreamble() treats this as the
+                        // end of the (possibly nested) multipart body
+                        endOfBody();
+                    } else {
+                        throw new MalformedStreamException("Unexpected characters follow a boundary");
+                    }
+                    break;
+                }
+                case HEADERS: {
+                    pos = readHeaders(b, pos, end);
+                    break;
+                }
+                case EPILOGUE: {
+                    // Ignore anything after the final delimiter
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Signals the end of the multipart stream.
+     *
+     * @throws IOException If the stream ended before the final delimiter.
+     */
+    public void finish() throws IOException {
+        if (state == State.EPILOGUE) {
+            return;
+        }
+        if (!nested && !partsFound && (state == State.PREAMBLE || state == State.DELIMITER_SUFFIX)) {
+            // No complete delimiter found so there are no parts. Consistent
+            // with MultipartStream.skipPreamble()
+            return;
+        }
+        throw new MalformedStreamException("Stream ended unexpectedly");
+    }
+
+
+    /**
+     * Searches for the delimiter (less the first <code>base</code> bytes),
+     * passing the data that precedes it to the handler if <code>emit</code> is
+     * {@code true}. Bytes that might be the start of a delimiter are held back
+     * until it is known whether they are. As they can only be a prefix of the
+     * delimiter, they are passed to the handler from the delimiter itself if
+     * the match fails.
+     *
+     * @return the position following the delimiter or -1 if no delimiter ends
+     *         in the given range
+     */
+    private int findDelimiter(final byte[] b, final int off, final int end, final int base, final int[] table,
+            final boolean emit) throws IOException {
+        final int length = delimiter.length - base;
+        final int carried = matched;
+        int released = 0;
+        int j = matched;
+        int i = off;
+        while (i < end) {
+            final byte c = b[i++];
+            while (j >= 0 && c != delimiter[base + j]) {
+                j = table[j];
+            }
+            j++;
+            if (emit && released < carried) {
+                final int stillHeld = Math.max(0, j - (i - off));
+                final int release = carried - stillHeld - released;
+                if (release > 0) {
+                    handler.partData(delimiter, base + released, release);
+                    released += release;
+                }
+            }
+            if (j == length) {
+                matched = 0;
+                if (emit && i - length > off) {
+                    handler.partData(b, off, i - length - off);
+                }
+                return i;
+            }
+        }
+        matched = j;
+        final int dataEnd = end - Math.min(j, end - off);
+        if (emit && dataEnd > off) {
+            handler.partData(b, off, dataEnd - off);
+        }
+        return -1;
+    }
+
+
+    private void startHeaders(final int alreadyMatched) {
+        state = State.HEADERS;
+        headerBytes.reset();
+        headerMatched = alreadyMatched;
+    }
+
+
+    private int readHeaders(final byte[] b, final int off, final int end) throws IOException {
+        int pos = off;
+        while (pos < end) {
+            final byte c = b[pos++];
+            if (headerBytes.size() == MultipartStream.HEADER_PART_SIZE_MAX) {
+                throw new MalformedStreamException(String.format(
+                        "Header section has more than %s bytes (maybe it is not properly terminated)",
+                        Integer.valueOf(MultipartStream.HEADER_PART_SIZE_MAX)));
+            }
+            headerBytes.write(c);
+            if (c == MultipartStream.HEADER_SEPARATOR[headerMatched]) {
+                if (++headerMatched == MultipartStream.HEADER_SEPARATOR.length) {
+                    headersComplete();
+                    break;
+                }
+            } else {
+                // Reset as MultipartStream.readHeaders() does
+                headerMatched = 0;
+            }
+        }
+        return pos;
+    }
+
+
+    private void headersComplete() throws IOException {
+        String headers;
+        if (headerEncoding != null) {
+            try {
+                headers = headerBytes.toString(headerEncoding);
+            } catch (final UnsupportedEncodingException e) {
+                // Fall back to platform default if specified encoding is not
+                // supported.
+                headers = headerBytes.toString();
+            }
+        } else {
+            headers = headerBytes.toString();
+        }
+        headerBytes.reset();
+        partsFound = true;
+
+        final byte[] subBoundary = handler.partStart(headers, nested);
+        if (subBoundary != null && !nested) {
+            nested = true;
+            setBoundary(subBoundary);
+            state = State.PREAMBLE;
+        } else {
+            inPart = true;
+            state = State.BODY;
+        }
+    }
+
+
+    private void endOfBody() {
+        if (nested) {
+            // Return to the outer multipart. Anything between the end of the
+            // nested body and the next outer delimiter is discarded.
+            nested = false;
+            setBoundary(outerBoundary);
+            state = State.BODY;
+        } else {
+            state = State.EPILOGUE;
+        }
+    }
+
+
+    private void setBoundary(final byte[] boundary) {
+        delimiter = new byte[MultipartStream.BOUNDARY_PREFIX.length + boundary.length];
+        System.arraycopy(MultipartStream.BOUNDARY_PREFIX, 0, delimiter, 0, MultipartStream.BOUNDARY_PREFIX.length);
+        System.arraycopy(boundary, 0, delimiter, MultipartStream.BOUNDARY_PREFIX.length, boundary.length);
+        delimiterTable = computeTable(delimiter, 0);
+        preambleTable = computeTable(delimiter, 2);
+        matched = 0;
+    }
+
+
+    /*
+     * Compute the table used for Knuth-Morris-Pratt search algorithm for the
+     * pattern that starts at the given offset in the given array. See
+     * MultipartStream.computeBoundaryTable().
+     */
+    private static int[] computeTable(final byte[] pattern, final int base) {
+        final int length = pattern.length - base;
+        final int[] table = new int[length + 1];
+        int position = 2;
+        int candidate = 0;
+
+        table[0] = -1;
+        table[1] = 0;
+
+        while (position <= length) {
+            if (pattern[base + position - 1] == pattern[base + candidate]) {
+                table[position] = candidate + 1;
+                candidate++;
+                position++;
+            } else if (candidate > 0) {
+                candidate = table[candidate];
+            } else {
+                table[position] = 0;
+                position++;
+            }
+        }
+        return table;
+    }
+}
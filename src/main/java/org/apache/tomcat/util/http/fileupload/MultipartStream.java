@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.tomcat.util.http.fileupload.impl.FileUploadIOException;
 import org.apache.tomcat.util.http.fileupload.util.Closeable;
@@ -867,6 +869,42 @@ public class MultipartStream {
             return res;
         }
 
+        /**
+         * Writes bytes of the item directly from the internal buffer of the
+         * multipart stream to the given channel. Unlike
+         * {@link #read(byte[], int, int)}, the bytes are not copied into an
+         * intermediate buffer first.
+         *
+         * @param target The channel to which the bytes are written.
+         * @param maxLen Maximum number of bytes to write.
+         * @return Number of bytes, which have been actually written,
+         *   or -1 for EOF.
+         * @throws IOException An I/O error occurred.
+         */
+        public int read(final WritableByteChannel target, final int maxLen) throws IOException {
+            if (closed) {
+                throw new FileItemStream.ItemSkippedException();
+            }
+            if (maxLen == 0) {
+                return 0;
+            }
+            int res = available();
+            if (res == 0) {
+                res = makeAvailable();
+                if (res == 0) {
+                    return -1;
+                }
+            }
+            res = Math.min(res, maxLen);
+            final ByteBuffer src = ByteBuffer.wrap(buffer, head, res);
+            while (src.hasRemaining()) {
+                target.write(src);
+            }
+            head += res;
+            total += res;
+            return res;
+        }
+
         /**
          * Closes the input stream.
          *
@@ -18,6 +18,7 @@ package org.apache.tomcat.util.http.fileupload;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -129,6 +130,26 @@ public abstract class ThresholdingOutputStream
     }
 
 
+    /**
+     * Writes the remaining bytes from the specified buffer to this output
+     * stream.
+     *
+     * @param src The buffer from which the data will be written.
+     *
+     * @return The number of bytes written.
+     *
+     * @throws IOException if an error occurs.
+     */
+    public int write(final ByteBuffer src) throws IOException
+    {
+        final int len = src.remaining();
+        checkThreshold(len);
+        writeBuffer(src);
+        written += len;
+        return len;
+    }
+
+
     /**
      * Flushes this output stream and forces any buffered output bytes to be
      * written out.
@@ -179,6 +200,18 @@ public abstract class ThresholdingOutputStream
     }
 
 
+    /**
+     * Returns the number of bytes that have been written to this output
+     * stream.
+     *
+     * @return The number of bytes written.
+     */
+    public long getByteCount()
+    {
+        return written;
+    }
+
+
     // ------------------------------------------------------ Protected methods
 
 
@@ -201,6 +234,30 @@ public abstract class ThresholdingOutputStream
         }
     }
 
+    /**
+     * Writes the remaining bytes from the specified buffer to the current
+     * output stream. Sub-classes may override this to avoid copying the bytes
+     * when the underlying storage can accept a buffer directly.
+     *
+     * @param src The buffer from which the data will be written.
+     *
+     * @throws IOException if an error occurs.
+     */
+    protected void writeBuffer(final ByteBuffer src) throws IOException
+    {
+        if (src.hasArray())
+        {
+            getStream().write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            src.position(src.limit());
+        }
+        else
+        {
+            final byte[] b = new byte[src.remaining()];
+            src.get(b);
+            getStream().write(b);
+        }
+    }
+
     // ------------------------------------------------------- Abstract methods
 
 
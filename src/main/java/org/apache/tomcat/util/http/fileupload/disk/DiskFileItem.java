@@ -16,23 +16,23 @@
  */
 package org.apache.tomcat.util.http.fileupload.disk;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.tomcat.util.http.fileupload.DeferredFileOutputStream;
+import org.apache.tomcat.util.http.fileupload.DirectBufferPool;
 import org.apache.tomcat.util.http.fileupload.FileItem;
 import org.apache.tomcat.util.http.fileupload.FileItemHeaders;
 import org.apache.tomcat.util.http.fileupload.FileUploadException;
@@ -122,6 +122,12 @@ public class DiskFileItem
      */
     private final File repository;
 
+    /**
+     * The pool of buffers in which contents below the threshold are retained,
+     * or {@code null} if they are retained on the heap.
+     */
+    private final DirectBufferPool bufferPool;
+
     /**
      * Cached contents of the file.
      */
@@ -170,12 +176,41 @@ public class DiskFileItem
     public DiskFileItem(final String fieldName,
                         final String contentType, final boolean isFormField, final String fileName,
                         final int sizeThreshold, final File repository) {
+        this(fieldName, contentType, isFormField, fileName, sizeThreshold, repository, null);
+    }
+
+    /**
+     * Constructs a new {@code DiskFileItem} instance which retains contents
+     * below the threshold in buffers from the given pool. The buffers are
+     * returned to the pool when the item is deleted.
+     *
+     * @param fieldName     The name of the form field.
+     * @param contentType   The content type passed by the browser or
+     *                      {@code null} if not specified.
+     * @param isFormField   Whether or not this item is a plain form field, as
+     *                      opposed to a file upload.
+     * @param fileName      The original file name in the user's file system, or
+     *                      {@code null} if not specified.
+     * @param sizeThreshold The threshold, in bytes, below which items will be
+     *                      retained in memory and above which they will be
+     *                      stored as a file.
+     * @param repository    The data repository, which is the directory in
+     *                      which files will be created, should the item size
+     *                      exceed the threshold.
+     * @param bufferPool    The pool of buffers in which to retain contents
+     *                      below the threshold, or {@code null} to retain
+     *                      them on the heap.
+     */
+    public DiskFileItem(final String fieldName,
+                        final String contentType, final boolean isFormField, final String fileName,
+                        final int sizeThreshold, final File repository, final DirectBufferPool bufferPool) {
         this.fieldName = fieldName;
         this.contentType = contentType;
         this.isFormField = isFormField;
         this.fileName = fileName;
         this.sizeThreshold = sizeThreshold;
         this.repository = repository;
+        this.bufferPool = bufferPool;
     }
 
     // ------------------------------- Methods from javax.activation.DataSource
@@ -196,12 +231,71 @@ public class DiskFileItem
             return Files.newInputStream(dfos.getFile().toPath());
         }
 
+        if (dfos != null && dfos.isPooled()) {
+            // Read the pooled buffers rather than copying them onto the heap
+            return dfos.getMemoryInputStream();
+        }
+
         if (cachedContent == null) {
             cachedContent = dfos.getData();
         }
         return new ByteArrayInputStream(cachedContent);
     }
 
+    /**
+     * Returns a read-only buffer containing the contents of the file. If the
+     * contents are held in memory, the buffer wraps them. Otherwise the file
+     * is mapped into memory so, unlike {@link #get()}, the contents are not
+     * copied onto the heap.
+     * <p>
+     * On some platforms, the file cannot be renamed or deleted while it is
+     * mapped. The mapping is only released once the buffer has been garbage
+     * collected.
+     *
+     * @return A read-only buffer containing the contents of the file.
+     *
+     * @throws IOException if an error occurs or the file is too large to be
+     *                     mapped into a single buffer.
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        if (isInMemory()) {
+            if (dfos != null && dfos.isPooled()) {
+                return ByteBuffer.wrap(dfos.getData()).asReadOnlyBuffer();
+            }
+            if (cachedContent == null && dfos != null) {
+                cachedContent = dfos.getData();
+            }
+            return ByteBuffer.wrap(cachedContent != null ? cachedContent : new byte[0]).asReadOnlyBuffer();
+        }
+
+        try (FileChannel channel = FileChannel.open(dfos.getFile().toPath(), StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException(String.format(
+                        "The file %s is too large to be mapped into a single buffer", dfos.getFile()));
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+    }
+
+    /**
+     * Opens a read-only channel for the file in which the contents are
+     * stored. The channel may be used to transfer the contents, or map parts
+     * of them, without copying them onto the heap. The caller is responsible
+     * for closing the channel.
+     *
+     * @return A read-only channel or {@code null} if the contents are held in
+     *         memory.
+     *
+     * @throws IOException if an error occurs.
+     */
+    public FileChannel getFileChannel() throws IOException {
+        if (isInMemory()) {
+            return null;
+        }
+        return FileChannel.open(dfos.getFile().toPath(), StandardOpenOption.READ);
+    }
+
     /**
      * Returns the content type passed by the agent or {@code null} if
      * not defined.
@@ -276,7 +370,7 @@ public class DiskFileItem
             return cachedContent.length;
         }
         if (dfos.isInMemory()) {
-            return dfos.getData().length;
+            return dfos.getByteCount();
         }
         return dfos.getFile().length();
     }
@@ -294,6 +388,10 @@ public class DiskFileItem
     @Override
     public byte[] get() throws UncheckedIOException {
         if (isInMemory()) {
+            if (dfos != null && dfos.isPooled()) {
+                // Don't cache the contents as that would defeat the pool
+                return dfos.getData();
+            }
             if (cachedContent == null && dfos != null) {
                 cachedContent = dfos.getData();
             }
@@ -398,16 +496,15 @@ public class DiskFileItem
                 throw new FileUploadException("Cannot write uploaded file to disk!");
             }
             if (!outputFile.renameTo(file)) {
-                BufferedInputStream in = null;
-                BufferedOutputStream out = null;
-                try {
-                    in = new BufferedInputStream(new FileInputStream(outputFile));
-                    out = new BufferedOutputStream(new FileOutputStream(file));
-                    IOUtils.copy(in, out);
-                    out.close();
-                } finally {
-                    IOUtils.closeQuietly(in);
-                    IOUtils.closeQuietly(out);
+                // Let the OS copy the file rather than copying it via the heap
+                try (FileChannel in = FileChannel.open(outputFile.toPath(), StandardOpenOption.READ);
+                        FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long position = 0;
+                    final long count = in.size();
+                    while (position < count) {
+                        position += in.transferTo(position, count - position, out);
+                    }
                 }
             }
         }
@@ -420,6 +517,9 @@ public class DiskFileItem
     @Override
     public void delete() {
         cachedContent = null;
+        if (dfos != null) {
+            dfos.release();
+        }
         final File outputFile = getStoreLocation();
         if (outputFile != null && !isInMemory() && outputFile.exists()) {
             if (!outputFile.delete()) {
@@ -498,7 +598,7 @@ public class DiskFileItem
     public OutputStream getOutputStream() {
         if (dfos == null) {
             final File outputFile = getTempFile();
-            dfos = new DeferredFileOutputStream(sizeThreshold, outputFile);
+            dfos = new DeferredFileOutputStream(sizeThreshold, outputFile, bufferPool);
         }
         return dfos;
     }
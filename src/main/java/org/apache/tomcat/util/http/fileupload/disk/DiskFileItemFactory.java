@@ -18,6 +18,7 @@ package org.apache.tomcat.util.http.fileupload.disk;
 
 import java.io.File;
 
+import org.apache.tomcat.util.http.fileupload.DirectBufferPool;
 import org.apache.tomcat.util.http.fileupload.FileItem;
 import org.apache.tomcat.util.http.fileupload.FileItemFactory;
 
@@ -83,6 +84,12 @@ public class DiskFileItemFactory implements FileItemFactory {
      */
     private String defaultCharset = DiskFileItem.DEFAULT_CHARSET;
 
+    /**
+     * The pool of buffers in which items below the threshold are retained, or
+     * {@code null} if they are retained on the heap.
+     */
+    private DirectBufferPool bufferPool;
+
     // ----------------------------------------------------------- Constructors
 
     /**
@@ -160,6 +167,33 @@ public class DiskFileItemFactory implements FileItemFactory {
         this.sizeThreshold = sizeThreshold;
     }
 
+    /**
+     * Returns the pool of buffers in which items below the size threshold are
+     * retained.
+     *
+     * @return The pool, or {@code null} if items are retained on the heap.
+     *
+     * @see #setBufferPool(DirectBufferPool)
+     */
+    public DirectBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Sets the pool of buffers in which items below the size threshold are
+     * retained. Using a pool keeps the contents of such items off the heap
+     * and bounds the memory they use regardless of the number of concurrent
+     * uploads. Items are written to disk if the pool has no free buffers.
+     * The buffers are returned to the pool when the item is deleted.
+     *
+     * @param bufferPool The pool, or {@code null} to retain items on the heap.
+     *
+     * @see #getBufferPool()
+     */
+    public void setBufferPool(final DirectBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -180,7 +214,7 @@ public class DiskFileItemFactory implements FileItemFactory {
     public FileItem createItem(final String fieldName, final String contentType,
                                final boolean isFormField, final String fileName) {
         final DiskFileItem result = new DiskFileItem(fieldName, contentType,
-                isFormField, fileName, sizeThreshold, repository);
+                isFormField, fileName, sizeThreshold, repository, bufferPool);
         result.setDefaultCharset(defaultCharset);
         return result;
     }
@@ -18,6 +18,7 @@ package org.apache.tomcat.util.http.fileupload.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
 
 import org.apache.tomcat.util.http.fileupload.FileItemHeaders;
 import org.apache.tomcat.util.http.fileupload.FileItemStream;
@@ -65,6 +66,16 @@ public class FileItemStreamImpl implements FileItemStream {
      */
     private final InputStream stream;
 
+    /**
+     * The underlying item stream, without any size limit applied.
+     */
+    private final ItemInputStream itemStream;
+
+    /**
+     * The maximum size of the item or -1 for no limit.
+     */
+    private final long fileSizeMax;
+
     /**
      * The headers, if any.
      */
@@ -91,7 +102,7 @@ public class FileItemStreamImpl implements FileItemStream {
         fieldName = pFieldName;
         contentType = pContentType;
         formField = pFormField;
-        final long fileSizeMax = fileItemIteratorImpl.getFileSizeMax();
+        fileSizeMax = fileItemIteratorImpl.getFileSizeMax();
         if (fileSizeMax != -1 && pContentLength != -1
                 && pContentLength > fileSizeMax) {
             final FileSizeLimitExceededException e =
@@ -104,28 +115,32 @@ public class FileItemStreamImpl implements FileItemStream {
             throw new FileUploadIOException(e);
         }
         // OK to construct stream now
-        final ItemInputStream itemStream = fileItemIteratorImpl.getMultiPartStream().newInputStream();
+        itemStream = fileItemIteratorImpl.getMultiPartStream().newInputStream();
         InputStream istream = itemStream;
         if (fileSizeMax != -1) {
             istream = new LimitedInputStream(istream, fileSizeMax) {
                 @Override
                 protected void raiseError(final long pSizeMax, final long pCount)
                         throws IOException {
-                    itemStream.close(true);
-                    final FileSizeLimitExceededException e =
-                            new FileSizeLimitExceededException(
-                                    String.format("The field %s exceeds its maximum permitted size of %s bytes.",
-                                            fieldName, Long.valueOf(pSizeMax)),
-                                    pCount, pSizeMax);
-                    e.setFieldName(fieldName);
-                    e.setFileName(name);
-                    throw new FileUploadIOException(e);
+                    raiseSizeError(pSizeMax, pCount);
                 }
             };
         }
         stream = istream;
     }
 
+    private void raiseSizeError(final long pSizeMax, final long pCount) throws IOException {
+        itemStream.close(true);
+        final FileSizeLimitExceededException e =
+                new FileSizeLimitExceededException(
+                        String.format("The field %s exceeds its maximum permitted size of %s bytes.",
+                                fieldName, Long.valueOf(pSizeMax)),
+                        pCount, pSizeMax);
+        e.setFieldName(fieldName);
+        e.setFileName(name);
+        throw new FileUploadIOException(e);
+    }
+
     /**
      * Returns the items content type, or null.
      *
@@ -195,6 +210,48 @@ public class FileItemStreamImpl implements FileItemStream {
         stream.close();
     }
 
+    /**
+     * Writes the contents of the item to the given channel and closes the
+     * item stream. The contents are written directly from the buffer of the
+     * multipart stream so, unlike reading from {@link #openStream()}, no
+     * intermediate copy is made. The maximum file size is enforced in the same
+     * way.
+     *
+     * @param target The channel to which the contents are written
+     * @return The number of bytes written
+     * @throws IOException An I/O error occurred or the maximum file size was
+     *   exceeded
+     */
+    public long transferTo(final WritableByteChannel target) throws IOException {
+        if (((Closeable) stream).isClosed()) {
+            throw new FileItemStream.ItemSkippedException();
+        }
+        try {
+            long total = 0;
+            for (;;) {
+                int maxLen = Integer.MAX_VALUE;
+                if (fileSizeMax != -1) {
+                    if (total == fileSizeMax) {
+                        // Any further byte exceeds the limit
+                        if (itemStream.read() != -1) {
+                            raiseSizeError(fileSizeMax, total + 1);
+                        }
+                        break;
+                    }
+                    maxLen = (int) Math.min(fileSizeMax - total, maxLen);
+                }
+                final int res = itemStream.read(target, maxLen);
+                if (res == -1) {
+                    break;
+                }
+                total += res;
+            }
+            return total;
+        } finally {
+            stream.close();
+        }
+    }
+
     /**
      * Returns the file item headers.
      *
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.fileupload.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.apache.tomcat.util.http.fileupload.FileItem;
+import org.apache.tomcat.util.http.fileupload.FileItemFactory;
+import org.apache.tomcat.util.http.fileupload.FileItemHeaders;
+import org.apache.tomcat.util.http.fileupload.FileUploadBase;
+import org.apache.tomcat.util.http.fileupload.FileUploadException;
+import org.apache.tomcat.util.http.fileupload.IOUtils;
+import org.apache.tomcat.util.http.fileupload.MultipartParser;
+import org.apache.tomcat.util.http.fileupload.MultipartStream;
+import org.apache.tomcat.util.http.fileupload.impl.FileCountLimitExceededException;
+import org.apache.tomcat.util.http.fileupload.impl.FileSizeLimitExceededException;
+import org.apache.tomcat.util.http.fileupload.impl.IOFileUploadException;
+import org.apache.tomcat.util.http.fileupload.impl.InvalidContentTypeException;
+import org.apache.tomcat.util.http.fileupload.impl.SizeLimitExceededException;
+import org.apache.tomcat.util.http.fileupload.util.Streams;
+
+/**
+ * <p>Parses a multipart request without blocking. The request body is read
+ * with {@link ReadListener} callbacks as data arrives and is passed to a
+ * {@link MultipartParser}, so no thread is held while waiting for a slow
+ * client. The resulting items are the same as those returned by
+ * {@link FileUploadBase#parseRequest(org.apache.tomcat.util.http.fileupload.RequestContext)}
+ * and the same limits are applied.</p>
+ *
+ * <p>The request must be in asynchronous mode. If parsing fails, any items
+ * already created are deleted and the result completes exceptionally with a
+ * {@link FileUploadException}.</p>
+ */
+public class AsyncFileUploadReader implements ReadListener, MultipartParser.Handler {
+
+    private final FileUploadBase fileUploadBase;
+
+    private final FileItemFactory fileItemFactory;
+
+    private final ServletInputStream input;
+
+    private final MultipartParser parser;
+
+    private final MultipartStream.ProgressNotifier progressNotifier;
+
+    private final byte[] buffer = new byte[Streams.DEFAULT_BUFFER_SIZE];
+
+    private final List<FileItem> items = new ArrayList<>();
+
+    private final CompletableFuture<List<FileItem>> result = new CompletableFuture<>();
+
+    private long bytesRead = 0;
+
+    /**
+     * The field name of the nested multipart body being parsed.
+     */
+    private String currentFieldName;
+
+    private FileItem currentItem;
+
+    /**
+     * The file name of the current item, used when reporting that the item is
+     * too large.
+     */
+    private String currentFileName;
+
+    private OutputStream currentOutput;
+
+    private long currentSize;
+
+
+    /**
+     * Starts parsing the given request without blocking.
+     *
+     * @param fileUploadBase The configuration for the parsing.
+     * @param request        The request, which must be in asynchronous mode.
+     *
+     * @return The items in the order they were transmitted, once the whole
+     *         request has been parsed.
+     *
+     * @throws FileUploadException if the request is not a valid multipart
+     *                             request or is too large.
+     * @throws IOException         if the input stream cannot be obtained.
+     */
+    public static CompletableFuture<List<FileItem>> parseRequest(final FileUploadBase fileUploadBase,
+            final HttpServletRequest request) throws FileUploadException, IOException {
+        final AsyncFileUploadReader reader =
+                new AsyncFileUploadReader(fileUploadBase, new ServletRequestContext(request), request.getInputStream());
+        reader.input.setReadListener(reader);
+        return reader.getResult();
+    }
+
+
+    /**
+     * Creates a reader. It must be registered with the input stream by the
+     * caller.
+     *
+     * @param fileUploadBase The configuration for the parsing.
+     * @param ctx            The context for the request.
+     * @param input          The input stream of the request.
+     *
+     * @throws FileUploadException if the request is not a valid multipart
+     *                             request or is too large.
+     */
+    public AsyncFileUploadReader(final FileUploadBase fileUploadBase, final ServletRequestContext ctx,
+            final ServletInputStream input) throws FileUploadException {
+        this.fileUploadBase = fileUploadBase;
+        this.fileItemFactory = Objects.requireNonNull(fileUploadBase.getFileItemFactory(),
+                "No FileItemFactory has been set.");
+        this.input = input;
+
+        final String contentType = ctx.getContentType();
+        if ((null == contentType)
+                || (!contentType.toLowerCase(Locale.ENGLISH).startsWith(FileUploadBase.MULTIPART))) {
+            throw new InvalidContentTypeException(
+                    String.format("the request doesn't contain a %s or %s stream, content type header is %s",
+                            FileUploadBase.MULTIPART_FORM_DATA, FileUploadBase.MULTIPART_MIXED, contentType));
+        }
+
+        final long requestSize = ctx.contentLength();
+        final long sizeMax = fileUploadBase.getSizeMax();
+        if (sizeMax >= 0 && requestSize != -1 && requestSize > sizeMax) {
+            throw sizeLimitExceeded(requestSize, sizeMax);
+        }
+
+        String charEncoding = fileUploadBase.getHeaderEncoding();
+        if (charEncoding == null) {
+            charEncoding = ctx.getCharacterEncoding();
+        }
+
+        final byte[] boundary = fileUploadBase.getBoundary(contentType);
+        if (boundary == null) {
+            throw new FileUploadException("the request was rejected because no multipart boundary was found");
+        }
+
+        progressNotifier = new MultipartStream.ProgressNotifier(fileUploadBase.getProgressListener(), requestSize);
+        parser = new MultipartParser(boundary, progressNotifier, this);
+        parser.setHeaderEncoding(charEncoding);
+    }
+
+
+    /**
+     * @return The future that is completed once the whole request has been
+     *         parsed.
+     */
+    public CompletableFuture<List<FileItem>> getResult() {
+        return result;
+    }
+
+
+    // ---------------------------------------------------------- ReadListener
+
+    @Override
+    public void onDataAvailable() throws IOException {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            while (input.isReady()) {
+                final int read = input.read(buffer);
+                if (read == -1) {
+                    return;
+                }
+                bytesRead += read;
+                final long sizeMax = fileUploadBase.getSizeMax();
+                if (sizeMax >= 0 && bytesRead > sizeMax) {
+                    throw sizeLimitExceeded(bytesRead, sizeMax);
+                }
+                parser.parse(buffer, 0, read);
+            }
+        } catch (final IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+
+    @Override
+    public void onAllDataRead() throws IOException {
+        if (result.isDone()) {
+            return;
+        }
+        try {
+            parser.finish();
+        } catch (final IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+        result.complete(items);
+    }
+
+
+    @Override
+    public void onError(final Throwable throwable) {
+        fail(throwable);
+    }
+
+
+    // ------------------------------------------------------- Parser handler
+
+    @Override
+    public byte[] partStart(final String headerPart, final boolean nested) throws IOException {
+        final FileItemHeaders headers = fileUploadBase.getParsedHeaders(headerPart);
+        final String fileName = fileUploadBase.getFileName(headers);
+        if (nested) {
+            if (fileName != null) {
+                startItem(currentFieldName, fileName, headers, false);
+            }
+            return null;
+        }
+        final String fieldName = fileUploadBase.getFieldName(headers);
+        if (fieldName == null) {
+            return null;
+        }
+        final String subContentType = headers.getHeader(FileUploadBase.CONTENT_TYPE);
+        if (subContentType != null
+                &&  subContentType.toLowerCase(Locale.ENGLISH).startsWith(FileUploadBase.MULTIPART_MIXED)) {
+            // Multiple files associated with this field name
+            currentFieldName = fieldName;
+            return fileUploadBase.getBoundary(subContentType);
+        }
+        startItem(fieldName, fileName, headers, fileName == null);
+        return null;
+    }
+
+
+    @Override
+    public void partData(final byte[] b, final int off, final int len) throws IOException {
+        if (currentOutput == null) {
+            // Part is being discarded
+            return;
+        }
+        currentSize += len;
+        final long fileSizeMax = fileUploadBase.getFileSizeMax();
+        if (fileSizeMax != -1 && currentSize > fileSizeMax) {
+            throw fileSizeLimitExceeded(currentSize, fileSizeMax);
+        }
+        try {
+            currentOutput.write(b, off, len);
+        } catch (final IOException e) {
+            throw new IOFileUploadException(String.format("Processing of %s request failed. %s",
+                    FileUploadBase.MULTIPART_FORM_DATA, e.getMessage()), e);
+        }
+    }
+
+
+    @Override
+    public void partEnd() throws IOException {
+        if (currentOutput == null) {
+            return;
+        }
+        try {
+            currentOutput.close();
+        } catch (final IOException e) {
+            throw new IOFileUploadException(String.format("Processing of %s request failed. %s",
+                    FileUploadBase.MULTIPART_FORM_DATA, e.getMessage()), e);
+        } finally {
+            currentOutput = null;
+            currentItem = null;
+        }
+    }
+
+
+    // ------------------------------------------------------ Private methods
+
+    private void startItem(final String fieldName, final String fileName, final FileItemHeaders headers,
+            final boolean formField) throws IOException {
+        if (items.size() == fileUploadBase.getFileCountMax()) {
+            // The next item will exceed the limit.
+            throw new FileCountLimitExceededException(FileUploadBase.ATTACHMENT, fileUploadBase.getFileCountMax());
+        }
+        // Reject invalid file names as FileItemStream.getName() does
+        Streams.checkFileName(fileName);
+        final FileItem fileItem = fileItemFactory.createItem(fieldName,
+                headers.getHeader(FileUploadBase.CONTENT_TYPE), formField, fileName);
+        fileItem.setHeaders(headers);
+        items.add(fileItem);
+        currentItem = fileItem;
+        currentFileName = fileName;
+        currentSize = 0;
+
+        final long fileSizeMax = fileUploadBase.getFileSizeMax();
+        final long contentLength = getContentLength(headers);
+        if (fileSizeMax != -1 && contentLength != -1 && contentLength > fileSizeMax) {
+            throw fileSizeLimitExceeded(contentLength, fileSizeMax);
+        }
+
+        currentOutput = fileItem.getOutputStream();
+        progressNotifier.noteItem();
+    }
+
+
+    private FileSizeLimitExceededException fileSizeLimitExceeded(final long actual, final long permitted) {
+        final FileSizeLimitExceededException e = new FileSizeLimitExceededException(
+                String.format("The field %s exceeds its maximum permitted size of %s bytes.",
+                        currentItem.getFieldName(), Long.valueOf(permitted)),
+                actual, permitted);
+        e.setFieldName(currentItem.getFieldName());
+        e.setFileName(currentFileName);
+        return e;
+    }
+
+
+    private static SizeLimitExceededException sizeLimitExceeded(final long actual, final long permitted) {
+        return new SizeLimitExceededException(
+                String.format("the request was rejected because its size (%s) exceeds the configured maximum (%s)",
+                        Long.valueOf(actual), Long.valueOf(permitted)),
+                actual, permitted);
+    }
+
+
+    private static long getContentLength(final FileItemHeaders pHeaders) {
+        try {
+            return Long.parseLong(pHeaders.getHeader(FileUploadBase.CONTENT_LENGTH));
+        } catch (final Exception e) {
+            return -1;
+        }
+    }
+
+
+    private void fail(final Throwable t) {
+        if (result.isDone()) {
+            return;
+        }
+        IOUtils.closeQuietly(currentOutput);
+        currentOutput = null;
+        currentItem = null;
+        for (final FileItem fileItem : items) {
+            try {
+                fileItem.delete();
+            } catch (final Exception ignored) {
+                // ignored TODO perhaps add to tracker delete failure list somehow?
+            }
+        }
+        items.clear();
+        if (t instanceof FileUploadException) {
+            result.completeExceptionally(t);
+        } else {
+            result.completeExceptionally(new FileUploadException(t.getMessage(), t));
+        }
+    }
+}
@@ -90,62 +90,95 @@ public class Cookie {
 
 
     public static void parseCookie(byte[] bytes, int offset, int len, ServerCookies serverCookies) {
-
-//        // ByteBuffer is used throughout this parser as it allows the byte[]
-//        // and position information to be easily passed between parsing methods
-//        ByteBuffer bb = new ByteBuffer(bytes, offset, len);
-//
-//        boolean moreToProcess = true;
-//
-//        while (moreToProcess) {
-//            skipLWS(bb);
-//
-//            int start = bb.position();
-//            ByteBuffer name = readToken(bb);
-//            ByteBuffer value = null;
-//
-//            skipLWS(bb);
-//
-//            SkipResult skipResult = skipByte(bb, EQUALS_BYTE);
-//            if (skipResult == SkipResult.FOUND) {
-//                skipLWS(bb);
-//                value = readCookieValueRfc6265(bb);
-//                if (value == null) {
-//                    // Invalid cookie value. Skip to the next semi-colon
-//                    skipUntilSemiColon(bb);
-//                    logInvalidHeader(start, bb);
-//                    continue;
-//                }
-//                skipLWS(bb);
-//            }
-//
-//            skipResult = skipByte(bb, SEMICOLON_BYTE);
-//            if (skipResult == SkipResult.FOUND) {
-//                // NO-OP
-//            } else if (skipResult == SkipResult.NOT_FOUND) {
-//                // Invalid cookie. Ignore it and skip to the next semi-colon
-//                skipUntilSemiColon(bb);
-//                logInvalidHeader(start, bb);
-//                continue;
-//            } else {
-//                // SkipResult.EOF
-//                moreToProcess = false;
-//            }
-//
-//            if (name.hasRemaining()) {
-//                ServerCookie sc = serverCookies.addCookie();
-//                sc.getName().setBytes(name.array(), name.position(), name.remaining());
-//                if (value == null) {
-//                    sc.getValue().setBytes(EMPTY_BYTES, 0, EMPTY_BYTES.length);
-//                } else {
-//                    sc.getValue().setBytes(value.array(), value.position(), value.remaining());
-//                }
-//            }
-//        }
+//        parseCookie(bytes, offset, len, null, serverCookies);
         throw new UnsupportedOperationException();
     }
 
 
+    /**
+     * Parse a cookie header, only retaining the cookies with the given name. The header is parsed using exactly the
+     * same rules as {@link #parseCookie(byte[], int, int, ServerCookies)} but no {@link ServerCookie} is created for
+     * cookies with other names.
+     *
+     * @param bytes         The buffer containing the header value
+     * @param offset        The start of the header value in the buffer
+     * @param len           The length of the header value
+     * @param cookieName    The name of the cookies to retain or {@code null} to retain all cookies
+     * @param serverCookies The object to populate with the retained cookies
+     */
+    public static void parseCookie(byte[] bytes, int offset, int len, String cookieName,
+            ServerCookies serverCookies) {
+
+        // ByteBuffer is used throughout this parser as it allows the byte[]
+        // and position information to be easily passed between parsing methods
+        ByteBuffer bb = new ByteBuffer(bytes, offset, len);
+
+        boolean moreToProcess = true;
+
+        while (moreToProcess) {
+            skipLWS(bb);
+
+            int start = bb.position();
+            ByteBuffer name = readToken(bb);
+            ByteBuffer value = null;
+
+            skipLWS(bb);
+
+            SkipResult skipResult = skipByte(bb, EQUALS_BYTE);
+            if (skipResult == SkipResult.FOUND) {
+                skipLWS(bb);
+                value = readCookieValueRfc6265(bb);
+                if (value == null) {
+                    // Invalid cookie value. Skip to the next semi-colon
+                    skipUntilSemiColon(bb);
+                    logInvalidHeader(start, bb);
+                    continue;
+                }
+                skipLWS(bb);
+            }
+
+            skipResult = skipByte(bb, SEMICOLON_BYTE);
+            if (skipResult == SkipResult.FOUND) {
+                // NO-OP
+            } else if (skipResult == SkipResult.NOT_FOUND) {
+                // Invalid cookie. Ignore it and skip to the next semi-colon
+                skipUntilSemiColon(bb);
+                logInvalidHeader(start, bb);
+                continue;
+            } else {
+                // SkipResult.EOF
+                moreToProcess = false;
+            }
+
+            if (name.hasRemaining() && (cookieName == null || matches(name, cookieName))) {
+                ServerCookie sc = serverCookies.addCookie();
+                sc.getName().setBytes(name.array(), name.position(), name.remaining());
+                if (value == null) {
+                    sc.getValue().setBytes(EMPTY_BYTES, 0, EMPTY_BYTES.length);
+                } else {
+                    sc.getValue().setBytes(value.array(), value.position(), value.remaining());
+                }
+            }
+        }
+    }
+
+
+    private static boolean matches(ByteBuffer name, String cookieName) {
+        int len = name.remaining();
+        if (len != cookieName.length()) {
+            return false;
+        }
+        byte[] bytes = name.array();
+        int start = name.position();
+        for (int i = 0; i < len; i++) {
+            if ((bytes[start + i] & 0xFF) != cookieName.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
     private static void skipLWS(ByteBuffer bb) {
 //        while (bb.hasRemaining()) {
 //            byte b = bb.get();
@@ -19,17 +19,17 @@ package org.apache.tomcat.util.http.parser;
 import java.io.IOException;
 import java.io.StringReader;
 
-import org.apache.tomcat.util.collections.ConcurrentCache;
+import org.apache.tomcat.util.collections.ConcurrentLruCache;
 
 /**
  * Caches the results of parsing content-type headers.
  */
 public class MediaTypeCache {
 
-    private final ConcurrentCache<String,String[]> cache;
+    private final ConcurrentLruCache<String,String[]> cache;
 
     public MediaTypeCache(int size) {
-        cache = new ConcurrentCache<>(size);
+        cache = new ConcurrentLruCache<>(size);
     }
 
     /**
@@ -62,4 +62,14 @@ public class MediaTypeCache {
 //        return result;
         throw new UnsupportedOperationException();
     }
+
+
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
 }
@@ -7,6 +7,7 @@ import org.apache.tomcat.util.buf.HexUtils;
 import org.apache.tomcat.util.collections.SynchronizedStack;
 import org.apache.tomcat.util.modeler.Registry;
 import org.apache.tomcat.util.res.StringManager;
+import org.apache.tomcat.util.threads.FairSharingExecutor;
 import org.apache.tomcat.util.threads.LimitLatch;
 import org.apache.tomcat.util.threads.TaskThreadFactory;
 
@@ -597,6 +598,69 @@ public abstract class AbstractEndpoint<S, U> {
         return this.maxConnections;
     }
 
+
+    /**
+     * Per remote address limits, enforced immediately after accept before any
+     * resources are allocated for the connection. A value of -1 disables the
+     * associated limit.
+     */
+    private int maxConnectionsPerAddress = -1;
+    private int acceptRatePerAddress = -1;
+    private int acceptBurstPerAddress = 10;
+    private int maxTrackedAddresses = 64 * 1024;
+    private volatile RemoteAddressLimiter remoteAddressLimiter = null;
+
+    public void setMaxConnectionsPerAddress(int maxConnectionsPerAddress) {
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+    }
+
+    public int getMaxConnectionsPerAddress() {
+        return maxConnectionsPerAddress;
+    }
+
+    /**
+     * @param acceptRatePerAddress The sustained number of new connections per
+     *                             second that will be accepted from a single
+     *                             remote address
+     */
+    public void setAcceptRatePerAddress(int acceptRatePerAddress) {
+        this.acceptRatePerAddress = acceptRatePerAddress;
+    }
+
+    public int getAcceptRatePerAddress() {
+        return acceptRatePerAddress;
+    }
+
+    public void setAcceptBurstPerAddress(int acceptBurstPerAddress) {
+        this.acceptBurstPerAddress = acceptBurstPerAddress;
+    }
+
+    public int getAcceptBurstPerAddress() {
+        return acceptBurstPerAddress;
+    }
+
+    public void setMaxTrackedAddresses(int maxTrackedAddresses) {
+        this.maxTrackedAddresses = maxTrackedAddresses;
+    }
+
+    public int getMaxTrackedAddresses() {
+        return maxTrackedAddresses;
+    }
+
+    protected RemoteAddressLimiter getRemoteAddressLimiter() {
+        return remoteAddressLimiter;
+    }
+
+    public long getRemoteAddressRejectedConnectionCount() {
+        RemoteAddressLimiter limiter = remoteAddressLimiter;
+        return (limiter == null) ? -1 : limiter.getRejectedConnectionCount();
+    }
+
+    public long getRemoteAddressRejectedRateCount() {
+        RemoteAddressLimiter limiter = remoteAddressLimiter;
+        return (limiter == null) ? -1 : limiter.getRejectedRateCount();
+    }
+
     /**
      * Return the current count of connections handled by this endpoint, if the
      * connections are counted (which happens when the maximum count of
@@ -665,6 +729,70 @@ public abstract class AbstractEndpoint<S, U> {
     }
 
 
+    /**
+     * Admission control based on the time socket processors spend in the
+     * executor queue. Disabled by default.
+     */
+    private boolean useAdmissionControl = false;
+    private final AdmissionController admissionController = new AdmissionController();
+
+    public void setUseAdmissionControl(boolean useAdmissionControl) {
+        this.useAdmissionControl = useAdmissionControl;
+    }
+
+    public boolean getUseAdmissionControl() {
+        return useAdmissionControl;
+    }
+
+    /**
+     * @return The admission controller for this endpoint or <code>null</code>
+     *         if admission control is disabled
+     */
+    public AdmissionController getAdmissionController() {
+        return useAdmissionControl ? admissionController : null;
+    }
+
+    public void setAdmissionTarget(long admissionTarget) {
+        admissionController.setTarget(admissionTarget);
+    }
+
+    public long getAdmissionTarget() {
+        return admissionController.getTarget();
+    }
+
+    public void setAdmissionInterval(long admissionInterval) {
+        admissionController.setInterval(admissionInterval);
+    }
+
+    public long getAdmissionInterval() {
+        return admissionController.getInterval();
+    }
+
+    public void setAdmissionRetryAfter(int admissionRetryAfter) {
+        admissionController.setRetryAfter(admissionRetryAfter);
+    }
+
+    public int getAdmissionRetryAfter() {
+        return admissionController.getRetryAfter();
+    }
+
+    public boolean isOverloaded() {
+        return useAdmissionControl && admissionController.isOverloaded();
+    }
+
+    public long getAdmissionRejectedCount() {
+        return admissionController.getRejectedRequestCount();
+    }
+
+    public long getAdmissionDelayedAcceptCount() {
+        return admissionController.getDelayedAcceptCount();
+    }
+
+    public long getAdmissionClosedKeepAliveCount() {
+        return admissionController.getClosedKeepAliveCount();
+    }
+
+
     /**
      * Server socket port.
      */
@@ -1180,7 +1308,9 @@ public abstract class AbstractEndpoint<S, U> {
     public int getCurrentThreadsBusy() {
 //        Executor executor = this.executor;
 //        if (executor != null) {
-//            if (executor instanceof ThreadPoolExecutor) {
+//            if (executor instanceof FairSharingExecutor.Lane) {
+//                return ((FairSharingExecutor.Lane) executor).getActiveCount();
+//            } else if (executor instanceof ThreadPoolExecutor) {
 //                return ((ThreadPoolExecutor) executor).getActiveCount();
 //            } else if (executor instanceof java.util.concurrent.ThreadPoolExecutor) {
 //                return ((java.util.concurrent.ThreadPoolExecutor) executor).getActiveCount();
@@ -1195,6 +1325,35 @@ public abstract class AbstractEndpoint<S, U> {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Return the number of tasks from this endpoint waiting for a thread when
+     * the executor is shared with other endpoints.
+     *
+     * @return the number of queued tasks or -1 if the executor is not shared
+     */
+    public int getSharedExecutorQueueSize() {
+        Executor executor = this.executor;
+        if (executor instanceof FairSharingExecutor.Lane) {
+            return ((FairSharingExecutor.Lane) executor).getQueueSize();
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of tasks from this endpoint completed when the
+     * executor is shared with other endpoints.
+     *
+     * @return the number of completed tasks or -1 if the executor is not
+     *         shared
+     */
+    public long getSharedExecutorCompletedCount() {
+        Executor executor = this.executor;
+        if (executor instanceof FairSharingExecutor.Lane) {
+            return ((FairSharingExecutor.Lane) executor).getCompletedCount();
+        }
+        return -1;
+    }
+
     public boolean isRunning() {
         return running;
     }
@@ -1642,6 +1801,17 @@ public abstract class AbstractEndpoint<S, U> {
         return connectionLimitLatch;
     }
 
+    protected RemoteAddressLimiter initializeRemoteAddressLimiter() {
+        if (maxConnectionsPerAddress <= 0 && acceptRatePerAddress <= 0) {
+            return null;
+        }
+        if (remoteAddressLimiter == null) {
+            remoteAddressLimiter = new RemoteAddressLimiter(maxTrackedAddresses, maxConnectionsPerAddress,
+                    acceptRatePerAddress, acceptBurstPerAddress);
+        }
+        return remoteAddressLimiter;
+    }
+
     /**
      * 释放（或关闭）计数器。
      */
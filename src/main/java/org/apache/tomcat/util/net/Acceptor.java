@@ -121,6 +121,16 @@ public class Acceptor<U> implements Runnable {
 //                        continue;
 //                    }
 //
+//                    // Slow down accepting new connections while the
+//                    // executor queue is overloaded
+//                    AdmissionController admissionController = endpoint.getAdmissionController();
+//                    if (admissionController != null) {
+//                        long acceptDelay = admissionController.nextAcceptDelay();
+//                        if (acceptDelay > 0) {
+//                            Thread.sleep(acceptDelay);
+//                        }
+//                    }
+//
 //                    U socket = null;
 //                    try {
 //                        // Accept the next incoming connection from the server
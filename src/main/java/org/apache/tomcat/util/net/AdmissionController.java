@@ -0,0 +1,263 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission controller for an endpoint based on the CoDel (controlled delay)
+ * algorithm applied to the time socket processors spend waiting in the
+ * executor queue.
+ * <p>
+ * The minimum queue sojourn time is tracked over each interval. If that
+ * minimum exceeds the target then there is a standing queue (the executor is
+ * not keeping up rather than absorbing a short burst) and the endpoint is
+ * considered to be overloaded until the end of the first interval in which
+ * the minimum is at or below the target. While overloaded:
+ * <ul>
+ * <li>requests that have already waited longer than the target are rejected
+ *     with a 503 rather than being passed to the container,</li>
+ * <li>the Acceptor is slowed down, and</li>
+ * <li>keep-alive connections that have been idle for at least an interval
+ *     are closed.</li>
+ * </ul>
+ * When not overloaded, no request is rejected.
+ * <p>
+ * All methods are thread-safe and lock-free.
+ */
+public class AdmissionController {
+
+    private static final long NO_SAMPLE = Long.MAX_VALUE;
+
+    /*
+     * Upper bound on the number of consecutive overloaded intervals used to
+     * scale the accept delay. 1 << 5 = 32 times the base delay.
+     */
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+
+    private volatile long targetNanos = TimeUnit.MILLISECONDS.toNanos(5);
+    private volatile long intervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private volatile int acceptDelay = 1;
+    private volatile int maxAcceptDelay = 50;
+    private volatile int retryAfter = 1;
+
+    private final AtomicLong intervalStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong intervalMinSojourn = new AtomicLong(NO_SAMPLE);
+
+    private volatile boolean overloaded = false;
+    private volatile int overloadedIntervals = 0;
+    private volatile long lastSojourn = 0;
+
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder delayedAccepts = new LongAdder();
+    private final LongAdder closedKeepAlives = new LongAdder();
+
+
+    // ------------------------------------------------------------- Properties
+
+    /**
+     * @return The target queue sojourn time in milliseconds
+     */
+    public long getTarget() {
+        return TimeUnit.NANOSECONDS.toMillis(targetNanos);
+    }
+
+    public void setTarget(long target) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(target);
+    }
+
+
+    /**
+     * @return The interval, in milliseconds, over which the minimum sojourn
+     *         time is measured
+     */
+    public long getInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(intervalNanos);
+    }
+
+    public void setInterval(long interval) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+
+
+    /**
+     * @return The base delay, in milliseconds, applied by the Acceptor before
+     *         each accept while overloaded
+     */
+    public int getAcceptDelay() {
+        return acceptDelay;
+    }
+
+    public void setAcceptDelay(int acceptDelay) {
+        this.acceptDelay = acceptDelay;
+    }
+
+
+    public int getMaxAcceptDelay() {
+        return maxAcceptDelay;
+    }
+
+    public void setMaxAcceptDelay(int maxAcceptDelay) {
+        this.maxAcceptDelay = maxAcceptDelay;
+    }
+
+
+    /**
+     * @return The value, in seconds, of the Retry-After header sent with
+     *         rejected requests
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(int retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+
+    // ------------------------------------------------------------- Statistics
+
+    public boolean isOverloaded() {
+        checkInterval();
+        return overloaded;
+    }
+
+    /**
+     * @return The most recently observed queue sojourn time in milliseconds
+     */
+    public long getLastSojourn() {
+        return TimeUnit.NANOSECONDS.toMillis(lastSojourn);
+    }
+
+    public long getRejectedRequestCount() {
+        return rejectedRequests.sum();
+    }
+
+    public long getDelayedAcceptCount() {
+        return delayedAccepts.sum();
+    }
+
+    public long getClosedKeepAliveCount() {
+        return closedKeepAlives.sum();
+    }
+
+    public void resetCounters() {
+        rejectedRequests.reset();
+        delayedAccepts.reset();
+        closedKeepAlives.reset();
+    }
+
+
+    // --------------------------------------------------------- Public methods
+
+    /**
+     * Record the time a socket processor spent in the executor queue and
+     * decide whether the request it is about to process should be passed to
+     * the container.
+     *
+     * @param sojournNanos Time, in nanoseconds, between the processor being
+     *                     submitted to the executor and it starting to run
+     *
+     * @return <code>true</code> if the request should be processed normally,
+     *         <code>false</code> if it should be rejected
+     */
+    public boolean admit(long sojournNanos) {
+        lastSojourn = sojournNanos;
+
+        checkInterval();
+
+        long min = intervalMinSojourn.get();
+        while (sojournNanos < min && !intervalMinSojourn.compareAndSet(min, sojournNanos)) {
+            min = intervalMinSojourn.get();
+        }
+
+        if (overloaded && sojournNanos > targetNanos) {
+            rejectedRequests.increment();
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Obtain the delay the Acceptor should apply before accepting the next
+     * connection. The delay doubles for each consecutive overloaded interval,
+     * up to {@link #getMaxAcceptDelay()}.
+     *
+     * @return The delay in milliseconds, zero if the endpoint is not
+     *         overloaded
+     */
+    public long nextAcceptDelay() {
+        checkInterval();
+        if (!overloaded) {
+            return 0;
+        }
+        delayedAccepts.increment();
+        long delay = ((long) acceptDelay) << Math.max(0, overloadedIntervals - 1);
+        return Math.min(delay, maxAcceptDelay);
+    }
+
+
+    /**
+     * Determine if an idle connection should be closed to free resources for
+     * connections with requests in progress. Only keep-alive connections, i.e.
+     * connections on which at least one request has completed, that have been
+     * idle for at least an interval are closed.
+     *
+     * @param keepAlive  Has at least one request completed on the connection?
+     * @param idleMillis The time, in milliseconds, since data was last read
+     *                   from the connection
+     *
+     * @return <code>true</code> if the connection should be closed
+     */
+    public boolean closeIdleKeepAlive(boolean keepAlive, long idleMillis) {
+        checkInterval();
+        if (overloaded && keepAlive && idleMillis >= TimeUnit.NANOSECONDS.toMillis(intervalNanos)) {
+            closedKeepAlives.increment();
+            return true;
+        }
+        return false;
+    }
+
+
+    /*
+     * Close the current interval if it has expired, updating the overloaded
+     * state from the minimum sojourn time observed during the interval. Called
+     * by every method that uses the overloaded state so that the state is
+     * updated even when no requests are being processed.
+     */
+    private void checkInterval() {
+        long now = System.nanoTime();
+        long start = intervalStart.get();
+        if (now - start >= intervalNanos && intervalStart.compareAndSet(start, now)) {
+            // Only one thread gets to close each interval
+            long intervalMin = intervalMinSojourn.getAndSet(NO_SAMPLE);
+            if (intervalMin != NO_SAMPLE && intervalMin > targetNanos) {
+                if (overloadedIntervals < MAX_BACKOFF_SHIFT) {
+                    overloadedIntervals++;
+                }
+                overloaded = true;
+            } else {
+                overloadedIntervals = 0;
+                overloaded = false;
+            }
+        }
+    }
+}
@@ -160,6 +160,27 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     private Poller poller = null;
 
 
+    /**
+     * Optional group of pollers shared with other endpoints. If set, this
+     * endpoint does not create a poller of its own.
+     */
+    private NioPollerGroup pollerGroup = null;
+    public void setPollerGroup(NioPollerGroup pollerGroup) { this.pollerGroup = pollerGroup; }
+    public NioPollerGroup getPollerGroup() { return pollerGroup; }
+
+
+    /**
+     * Poller health metrics. When the Pollers are shared, the metrics are
+     * recorded by the endpoint that created them.
+     */
+    private final PollerMetrics pollerMetrics = new PollerMetrics(this);
+    public PollerMetrics getPollerMetrics() { return pollerMetrics; }
+    public void setPollerSampleRate(int pollerSampleRate) { pollerMetrics.setSampleRate(pollerSampleRate); }
+    public int getPollerSampleRate() { return pollerMetrics.getSampleRate(); }
+    public void setPollerJfrEventsEnabled(boolean enabled) { pollerMetrics.setJfrEventsEnabled(enabled); }
+    public boolean getPollerJfrEventsEnabled() { return pollerMetrics.getJfrEventsEnabled(); }
+
+
     // --------------------------------------------------------- Public Methods
 
     /**
@@ -169,7 +190,9 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
      *         for the next request to be received on the socket
      */
     public int getKeepAliveCount() {
-        if (poller == null) {
+        if (pollerGroup != null) {
+            return pollerGroup.getKeyCount();
+        } else if (poller == null) {
             return 0;
         } else {
             return poller.getKeyCount();
@@ -177,6 +200,65 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     }
 
 
+    public long getPollerLoopCount() {
+        return pollerMetrics.getLoopCount();
+    }
+
+
+    public double getPollerKeysPerLoop() {
+        return pollerMetrics.getKeysPerLoop();
+    }
+
+
+    public long getPollerWakeupCount() {
+        return pollerMetrics.getWakeupCount();
+    }
+
+
+    /**
+     * @return The number of events waiting to be processed by the Poller
+     */
+    public int getPollerEventQueueSize() {
+        if (pollerGroup != null) {
+            return pollerGroup.getEventQueueSize();
+        }
+        Poller poller = this.poller;
+        return poller == null ? 0 : poller.getEventQueueSize();
+    }
+
+
+    /**
+     * @return The mean time, in nanoseconds, of a select by the Poller
+     */
+    public long getPollerSelectTimeAverage() {
+        return pollerMetrics.getSelectTimeAverage();
+    }
+
+
+    public long getPollerSelectTimeMax() {
+        return pollerMetrics.getSelectTimeMax();
+    }
+
+
+    /**
+     * @return The mean time, in nanoseconds, from a socket being selected to
+     *         it being dispatched to a processor
+     */
+    public long getPollerDispatchTimeAverage() {
+        return pollerMetrics.getDispatchTimeAverage();
+    }
+
+
+    public long getPollerDispatchTimeMax() {
+        return pollerMetrics.getDispatchTimeMax();
+    }
+
+
+    public void resetPollerMetrics() {
+        pollerMetrics.reset();
+    }
+
+
     @Override
     public String getId() {
         if (getUseInheritedChannel()) {
@@ -279,13 +361,19 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //            }
 //
 //            initializeConnectionLatch();
+//            initializeRemoteAddressLimiter();
 //
-//            // Start poller thread
-//            poller = new Poller();
-//            Thread pollerThread = new Thread(poller, getName() + "-Poller");
-//            pollerThread.setPriority(threadPriority);
-//            pollerThread.setDaemon(true);
-//            pollerThread.start();
+//            if (pollerGroup != null) {
+//                // Use the pollers shared with other endpoints
+//                pollerGroup.register(this);
+//            } else {
+//                // Start poller thread
+//                poller = new Poller();
+//                Thread pollerThread = new Thread(poller, getName() + "-Poller");
+//                pollerThread.setPriority(threadPriority);
+//                pollerThread.setDaemon(true);
+//                pollerThread.start();
+//            }
 //
 //            startAcceptorThread();
 //        }
@@ -304,16 +392,25 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //        if (running) {
 //            running = false;
 //            acceptor.stop(10);
-//            if (poller != null) {
-//                poller.destroy();
-//                poller = null;
-//            }
-//            try {
-//                if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
-//                    log.warn(sm.getString("endpoint.nio.stopLatchAwaitFail"));
+//            if (pollerGroup != null) {
+//                // The pollers may still be in use by other endpoints so only
+//                // close the connections that belong to this endpoint
+//                for (SocketWrapperBase<NioChannel> socketWrapper : getConnections()) {
+//                    socketWrapper.close();
+//                }
+//                pollerGroup.unregister(this);
+//            } else {
+//                if (poller != null) {
+//                    poller.destroy();
+//                    poller = null;
+//                }
+//                try {
+//                    if (!getStopLatch().await(selectorTimeout + 100, TimeUnit.MILLISECONDS)) {
+//                        log.warn(sm.getString("endpoint.nio.stopLatchAwaitFail"));
+//                    }
+//                } catch (InterruptedException e) {
+//                    log.warn(sm.getString("endpoint.nio.stopLatchAwaitInterrupted"), e);
 //                }
-//            } catch (InterruptedException e) {
-//                log.warn(sm.getString("endpoint.nio.stopLatchAwaitInterrupted"), e);
 //            }
 //            shutdownExecutor();
 //            if (eventCache != null) {
@@ -426,6 +523,9 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
 
     protected Poller getPoller() {
+        if (pollerGroup != null) {
+            return pollerGroup.nextPoller();
+        }
         return poller;
     }
 
@@ -450,7 +550,24 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
     @Override
     protected boolean setSocketOptions(SocketChannel socket) {
 //        NioSocketWrapper socketWrapper = null;
+//        long remoteAddressKey = RemoteAddressLimiter.NO_KEY;
 //        try {
+//            // Enforce per remote address limits before allocating anything
+//            RemoteAddressLimiter limiter = getRemoteAddressLimiter();
+//            if (limiter != null && getUnixDomainSocketPath() == null) {
+//                SocketAddress remoteAddress = socket.getRemoteAddress();
+//                if (remoteAddress instanceof InetSocketAddress) {
+//                    long key = RemoteAddressLimiter.toKey(((InetSocketAddress) remoteAddress).getAddress());
+//                    if (!limiter.acquire(key)) {
+//                        if (log.isDebugEnabled()) {
+//                            log.debug(sm.getString("endpoint.remoteAddressLimit", remoteAddress));
+//                        }
+//                        return false;
+//                    }
+//                    remoteAddressKey = key;
+//                }
+//            }
+//
 //            // Allocate channel and wrapper
 //            NioChannel channel = null;
 //            if (nioChannels != null) {
@@ -468,6 +585,8 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                }
 //            }
 //            NioSocketWrapper newWrapper = new NioSocketWrapper(channel, this);
+//            newWrapper.setRemoteAddressKey(remoteAddressKey);
+//            remoteAddressKey = RemoteAddressLimiter.NO_KEY;
 //            channel.reset(socket, newWrapper);
 //            connections.put(socket, newWrapper);
 //            socketWrapper = newWrapper;
@@ -494,6 +613,12 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //            if (socketWrapper == null) {
 //                destroySocket(socket);
 //            }
+//        } finally {
+//            // Only non-zero if the wrapper was never created
+//            RemoteAddressLimiter limiter = getRemoteAddressLimiter();
+//            if (limiter != null) {
+//                limiter.release(remoteAddressKey);
+//            }
 //        }
 //        // Tell to close the socket if needed
 //        return false;
@@ -616,12 +741,32 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 
         private volatile int keyCount = 0;
 
+        // Time the last select completed, if the current loop is sampled
+        private long selectEnd = PollerMetrics.NOT_SAMPLED;
+
+        private final CountDownLatch stopLatch;
+
         public Poller() throws IOException {
+            this(NioEndpoint.this.getStopLatch());
+        }
+
+        /**
+         * Create a Poller that counts down the given latch, rather than the
+         * stop latch of the endpoint, when it stops.
+         *
+         * @param stopLatch The latch to count down when the Poller stops
+         *
+         * @throws IOException If the Selector cannot be opened
+         */
+        public Poller(CountDownLatch stopLatch) throws IOException {
             this.selector = Selector.open();
+            this.stopLatch = stopLatch;
         }
 
         public int getKeyCount() { return keyCount; }
 
+        public int getEventQueueSize() { return events.size(); }
+
         public Selector getSelector() { return selector; }
 
         /**
@@ -638,6 +783,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         private void addEvent(PollerEvent event) {
 //            events.offer(event);
 //            if (wakeupCounter.incrementAndGet() == 0) {
+//                pollerMetrics.wakeup();
 //                selector.wakeup();
 //            }
             throw new UnsupportedOperationException();
@@ -671,7 +817,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //            PollerEvent pollerEvent = createPollerEvent(socketWrapper, interestOps);
 //            addEvent(pollerEvent);
 //            if (close) {
-//                processSocket(socketWrapper, SocketEvent.STOP, false);
+//                socketWrapper.getEndpoint().processSocket(socketWrapper, SocketEvent.STOP, false);
 //            }
             throw new UnsupportedOperationException();
         }
@@ -729,6 +875,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                    pe.reset();
 //                    eventCache.push(pe);
 //                }
+//                pollerMetrics.eventsProcessed(1);
 //            }
 //
 //            return result;
@@ -762,6 +909,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                try {
 //                    if (!close) {
 //                        hasEvents = events();
+//                        long loopStart = pollerMetrics.startLoop();
 //                        if (wakeupCounter.getAndSet(-1) > 0) {
 //                            // If we are here, means we have other stuff to do
 //                            // Do a non blocking select
@@ -770,6 +918,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                            keyCount = selector.select(selectorTimeout);
 //                        }
 //                        wakeupCounter.set(0);
+//                        selectEnd = pollerMetrics.selectComplete(loopStart, keyCount, events.size());
 //                    }
 //                    if (close) {
 //                        events();
@@ -806,11 +955,14 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                    }
 //                }
 //
+//                pollerMetrics.endLoop(selectEnd);
+//                selectEnd = PollerMetrics.NOT_SAMPLED;
+//
 //                // Process timeouts
 //                timeout(keyCount,hasEvents);
 //            }
 //
-//            getStopLatch().countDown();
+//            stopLatch.countDown();
             throw new UnsupportedOperationException();
         }
 
@@ -836,8 +988,10 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                                        socketWrapper.readBlocking = false;
 //                                        socketWrapper.readLock.notify();
 //                                    }
-//                                } else if (!processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
+//                                } else if (!socketWrapper.getEndpoint().processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
 //                                    closeSocket = true;
+//                                } else {
+//                                    pollerMetrics.dispatched(selectEnd);
 //                                }
 //                            }
 //                            if (!closeSocket && sk.isWritable()) {
@@ -850,8 +1004,10 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                                        socketWrapper.writeBlocking = false;
 //                                        socketWrapper.writeLock.notify();
 //                                    }
-//                                } else if (!processSocket(socketWrapper, SocketEvent.OPEN_WRITE, true)) {
+//                                } else if (!socketWrapper.getEndpoint().processSocket(socketWrapper, SocketEvent.OPEN_WRITE, true)) {
 //                                    closeSocket = true;
+//                                } else {
+//                                    pollerMetrics.dispatched(selectEnd);
 //                                }
 //                            }
 //                            if (closeSocket) {
@@ -940,7 +1096,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                                if (log.isDebugEnabled()) {
 //                                    log.debug("Connection is keep alive, processing pipe-lined data");
 //                                }
-//                                if (!processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
+//                                if (!socketWrapper.getEndpoint().processSocket(socketWrapper, SocketEvent.OPEN_READ, true)) {
 //                                    socketWrapper.close();
 //                                }
 //                                break;
@@ -1042,6 +1198,19 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                                    writeTimeout = true;
 //                                }
 //                            }
+//                            // Close idle keep-alive connections while the
+//                            // executor is overloaded
+//                            if (!readTimeout && !writeTimeout && socketWrapper.getCurrentProcessor() == null &&
+//                                    socketWrapper.readOperation == null && socketWrapper.interestOps() == SelectionKey.OP_READ) {
+//                                AdmissionController admissionController = socketWrapper.getEndpoint().getAdmissionController();
+//                                if (admissionController != null && admissionController.closeIdleKeepAlive(
+//                                        socketWrapper.isKeepAlive(), now - socketWrapper.getLastRead())) {
+//                                    key.interestOps(0);
+//                                    socketWrapper.interestOps(0);
+//                                    socketWrapper.close();
+//                                    continue;
+//                                }
+//                            }
 //                            if (readTimeout || writeTimeout) {
 //                                key.interestOps(0);
 //                                // Avoid duplicate timeout calls
@@ -1055,7 +1224,7 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                                    if (!socketWrapper.writeOperation.process()) {
 //                                        socketWrapper.close();
 //                                    }
-//                                } else if (!processSocket(socketWrapper, SocketEvent.ERROR, true)) {
+//                                } else if (!socketWrapper.getEndpoint().processSocket(socketWrapper, SocketEvent.ERROR, true)) {
 //                                    socketWrapper.close();
 //                                }
 //                            }
@@ -1102,6 +1271,9 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         private final Object writeLock;
         private volatile boolean writeBlocking = false;
 
+        // Key used by the endpoint's RemoteAddressLimiter for this connection
+        private long remoteAddressKey = RemoteAddressLimiter.NO_KEY;
+
         public NioSocketWrapper(NioChannel channel, NioEndpoint endpoint) {
             super(channel, endpoint);
             if (endpoint.getUnixDomainSocketPath() != null) {
@@ -1121,6 +1293,8 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
         }
 
         public Poller getPoller() { return poller; }
+        public void setRemoteAddressKey(long remoteAddressKey) { this.remoteAddressKey = remoteAddressKey; }
+        public long getRemoteAddressKey() { return remoteAddressKey; }
         public int interestOps() { return interestOps; }
         public int interestOps(int ops) { this.interestOps  = ops; return ops; }
         public boolean interestOpsHas(int targetOp) {
@@ -1244,6 +1418,10 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                    log.error(sm.getString("endpoint.debug.channelCloseFail"), e);
 //                }
 //            } finally {
+//                RemoteAddressLimiter limiter = getEndpoint().getRemoteAddressLimiter();
+//                if (limiter != null) {
+//                    limiter.release(remoteAddressKey);
+//                }
 //                socketBufferHandler = SocketBufferHandler.EMPTY;
 //                nonBlockingWriteBuffer.clear();
 //                reset(NioChannel.CLOSED_NIO_CHANNEL);
@@ -1326,20 +1504,17 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //            boolean dataLeft = socketOrNetworkBufferHasDataLeft();
 //
 //            // Write to the socket, if there is anything to write
-//            if (dataLeft) {
+//            if (!nonBlockingWriteBuffer.isEmpty()) {
+//                // Write the socket write buffer and all the queued data with
+//                // a single gathering write
+//                socketBufferHandler.configureWriteBufferForRead();
+//                dataLeft = nonBlockingWriteBuffer.write(this, socketBufferHandler.getWriteBuffer(), false) ||
+//                        getSocket().getOutboundRemaining() > 0;
+//            } else if (dataLeft) {
 //                doWrite(false);
 //                dataLeft = socketOrNetworkBufferHasDataLeft();
 //            }
 //
-//            if (!dataLeft && !nonBlockingWriteBuffer.isEmpty()) {
-//                dataLeft = nonBlockingWriteBuffer.write(this, false);
-//
-//                if (!dataLeft && socketOrNetworkBufferHasDataLeft()) {
-//                    doWrite(false);
-//                    dataLeft = socketOrNetworkBufferHasDataLeft();
-//                }
-//            }
-//
 //            return dataLeft;
             throw new UnsupportedOperationException();
         }
@@ -1438,6 +1613,88 @@ public class NioEndpoint extends AbstractJsseEndpoint<NioChannel,SocketChannel>
 //                // write registration.
 //            }
 //            updateLastWrite();
+//
+//        // Gathering writes. Overrides the default in SocketWrapperBase,
+//        // which writes the buffers in turn.
+//
+//        @Override
+//        protected void doWrite(boolean block, ByteBuffer[] buffers) throws IOException {
+//            long n = 0;
+//            if (getSocket() == NioChannel.CLOSED_NIO_CHANNEL) {
+//                throw new ClosedChannelException();
+//            }
+//            if (block) {
+//                if (previousIOException != null) {
+//                    /*
+//                     * Socket has previously timed out.
+//                     *
+//                     * Blocking writes assume that buffers are always fully
+//                     * written so there is no code checking for incomplete
+//                     * writes, retaining the unwritten data and attempting to
+//                     * write it as part of a subsequent write call.
+//                     *
+//                     * Because of the above, when a timeout is triggered we need
+//                     * to skip subsequent attempts to write as otherwise it will
+//                     * appear to the client as if some data was dropped just
+//                     * before the connection is lost. It is better if the client
+//                     * just sees the dropped connection.
+//                     */
+//                    throw new IOException(previousIOException);
+//                }
+//                long timeout = getWriteTimeout();
+//                long startNanos = 0;
+//                do {
+//                    if (startNanos > 0) {
+//                        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+//                        if (elapsedMillis == 0) {
+//                            elapsedMillis = 1;
+//                        }
+//                        timeout -= elapsedMillis;
+//                        if (timeout <= 0) {
+//                            previousIOException = new SocketTimeoutException();
+//                            throw previousIOException;
+//                        }
+//                    }
+//                    synchronized (writeLock) {
+//                        n = getSocket().write(buffers);
+//                        // n == 0 could be an incomplete write but it could also
+//                        // indicate that a previous incomplete write of the
+//                        // outbound buffer (for TLS) has now completed. Only
+//                        // block if there is still data to write.
+//                        if (n == 0 && (buffersArrayHasRemaining(buffers, 0, buffers.length) || getSocket().getOutboundRemaining() > 0)) {
+//                            // Ensure a spurious wake-up doesn't trigger a duplicate registration
+//                            if (!writeBlocking) {
+//                                writeBlocking = true;
+//                                registerWriteInterest();
+//                            }
+//                            try {
+//                                if (timeout > 0) {
+//                                    startNanos = System.nanoTime();
+//                                    writeLock.wait(timeout);
+//                                } else {
+//                                    writeLock.wait();
+//                                }
+//                            } catch (InterruptedException e) {
+//                                // Continue
+//                            }
+//                        } else if (startNanos > 0) {
+//                            // If something was written, reset timeout
+//                            timeout = getWriteTimeout();
+//                            startNanos = 0;
+//                        }
+//                    }
+//                } while (buffersArrayHasRemaining(buffers, 0, buffers.length) || getSocket().getOutboundRemaining() > 0);
+//            } else {
+//                do {
+//                    n = getSocket().write(buffers);
+//                } while (n > 0 && buffersArrayHasRemaining(buffers, 0, buffers.length));
+//                // If there is data left in the buffer the socket will be registered for
+//                // write further up the stack. This is to ensure the socket is only
+//                // registered for write once as both container and user code can trigger
+//                // write registration.
+//            }
+//            updateLastWrite();
+//        }
             throw new UnsupportedOperationException();
         }
 
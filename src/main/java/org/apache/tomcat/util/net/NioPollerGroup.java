@@ -0,0 +1,199 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.juli.logging.Log;
+import org.apache.juli.logging.LogFactory;
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * A group of Pollers shared by several {@link NioEndpoint}s so that multiple
+ * Connectors do not each need their own Poller thread and Selector.
+ * <p>
+ * The Pollers are created when the first endpoint registers with the group
+ * and destroyed when the last endpoint unregisters. New connections are
+ * assigned to the Pollers in round-robin order. Events are always dispatched
+ * via the endpoint that owns the connection so each endpoint continues to use
+ * its own handler and executor.
+ */
+public class NioPollerGroup {
+
+    private static final Log log = LogFactory.getLog(NioPollerGroup.class);
+    private static final StringManager sm = StringManager.getManager(NioPollerGroup.class);
+
+    private final String name;
+    private int pollerCount = 1;
+    private int pollerThreadPriority = Thread.NORM_PRIORITY;
+
+    private final Set<NioEndpoint> endpoints = new HashSet<>();
+    private final AtomicInteger nextPoller = new AtomicInteger(0);
+    private volatile NioEndpoint.Poller[] pollers = null;
+    /*
+     * The endpoint used to create the Pollers. Poller is an inner class of
+     * NioEndpoint and uses this endpoint's selector timeout.
+     */
+    private NioEndpoint owner = null;
+    /*
+     * Counted down by the Pollers of this group. The endpoints keep their own
+     * stop latches so that an endpoint sharing the Pollers is unaffected.
+     */
+    private CountDownLatch stopLatch = null;
+
+
+    public NioPollerGroup(String name) {
+        this.name = name;
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public int getPollerCount() {
+        return pollerCount;
+    }
+
+    public void setPollerCount(int pollerCount) {
+        this.pollerCount = Math.max(1, pollerCount);
+    }
+
+
+    public int getPollerThreadPriority() {
+        return pollerThreadPriority;
+    }
+
+    public void setPollerThreadPriority(int pollerThreadPriority) {
+        this.pollerThreadPriority = pollerThreadPriority;
+    }
+
+
+    /**
+     * @return The number of endpoints currently using this group
+     */
+    public synchronized int getEndpointCount() {
+        return endpoints.size();
+    }
+
+
+    /**
+     * @return The number of keys registered across all the Pollers
+     */
+    public int getKeyCount() {
+        NioEndpoint.Poller[] current = pollers;
+        int result = 0;
+        if (current != null) {
+            for (NioEndpoint.Poller poller : current) {
+                result += poller.getKeyCount();
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * @return The number of events waiting to be processed across all the
+     *         Pollers
+     */
+    public int getEventQueueSize() {
+        NioEndpoint.Poller[] current = pollers;
+        int result = 0;
+        if (current != null) {
+            for (NioEndpoint.Poller poller : current) {
+                result += poller.getEventQueueSize();
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Register an endpoint with this group, starting the Pollers if this is
+     * the first endpoint.
+     *
+     * @param endpoint The endpoint that will use the Pollers
+     *
+     * @throws IOException If a Selector cannot be opened
+     */
+    public synchronized void register(NioEndpoint endpoint) throws IOException {
+        if (!endpoints.add(endpoint) || pollers != null) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(pollerCount);
+        NioEndpoint.Poller[] created = new NioEndpoint.Poller[pollerCount];
+        for (int i = 0; i < pollerCount; i++) {
+            created[i] = endpoint.new Poller(latch);
+        }
+        owner = endpoint;
+        stopLatch = latch;
+        pollers = created;
+        for (int i = 0; i < pollerCount; i++) {
+            Thread pollerThread = new Thread(created[i], name + "-Poller-" + i);
+            pollerThread.setPriority(pollerThreadPriority);
+            pollerThread.setDaemon(true);
+            pollerThread.start();
+        }
+    }
+
+
+    /**
+     * Unregister an endpoint from this group. The caller is responsible for
+     * closing the connections of the endpoint. If this is the last endpoint,
+     * the Pollers are stopped.
+     *
+     * @param endpoint The endpoint that no longer requires the Pollers
+     */
+    public synchronized void unregister(NioEndpoint endpoint) {
+        if (!endpoints.remove(endpoint) || !endpoints.isEmpty() || pollers == null) {
+            return;
+        }
+        NioEndpoint.Poller[] current = pollers;
+        pollers = null;
+        for (NioEndpoint.Poller poller : current) {
+            poller.destroy();
+        }
+        try {
+            if (!stopLatch.await(owner.getSelectorTimeout() + 100, TimeUnit.MILLISECONDS)) {
+                log.warn(sm.getString("pollerGroup.stopLatchAwaitFail", name));
+            }
+        } catch (InterruptedException e) {
+            log.warn(sm.getString("pollerGroup.stopLatchAwaitInterrupted", name), e);
+        }
+        owner = null;
+        stopLatch = null;
+    }
+
+
+    /**
+     * @return The Poller to use for the next new connection or
+     *         <code>null</code> if the group is not started
+     */
+    public NioEndpoint.Poller nextPoller() {
+        NioEndpoint.Poller[] current = pollers;
+        if (current == null) {
+            return null;
+        }
+        return current[Math.floorMod(nextPoller.getAndIncrement(), current.length)];
+    }
+}
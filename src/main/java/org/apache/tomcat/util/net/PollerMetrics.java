@@ -0,0 +1,308 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Health metrics for the Poller(s) of an endpoint.
+ * <p>
+ * Simple counters (loops, keys processed, wakeups) are always maintained since
+ * they cost no more than an uncontended add. Timings require calls to
+ * {@link System#nanoTime()} so they are only taken for one Poller loop in
+ * every {@link #getSampleRate()} loops. Timings from sampled loops are also
+ * reported as JFR events when {@link #getJfrEventsEnabled()} is
+ * <code>true</code> and the events are enabled in the active recording.
+ * <p>
+ * A Poller records a loop by calling {@link #startLoop()} before the select,
+ * {@link #selectComplete(long, int, int)} once the select returns,
+ * {@link #dispatched(long)} for each socket dispatched to a processor and
+ * {@link #endLoop(long)} once all the selected keys have been processed. All
+ * methods are called from the Poller thread.
+ */
+public class PollerMetrics {
+
+    /**
+     * Value returned by {@link #startLoop()} if the loop is not sampled.
+     */
+    public static final long NOT_SAMPLED = 0;
+
+    private final AbstractEndpoint<?,?> endpoint;
+
+    private volatile int sampleRate = 100;
+    private volatile boolean jfrEventsEnabled = false;
+
+    private final LongAdder loopCount = new LongAdder();
+    private final LongAdder keyCount = new LongAdder();
+    private final LongAdder wakeupCount = new LongAdder();
+    private final LongAdder eventCount = new LongAdder();
+
+    private final LongAdder sampledLoopCount = new LongAdder();
+    private final LongAdder selectTime = new LongAdder();
+    private final LongAccumulator maxSelectTime = new LongAccumulator(Math::max, 0);
+    private final LongAdder sampledDispatchCount = new LongAdder();
+    private final LongAdder dispatchTime = new LongAdder();
+    private final LongAccumulator maxDispatchTime = new LongAccumulator(Math::max, 0);
+
+    // Only accessed by Poller threads. Races between Pollers are harmless.
+    private int loopsUntilSample = 0;
+
+
+    public PollerMetrics(AbstractEndpoint<?,?> endpoint) {
+        this.endpoint = endpoint;
+    }
+
+
+    /**
+     * Set the sampling rate for timings.
+     *
+     * @param sampleRate One loop in <code>sampleRate</code> loops is timed. A
+     *                       value of 1 times every loop. Zero or less disables
+     *                       timings.
+     */
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+
+    public void setJfrEventsEnabled(boolean jfrEventsEnabled) {
+        this.jfrEventsEnabled = jfrEventsEnabled;
+    }
+
+    public boolean getJfrEventsEnabled() {
+        return jfrEventsEnabled;
+    }
+
+
+    /**
+     * Called by a Poller before it selects.
+     *
+     * @return The start time of the loop if the loop is sampled, otherwise
+     *         {@link #NOT_SAMPLED}
+     */
+    public long startLoop() {
+        loopCount.increment();
+        int rate = sampleRate;
+        if (rate <= 0 || --loopsUntilSample > 0) {
+            return NOT_SAMPLED;
+        }
+        loopsUntilSample = rate;
+        long now = System.nanoTime();
+        // Avoid the (unlikely) collision with the marker value
+        return now == NOT_SAMPLED ? 1 : now;
+    }
+
+
+    /**
+     * Called by a Poller once the select returns.
+     *
+     * @param loopStart      The value returned by {@link #startLoop()}
+     * @param keys           The number of selected keys
+     * @param eventQueueSize The number of events in the Poller's event queue
+     *
+     * @return The time at which the select completed if the loop is sampled,
+     *         otherwise {@link #NOT_SAMPLED}
+     */
+    public long selectComplete(long loopStart, int keys, int eventQueueSize) {
+        keyCount.add(keys);
+        if (loopStart == NOT_SAMPLED) {
+            return NOT_SAMPLED;
+        }
+        long now = System.nanoTime();
+        long duration = now - loopStart;
+        sampledLoopCount.increment();
+        selectTime.add(duration);
+        maxSelectTime.accumulate(duration);
+        if (jfrEventsEnabled) {
+            PollerSelectEvent event = new PollerSelectEvent();
+            if (event.shouldCommit()) {
+                event.endpoint = endpoint.getName();
+                event.selectDuration = duration;
+                event.keys = keys;
+                event.eventQueueSize = eventQueueSize;
+                event.sampleRate = sampleRate;
+                event.commit();
+            }
+        }
+        return now == NOT_SAMPLED ? 1 : now;
+    }
+
+
+    /**
+     * Called by a Poller once it has handed a socket to a processor.
+     *
+     * @param selectEnd The value returned by
+     *                      {@link #selectComplete(long, int, int)}
+     */
+    public void dispatched(long selectEnd) {
+        if (selectEnd == NOT_SAMPLED) {
+            return;
+        }
+        long duration = System.nanoTime() - selectEnd;
+        sampledDispatchCount.increment();
+        dispatchTime.add(duration);
+        maxDispatchTime.accumulate(duration);
+    }
+
+
+    /**
+     * Called by a Poller once it has processed all the selected keys.
+     *
+     * @param selectEnd The value returned by
+     *                      {@link #selectComplete(long, int, int)}
+     */
+    public void endLoop(long selectEnd) {
+        if (selectEnd == NOT_SAMPLED || !jfrEventsEnabled) {
+            return;
+        }
+        PollerLoopEvent event = new PollerLoopEvent();
+        if (event.shouldCommit()) {
+            event.endpoint = endpoint.getName();
+            event.processingDuration = System.nanoTime() - selectEnd;
+            event.sampleRate = sampleRate;
+            event.commit();
+        }
+    }
+
+
+    /**
+     * Called when a Poller's selector is woken up to process a new event.
+     */
+    public void wakeup() {
+        wakeupCount.increment();
+    }
+
+
+    /**
+     * Called when a Poller processes an event from its event queue.
+     *
+     * @param count The number of events processed
+     */
+    public void eventsProcessed(int count) {
+        eventCount.add(count);
+    }
+
+
+    public long getLoopCount() {
+        return loopCount.sum();
+    }
+
+    public long getKeyCount() {
+        return keyCount.sum();
+    }
+
+    public long getWakeupCount() {
+        return wakeupCount.sum();
+    }
+
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    /**
+     * @return The mean number of keys selected per loop
+     */
+    public double getKeysPerLoop() {
+        long loops = loopCount.sum();
+        return loops == 0 ? 0 : (double) keyCount.sum() / loops;
+    }
+
+    /**
+     * @return The mean time in nanoseconds spent in select by sampled loops
+     */
+    public long getSelectTimeAverage() {
+        long count = sampledLoopCount.sum();
+        return count == 0 ? 0 : selectTime.sum() / count;
+    }
+
+    public long getSelectTimeMax() {
+        return maxSelectTime.get();
+    }
+
+    /**
+     * @return The mean time in nanoseconds from a socket being selected to it
+     *         being dispatched to a processor, for sampled loops
+     */
+    public long getDispatchTimeAverage() {
+        long count = sampledDispatchCount.sum();
+        return count == 0 ? 0 : dispatchTime.sum() / count;
+    }
+
+    public long getDispatchTimeMax() {
+        return maxDispatchTime.get();
+    }
+
+
+    public void reset() {
+        loopCount.reset();
+        keyCount.reset();
+        wakeupCount.reset();
+        eventCount.reset();
+        sampledLoopCount.reset();
+        selectTime.reset();
+        maxSelectTime.reset();
+        sampledDispatchCount.reset();
+        dispatchTime.reset();
+        maxDispatchTime.reset();
+    }
+
+
+    @Name("org.apache.tomcat.PollerSelect")
+    @Label("Poller Select")
+    @Category({ "Tomcat", "Network" })
+    @Description("A sampled select by an NIO Poller")
+    static class PollerSelectEvent extends Event {
+        @Label("Endpoint")
+        String endpoint;
+        @Label("Select Duration")
+        @Timespan
+        long selectDuration;
+        @Label("Selected Keys")
+        int keys;
+        @Label("Event Queue Size")
+        int eventQueueSize;
+        @Label("Sample Rate")
+        int sampleRate;
+    }
+
+
+    @Name("org.apache.tomcat.PollerLoop")
+    @Label("Poller Loop")
+    @Category({ "Tomcat", "Network" })
+    @Description("The processing of the selected keys by an NIO Poller for a sampled loop")
+    static class PollerLoopEvent extends Event {
+        @Label("Endpoint")
+        String endpoint;
+        @Label("Processing Duration")
+        @Timespan
+        long processingDuration;
+        @Label("Sample Rate")
+        int sampleRate;
+    }
+}
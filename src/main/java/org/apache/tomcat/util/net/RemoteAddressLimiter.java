@@ -0,0 +1,268 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.net;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Enforces a per remote address limit on the number of concurrent connections
+ * and on the rate at which new connections are accepted.
+ * <p>
+ * State is held in a fixed size, segmented, open addressing table of
+ * primitive arrays so memory use is bounded (roughly 20 bytes per tracked
+ * address) regardless of the number of distinct clients. An entry expires
+ * automatically once the address has no open connections and its accept
+ * rate allowance has fully recovered. Expired entries are reused in place.
+ * If no entry can be found for a new address (all candidate slots are in use)
+ * the connection is allowed but not tracked - the limiter fails open rather
+ * than rejecting legitimate clients.
+ * <p>
+ * IPv4 addresses are tracked individually. IPv6 addresses are tracked by
+ * their /64 prefix since that is typically what is allocated to a single
+ * client.
+ * <p>
+ * The accept rate is enforced using the generic cell rate algorithm (GCRA),
+ * the virtual scheduling equivalent of a token bucket, which only requires a
+ * single timestamp per address.
+ */
+public class RemoteAddressLimiter {
+
+    /**
+     * Key that is never returned by {@link #toKey(InetAddress)}. Used to mark
+     * empty slots and connections that are not being limited.
+     */
+    public static final long NO_KEY = 0;
+
+    private static final long IPV4_TAG = 0x7F00_0000_0000_0000L;
+    private static final int MAX_PROBE = 16;
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    private final int maxConnectionsPerAddress;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rejectedRate = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+
+    /**
+     * Create a limiter.
+     *
+     * @param maxTrackedAddresses      The number of addresses that may be
+     *                                     tracked at any one time. Rounded up
+     *                                     to a power of two, at most 2^30.
+     * @param maxConnectionsPerAddress The maximum number of concurrent
+     *                                     connections per address or -1 for no
+     *                                     limit
+     * @param acceptRatePerAddress     The sustained number of new connections
+     *                                     per second accepted from an address
+     *                                     or -1 for no limit
+     * @param acceptBurstPerAddress    The number of new connections from an
+     *                                     address that may be accepted in a
+     *                                     burst above the sustained rate
+     */
+    public RemoteAddressLimiter(int maxTrackedAddresses, int maxConnectionsPerAddress,
+            int acceptRatePerAddress, int acceptBurstPerAddress) {
+        // Clamp before rounding up so the shift cannot overflow
+        int requested = Math.min(MAX_CAPACITY, Math.max(MAX_SEGMENTS * MAX_PROBE, maxTrackedAddresses));
+        int capacity = Integer.highestOneBit((requested - 1) << 1);
+        int segmentCount = Math.min(MAX_SEGMENTS, capacity / MAX_PROBE);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(capacity / segmentCount);
+        }
+        segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+
+        this.maxConnectionsPerAddress = maxConnectionsPerAddress;
+        if (acceptRatePerAddress > 0) {
+            emissionIntervalNanos = TimeUnit.SECONDS.toNanos(1) / acceptRatePerAddress;
+            burstToleranceNanos = emissionIntervalNanos * Math.max(0, acceptBurstPerAddress);
+        } else {
+            emissionIntervalNanos = 0;
+            burstToleranceNanos = 0;
+        }
+    }
+
+
+    /**
+     * Convert an address to the key used to track it.
+     *
+     * @param address The remote address
+     *
+     * @return The key, never {@link #NO_KEY}
+     */
+    public static long toKey(InetAddress address) {
+        byte[] b = address.getAddress();
+        long key = 0;
+        if (address instanceof Inet4Address) {
+            for (int i = 0; i < 4; i++) {
+                key = (key << 8) | (b[i] & 0xFF);
+            }
+            return key | IPV4_TAG;
+        }
+        for (int i = 0; i < 8; i++) {
+            key = (key << 8) | (b[i] & 0xFF);
+        }
+        // ::/64 (which includes ::1) would otherwise collide with NO_KEY
+        return key == NO_KEY ? Long.MIN_VALUE : key;
+    }
+
+
+    /**
+     * Attempt to register a new connection from the address with the given
+     * key.
+     *
+     * @param key The key for the remote address
+     *
+     * @return <code>true</code> if the connection may proceed, in which case
+     *         {@link #release(long)} must be called when it closes, otherwise
+     *         <code>false</code>
+     */
+    public boolean acquire(long key) {
+        long hash = mix(key);
+        Segment segment = segments[(int) (hash >>> segmentShift)];
+        long now = System.nanoTime();
+        synchronized (segment) {
+            int slot = segment.find(key, (int) hash, now, emissionIntervalNanos > 0);
+            if (slot < 0) {
+                untracked.increment();
+                return true;
+            }
+            if (maxConnectionsPerAddress > 0 && segment.connections[slot] >= maxConnectionsPerAddress) {
+                rejectedConnections.increment();
+                return false;
+            }
+            if (emissionIntervalNanos > 0) {
+                long tat = Math.max(segment.tat[slot], now);
+                if (tat - now > burstToleranceNanos) {
+                    rejectedRate.increment();
+                    return false;
+                }
+                segment.tat[slot] = tat + emissionIntervalNanos;
+            }
+            segment.connections[slot]++;
+            return true;
+        }
+    }
+
+
+    /**
+     * Register the closure of a connection previously allowed by
+     * {@link #acquire(long)}.
+     *
+     * @param key The key for the remote address
+     */
+    public void release(long key) {
+        if (key == NO_KEY) {
+            return;
+        }
+        long hash = mix(key);
+        Segment segment = segments[(int) (hash >>> segmentShift)];
+        synchronized (segment) {
+            int slot = segment.indexOf(key, (int) hash);
+            if (slot >= 0 && segment.connections[slot] > 0) {
+                segment.connections[slot]--;
+            }
+        }
+    }
+
+
+    public long getRejectedConnectionCount() {
+        return rejectedConnections.sum();
+    }
+
+
+    public long getRejectedRateCount() {
+        return rejectedRate.sum();
+    }
+
+
+    /**
+     * @return The number of connections that were allowed without being
+     *         tracked because the table was full
+     */
+    public long getUntrackedCount() {
+        return untracked.sum();
+    }
+
+
+    private static long mix(long key) {
+        // Stafford variant 13 of the 64-bit MurmurHash3 finalizer
+        key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+        key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+        return key ^ (key >>> 31);
+    }
+
+
+    private static final class Segment {
+
+        private final long[] keys;
+        private final int[] connections;
+        // Theoretical arrival time of the next connection (GCRA)
+        private final long[] tat;
+        private final int mask;
+
+        private Segment(int size) {
+            keys = new long[size];
+            connections = new int[size];
+            tat = new long[size];
+            mask = size - 1;
+        }
+
+        private int indexOf(long key, int hash) {
+            for (int i = 0; i < MAX_PROBE; i++) {
+                int slot = (hash + i) & mask;
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        /*
+         * Returns the slot for the key, claiming an empty or expired slot if
+         * the key is not present, or -1 if there is no space.
+         */
+        private int find(long key, int hash, long now, boolean rateLimited) {
+            int free = -1;
+            for (int i = 0; i < MAX_PROBE; i++) {
+                int slot = (hash + i) & mask;
+                if (keys[slot] == key) {
+                    return slot;
+                }
+                if (free < 0 && (keys[slot] == NO_KEY ||
+                        connections[slot] == 0 && (!rateLimited || tat[slot] - now <= 0))) {
+                    free = slot;
+                }
+            }
+            if (free >= 0) {
+                keys[free] = key;
+                connections[free] = 0;
+                tat[free] = now;
+            }
+            return free;
+        }
+    }
+}
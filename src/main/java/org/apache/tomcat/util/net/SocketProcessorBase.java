@@ -23,6 +23,11 @@ public abstract class SocketProcessorBase<S> implements Runnable {
 
     protected SocketWrapperBase<S> socketWrapper;
     protected SocketEvent event;
+    /*
+     * Time (System.nanoTime()) at which this processor was prepared for
+     * dispatch. Used to measure the time spent in the executor queue.
+     */
+    private long dispatchTime;
 
     public SocketProcessorBase(SocketWrapperBase<S> socketWrapper, SocketEvent event) {
         reset(socketWrapper, event);
@@ -33,11 +38,16 @@ public abstract class SocketProcessorBase<S> implements Runnable {
         Objects.requireNonNull(event);
         this.socketWrapper = socketWrapper;
         this.event = event;
+        this.dispatchTime = System.nanoTime();
     }
 
 
     @Override
     public final void run() {
+        AdmissionController admissionController = socketWrapper.getEndpoint().getAdmissionController();
+        if (admissionController != null && event == SocketEvent.OPEN_READ) {
+            socketWrapper.setAdmitted(admissionController.admit(System.nanoTime() - dispatchTime));
+        }
         Lock lock = socketWrapper.getLock();
         lock.lock();
         try {
@@ -89,6 +89,16 @@ public class SocketProperties {
      */
     protected int appWriteBufSize = 8192;
 
+    /**
+     * Writes of at least this many bytes are not copied to the application
+     * write buffer. They are written to the network directly using a gathering
+     * write that also includes any data already held in the application write
+     * buffer. Smaller writes are held in the application write buffer until it
+     * fills or is flushed. -1 disables gathering writes.
+     * Default value is 8192
+     */
+    protected int gatheringWriteThreshold = 8192;
+
     /**
      * NioChannel pool size for the endpoint,
      * this value is how many channels
@@ -363,6 +373,10 @@ public class SocketProperties {
         return appWriteBufSize;
     }
 
+    public int getGatheringWriteThreshold() {
+        return gatheringWriteThreshold;
+    }
+
     public int getProcessorCache() {
         return processorCache;
     }
@@ -452,6 +466,10 @@ public class SocketProperties {
         this.appWriteBufSize = appWriteBufSize;
     }
 
+    public void setGatheringWriteThreshold(int gatheringWriteThreshold) {
+        this.gatheringWriteThreshold = gatheringWriteThreshold;
+    }
+
     public void setProcessorCache(int processorCache) {
         this.processorCache = processorCache;
     }
@@ -74,6 +74,15 @@ public abstract class SocketWrapperBase<E> {
     protected volatile IOException previousIOException = null;
 
     private volatile int keepAliveLeft = 100;
+    /*
+     * Set once the first request on this connection has completed.
+     */
+    private volatile boolean keepAlive = false;
+    /*
+     * Set by the SocketProcessor from the endpoint's AdmissionController
+     * before each read event is processed.
+     */
+    private volatile boolean admitted = true;
     private String negotiatedProtocol = null;
 
     private final String connectionId;
@@ -118,6 +127,12 @@ public abstract class SocketWrapperBase<E> {
      */
     protected final WriteBuffer nonBlockingWriteBuffer = new WriteBuffer(bufferedWriteSize);
 
+    /*
+     * Re-used for gathering writes of the socket write buffer and a single
+     * application buffer. Writes for a socket are never concurrent.
+     */
+    private final ByteBuffer[] gatheringWriteBuffers = new ByteBuffer[2];
+
     /*
      * Asynchronous operations.
      */
@@ -262,9 +277,32 @@ public abstract class SocketWrapperBase<E> {
     }
 
     public int decrementKeepAlive() {
+        keepAlive = true;
         return (--keepAliveLeft);
     }
 
+    /**
+     * @return <code>true</code> if at least one request has completed on this
+     *         connection
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return <code>false</code> if the endpoint's admission controller has
+     *         decided that the request about to be processed on this
+     *         connection should be rejected rather than passed to the
+     *         container
+     */
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public void setAdmitted(boolean admitted) {
+        this.admitted = admitted;
+    }
+
     public String getRemoteHost() {
         if (remoteHost == null) {
             populateRemoteHost();
@@ -599,6 +637,10 @@ public abstract class SocketWrapperBase<E> {
      * @throws IOException If an IO error occurs during the write
      */
     protected void writeBlocking(byte[] buf, int off, int len) throws IOException {
+//        if (isGatheringWrite(len)) {
+//            writeBlocking(ByteBuffer.wrap(buf, off, len));
+//            return;
+//        }
 //        if (len > 0) {
 //            socketBufferHandler.configureWriteBufferForWrite();
 //            int thisTime = transfer(buf, off, len, socketBufferHandler.getWriteBuffer());
@@ -628,6 +670,18 @@ public abstract class SocketWrapperBase<E> {
      * @throws IOException If an IO error occurs during the write
      */
     protected void writeBlocking(ByteBuffer from) throws IOException {
+//        if (isGatheringWrite(from.remaining())) {
+//            // Write without copying the data to the socket write buffer
+//            gatheringWriteBuffers[1] = from;
+//            try {
+//                socketBufferHandler.configureWriteBufferForRead();
+//                gatheringWriteBuffers[0] = socketBufferHandler.getWriteBuffer();
+//                doWrite(true, gatheringWriteBuffers);
+//            } finally {
+//                gatheringWriteBuffers[1] = null;
+//            }
+//            return;
+//        }
 //        if (from.hasRemaining()) {
 //            socketBufferHandler.configureWriteBufferForWrite();
 //            transfer(from, socketBufferHandler.getWriteBuffer());
@@ -658,6 +712,10 @@ public abstract class SocketWrapperBase<E> {
      * @throws IOException If an IO error occurs during the write
      */
     protected void writeNonBlocking(byte[] buf, int off, int len) throws IOException {
+//        if (isGatheringWrite(len)) {
+//            writeNonBlocking(ByteBuffer.wrap(buf, off, len));
+//            return;
+//        }
 //        if (len > 0 && nonBlockingWriteBuffer.isEmpty()
 //                && socketBufferHandler.isWriteBufferWritable()) {
 //            socketBufferHandler.configureWriteBufferForWrite();
@@ -704,6 +762,19 @@ public abstract class SocketWrapperBase<E> {
     protected void writeNonBlocking(ByteBuffer from)
             throws IOException {
 
+//        if (nonBlockingWriteBuffer.isEmpty() && isGatheringWrite(from.remaining())) {
+//            // Write as much as possible without copying the data to the
+//            // socket write buffer. Anything left is buffered below.
+//            gatheringWriteBuffers[1] = from;
+//            try {
+//                socketBufferHandler.configureWriteBufferForRead();
+//                gatheringWriteBuffers[0] = socketBufferHandler.getWriteBuffer();
+//                doWrite(false, gatheringWriteBuffers);
+//            } finally {
+//                gatheringWriteBuffers[1] = null;
+//            }
+//        }
+//
 //        if (from.hasRemaining() && nonBlockingWriteBuffer.isEmpty()
 //                && socketBufferHandler.isWriteBufferWritable()) {
 //            writeNonBlockingInternal(from);
@@ -771,14 +842,13 @@ public abstract class SocketWrapperBase<E> {
      * @throws IOException If an IO error occurs during the write
      */
     protected void flushBlocking() throws IOException {
-//        doWrite(true);
-//
-//        if (!nonBlockingWriteBuffer.isEmpty()) {
-//            nonBlockingWriteBuffer.write(this, true);
-//
-//            if (!socketBufferHandler.isWriteBufferEmpty()) {
-//                doWrite(true);
-//            }
+//        if (nonBlockingWriteBuffer.isEmpty()) {
+//            doWrite(true);
+//        } else {
+//            // Write the socket write buffer and all the queued data with
+//            // a single gathering write
+//            socketBufferHandler.configureWriteBufferForRead();
+//            nonBlockingWriteBuffer.write(this, socketBufferHandler.getWriteBuffer(), true);
 //        }
         throw new UnsupportedOperationException();
     }
@@ -826,6 +896,47 @@ public abstract class SocketWrapperBase<E> {
     }
 
 
+    /**
+     * Write the contents of the ByteBuffers, in order, to the socket. For
+     * blocking writes either then entire contents of the buffers will be
+     * written or an IOException will be thrown. For non-blocking writes, the
+     * write stops at the first buffer that cannot be fully written.
+     * <p>
+     * Implementations that support gathering writes should override this
+     * method to write all the buffers with a single call to the network.
+     *
+     * @param block Should the write be blocking or not?
+     * @param srcs  the ByteBuffers containing the data to be written
+     * @throws IOException If an I/O error such as a timeout occurs during the
+     *                     write
+     */
+    protected void doWrite(boolean block, ByteBuffer[] srcs) throws IOException {
+        for (ByteBuffer src : srcs) {
+            if (src.hasRemaining()) {
+                doWrite(block, src);
+                if (src.hasRemaining()) {
+                    return;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Should a write of the given length bypass the socket write buffer and
+     * use a gathering write?
+     *
+     * @param len The number of bytes to be written
+     *
+     * @return <code>true</code> if the data should not be copied to the socket
+     *         write buffer
+     */
+    protected boolean isGatheringWrite(int len) {
+        int threshold = endpoint.getSocketProperties().getGatheringWriteThreshold();
+        return threshold >= 0 && len > 0 && len >= threshold;
+    }
+
+
     public void processSocket(SocketEvent socketStatus, boolean dispatch) {
 //        endpoint.processSocket(this, socketStatus, dispatch);
         throw new UnsupportedOperationException();
@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.LinkedBlockingDeque;
@@ -128,6 +129,46 @@ public class WriteBuffer {
     }
 
 
+    /**
+     * Write the provided buffer followed by the buffered data using a single
+     * gathering write.
+     *
+     * @param socketWrapper The socket to write to
+     * @param prefix        Data to be written before the buffered data,
+     *                          usually the socket write buffer
+     * @param blocking      Should the write be blocking?
+     *
+     * @return <code>true</code> if data remains to be written, either in the
+     *         prefix or in this buffer
+     *
+     * @throws IOException If an I/O error occurs during the write
+     */
+    boolean write(SocketWrapperBase<?> socketWrapper, ByteBuffer prefix, boolean blocking) throws IOException {
+        ByteBuffer[] srcs = new ByteBuffer[buffers.size() + 1];
+        srcs[0] = prefix;
+        int i = 1;
+        for (ByteBufferHolder buffer : buffers) {
+            if (i == srcs.length) {
+                // Added concurrently. Will be written next time.
+                break;
+            }
+            buffer.flip();
+            srcs[i++] = buffer.getBuf();
+        }
+        socketWrapper.doWrite(blocking, i == srcs.length ? srcs : Arrays.copyOf(srcs, i));
+
+        Iterator<ByteBufferHolder> bufIter = buffers.iterator();
+        while (bufIter.hasNext()) {
+            ByteBufferHolder buffer = bufIter.next();
+            if (!buffer.isFlipped() || buffer.getBuf().hasRemaining()) {
+                break;
+            }
+            bufIter.remove();
+        }
+        return prefix.hasRemaining() || !buffers.isEmpty();
+    }
+
+
     public boolean write(Sink sink, boolean blocking) throws IOException {
 //        Iterator<ByteBufferHolder> bufIter = buffers.iterator();
 //        boolean dataLeft = false;
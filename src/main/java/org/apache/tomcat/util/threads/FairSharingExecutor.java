@@ -0,0 +1,204 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one or more
+ *  contributor license agreements.  See the NOTICE file distributed with
+ *  this work for additional information regarding copyright ownership.
+ *  The ASF licenses this file to You under the Apache License, Version 2.0
+ *  (the "License"); you may not use this file except in compliance with
+ *  the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.tomcat.util.threads;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.tomcat.util.res.StringManager;
+
+/**
+ * Shares a single executor between several users (typically the endpoints of
+ * the Connectors in a Service) while preventing any one of them from
+ * monopolising it.
+ * <p>
+ * Each user is given a {@link Lane} with its own queue. For every task
+ * submitted to a lane, a generic drain task is submitted to the underlying
+ * executor. When a drain task runs it takes the next task from the lanes in
+ * round-robin order. The underlying executor therefore sees the same number of
+ * tasks as before but, rather than being processed in arrival order, tasks
+ * from a lane with a large backlog are interleaved with tasks from the other
+ * lanes.
+ */
+public class FairSharingExecutor {
+
+    private static final StringManager sm = StringManager.getManager(FairSharingExecutor.class);
+
+    private final Executor executor;
+    private final CopyOnWriteArrayList<Lane> lanes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextLane = new AtomicInteger(0);
+
+    /*
+     * The number of queued tasks that have no drain task because the executor
+     * rejected it after the task had already been run by another drain task.
+     */
+    private final AtomicInteger missedDrains = new AtomicInteger(0);
+    private final Runnable drainTask = this::drain;
+
+
+    public FairSharingExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+
+    /**
+     * Create a new lane for a user of the shared executor.
+     *
+     * @param name The name of the lane, usually the name of the endpoint
+     *
+     * @return The new lane
+     */
+    public Lane createLane(String name) {
+        Lane lane = new Lane(name);
+        lanes.add(lane);
+        return lane;
+    }
+
+
+    private void drain() {
+        runNext();
+        // Take over the work of any drain tasks that the executor rejected.
+        // This always happens on a thread of the executor, never on the
+        // thread that submitted the task.
+        int missed;
+        while ((missed = missedDrains.get()) > 0) {
+            if (missedDrains.compareAndSet(missed, missed - 1)) {
+                runNext();
+            }
+        }
+    }
+
+
+    private void runNext() {
+        Lane[] current = lanes.toArray(new Lane[0]);
+        int count = current.length;
+        if (count == 0) {
+            return;
+        }
+        int start = Math.floorMod(nextLane.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Lane lane = current[(start + i) % count];
+            Runnable task = lane.queue.poll();
+            if (task != null) {
+                lane.run(task);
+                return;
+            }
+            if (lane.closed) {
+                lanes.remove(lane);
+            }
+        }
+    }
+
+
+    /**
+     * The view of the shared executor used by a single user.
+     */
+    public class Lane implements Executor {
+
+        private final String name;
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queueSize = new AtomicInteger(0);
+        private final AtomicInteger activeCount = new AtomicInteger(0);
+        private final AtomicLong submittedCount = new AtomicLong(0);
+        private final AtomicLong completedCount = new AtomicLong(0);
+        private volatile boolean closed = false;
+
+        private Lane(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (closed) {
+                throw new RejectedExecutionException(sm.getString("fairSharingExecutor.laneClosed", name));
+            }
+            queue.offer(command);
+            queueSize.incrementAndGet();
+            submittedCount.incrementAndGet();
+            try {
+                executor.execute(drainTask);
+            } catch (RejectedExecutionException ree) {
+                if (queue.remove(command)) {
+                    queueSize.decrementAndGet();
+                    submittedCount.decrementAndGet();
+                    throw ree;
+                }
+                // A drain task submitted for another command has already run
+                // this one, leaving another queued command without a drain
+                // task. Don't run it on this thread, which may be a poller.
+                // The next drain task to run will process it.
+                missedDrains.incrementAndGet();
+            }
+        }
+
+        private void run(Runnable task) {
+            queueSize.decrementAndGet();
+            activeCount.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeCount.decrementAndGet();
+                completedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Remove this lane from the shared executor. Tasks already queued will
+         * still be executed.
+         */
+        public void close() {
+            closed = true;
+            if (queue.isEmpty()) {
+                lanes.remove(this);
+            }
+            // else the lane is removed by the drain tasks once it is empty
+        }
+
+        public FairSharingExecutor getParent() {
+            return FairSharingExecutor.this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getQueueSize() {
+            return queueSize.get();
+        }
+
+        public int getActiveCount() {
+            return activeCount.get();
+        }
+
+        public long getSubmittedCount() {
+            return submittedCount.get();
+        }
+
+        public long getCompletedCount() {
+            return completedCount.get();
+        }
+    }
+}